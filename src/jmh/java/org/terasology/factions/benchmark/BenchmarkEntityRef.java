@@ -0,0 +1,141 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.benchmark;
+
+import org.terasology.entitySystem.Component;
+import org.terasology.entitySystem.entity.EntityRef;
+import org.terasology.entitySystem.event.Event;
+import org.terasology.entitySystem.prefab.Prefab;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Entity stand-in that only stores its components, events are swallowed.
+ */
+class BenchmarkEntityRef extends EntityRef {
+    private final long id;
+    private final Map<Class<? extends Component>, Component> components = new HashMap<>();
+
+    BenchmarkEntityRef(long id) {
+        this.id = id;
+    }
+
+    @Override
+    public EntityRef copy() {
+        BenchmarkEntityRef copy = new BenchmarkEntityRef(id);
+        copy.components.putAll(components);
+        return copy;
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public boolean isActive() {
+        return true;
+    }
+
+    @Override
+    public void destroy() {
+        components.clear();
+    }
+
+    @Override
+    public <T extends Event> T send(T event) {
+        return event;
+    }
+
+    @Override
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return false;
+    }
+
+    @Override
+    public void setPersistent(boolean persistent) {
+    }
+
+    @Override
+    public boolean isAlwaysRelevant() {
+        return false;
+    }
+
+    @Override
+    public void setAlwaysRelevant(boolean alwaysRelevant) {
+    }
+
+    @Override
+    public EntityRef getOwner() {
+        return EntityRef.NULL;
+    }
+
+    @Override
+    public void setOwner(EntityRef owner) {
+    }
+
+    @Override
+    public Prefab getParentPrefab() {
+        return null;
+    }
+
+    @Override
+    public String toFullDescription() {
+        return toString();
+    }
+
+    @Override
+    public boolean hasComponent(Class<? extends Component> component) {
+        return components.containsKey(component);
+    }
+
+    @Override
+    public <T extends Component> T getComponent(Class<T> componentClass) {
+        return componentClass.cast(components.get(componentClass));
+    }
+
+    @Override
+    public <T extends Component> T addComponent(T component) {
+        components.put(component.getClass(), component);
+        return component;
+    }
+
+    @Override
+    public void removeComponent(Class<? extends Component> componentClass) {
+        components.remove(componentClass);
+    }
+
+    @Override
+    public void saveComponent(Component component) {
+        components.put(component.getClass(), component);
+    }
+
+    @Override
+    public Iterable<Component> iterateComponents() {
+        return components.values();
+    }
+
+    @Override
+    public String toString() {
+        return "BenchmarkEntityRef{" + id + "}";
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.benchmark;
+
+import com.google.common.collect.Maps;
+import org.terasology.factions.policies.PolicyComponent;
+import org.terasology.factions.policies.policies.InternalPolicy;
+import org.terasology.factions.policies.policies.OneWayPolicy;
+import org.terasology.factions.policies.policies.TwoWayPolicy;
+import org.terasology.reflection.MappedContainer;
+
+import java.util.Map;
+
+/**
+ * Policies shaped like the trade policies of the gameplay modules, one of each policy type.
+ */
+public final class BenchmarkPolicies {
+    private BenchmarkPolicies() {
+    }
+
+    @MappedContainer
+    public static class DiscountPolicy extends InternalPolicy {
+        public float discount = 1f;
+    }
+
+    @MappedContainer
+    public static class TributePolicy extends OneWayPolicy {
+        public int tribute;
+    }
+
+    @MappedContainer
+    public static class TradePolicy extends TwoWayPolicy {
+        public boolean tradeAllowed = true;
+        public float discount = 1f;
+    }
+
+    public static class DiscountPolicyComponent extends PolicyComponent<DiscountPolicy> {
+        public Map<String, DiscountPolicy> policyMap = Maps.newHashMap();
+
+        @Override
+        public DiscountPolicy newDefaultPolicy() {
+            return new DiscountPolicy();
+        }
+
+        @Override
+        public Map<String, DiscountPolicy> getPolicyMap() {
+            return policyMap;
+        }
+    }
+
+    public static class TributePolicyComponent extends PolicyComponent<TributePolicy> {
+        public Map<String, TributePolicy> policyMap = Maps.newHashMap();
+
+        @Override
+        public TributePolicy newDefaultPolicy() {
+            return new TributePolicy();
+        }
+
+        @Override
+        public Map<String, TributePolicy> getPolicyMap() {
+            return policyMap;
+        }
+    }
+
+    public static class TradePolicyComponent extends PolicyComponent<TradePolicy> {
+        public Map<String, TradePolicy> policyMap = Maps.newHashMap();
+
+        @Override
+        public TradePolicy newDefaultPolicy() {
+            return new TradePolicy();
+        }
+
+        @Override
+        public Map<String, TradePolicy> getPolicyMap() {
+            return policyMap;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.terasology.factions.FactionSystem;
+import org.terasology.factions.components.FactionComponent;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to create all factions of a world, to see how faction creation scales with the number of factions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CreateFactionBenchmark {
+    @Param({"10", "100", "1000"})
+    public int factionCount;
+
+    private FactionSystem factionSystem;
+    private FactionComponent[] factions;
+
+    @Setup(Level.Invocation)
+    public void setup() {
+        factionSystem = new FactionBenchmarkFixture().withDefaultPolicies().start().getFactionSystem();
+        factions = new FactionComponent[factionCount];
+        for (int i = 0; i < factionCount; i++) {
+            factions[i] = new FactionComponent(FactionBenchmarkFixture.getFactionName(i));
+        }
+    }
+
+    @Benchmark
+    public FactionSystem createFactions() {
+        for (FactionComponent faction : factions) {
+            factionSystem.createFaction(faction);
+        }
+        factionSystem.flush();
+        return factionSystem;
+    }
+}
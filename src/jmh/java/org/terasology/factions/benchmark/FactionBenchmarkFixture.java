@@ -0,0 +1,143 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.benchmark;
+
+import org.terasology.context.Context;
+import org.terasology.context.internal.ContextImpl;
+import org.terasology.entitySystem.Component;
+import org.terasology.entitySystem.entity.EntityManager;
+import org.terasology.entitySystem.prefab.PrefabManager;
+import org.terasology.factions.FactionMembershipSystem;
+import org.terasology.factions.FactionSystem;
+import org.terasology.factions.components.FactionComponent;
+import org.terasology.factions.policies.BenchmarkPolicyRegistry;
+import org.terasology.factions.policies.FactionPolicySystem;
+import org.terasology.factions.policies.PolicyComponent;
+import org.terasology.factions.ui.FactionPolicyComponent;
+import org.terasology.registry.InjectionHelper;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wires a {@link FactionSystem} and a {@link FactionPolicySystem} to lightweight stand-ins of the entity and prefab
+ * managers. Entities only store their components and there are no prefabs, so the measurements only contain the work
+ * done by this module.
+ */
+final class FactionBenchmarkFixture {
+    private final Context context = new ContextImpl();
+    private final AtomicLong nextEntityId = new AtomicLong(1);
+    private final FactionPolicySystem factionPolicySystem = new FactionPolicySystem();
+    private final FactionSystem factionSystem = new FactionSystem();
+
+    FactionBenchmarkFixture() {
+        context.put(EntityManager.class, createEntityManager());
+        context.put(PrefabManager.class, createPrefabManager());
+        context.put(FactionPolicySystem.class, factionPolicySystem);
+        context.put(FactionMembershipSystem.class, new FactionMembershipSystem());
+        InjectionHelper.inject(factionPolicySystem, context);
+        InjectionHelper.inject(factionSystem, context);
+    }
+
+    FactionBenchmarkFixture withDefaultPolicies() {
+        registerPolicy("discount", "economy", new BenchmarkPolicies.DiscountPolicyComponent());
+        registerPolicy("tribute", "diplomacy", new BenchmarkPolicies.TributePolicyComponent());
+        registerPolicy("trade", "economy", new BenchmarkPolicies.TradePolicyComponent());
+        return this;
+    }
+
+    void registerPolicy(String name, String category, PolicyComponent policyComponent) {
+        FactionPolicyComponent factionPolicyComponent = new FactionPolicyComponent();
+        factionPolicyComponent.name = name;
+        factionPolicyComponent.category = category;
+        BenchmarkPolicyRegistry.registerPolicy(factionPolicySystem, factionPolicyComponent, policyComponent);
+    }
+
+    /**
+     * Sorts the policy library and creates the faction database, like the first frame of a game does.
+     */
+    FactionBenchmarkFixture start() {
+        factionPolicySystem.refreshLibrary();
+        factionSystem.update(0);
+        return this;
+    }
+
+    FactionBenchmarkFixture withFactions(int factionCount) {
+        for (int i = 0; i < factionCount; i++) {
+            factionSystem.createFaction(new FactionComponent(getFactionName(i)));
+        }
+        factionSystem.flush();
+        return this;
+    }
+
+    static String getFactionName(int index) {
+        return "Faction" + index;
+    }
+
+    FactionSystem getFactionSystem() {
+        return factionSystem;
+    }
+
+    FactionPolicySystem getFactionPolicySystem() {
+        return factionPolicySystem;
+    }
+
+    private EntityManager createEntityManager() {
+        return (EntityManager) Proxy.newProxyInstance(EntityManager.class.getClassLoader(),
+                new Class<?>[]{EntityManager.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "create":
+                            BenchmarkEntityRef entity = new BenchmarkEntityRef(nextEntityId.getAndIncrement());
+                            if (args != null && args.length == 1 && args[0] instanceof Component[]) {
+                                for (Component component : (Component[]) args[0]) {
+                                    entity.addComponent(component);
+                                }
+                            }
+                            return entity;
+                        case "getEntitiesWith":
+                            return Collections.emptyList();
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+    }
+
+    private PrefabManager createPrefabManager() {
+        return (PrefabManager) Proxy.newProxyInstance(PrefabManager.class.getClassLoader(),
+                new Class<?>[]{PrefabManager.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("listPrefabs")) {
+                        return Collections.emptyList();
+                    }
+                    return defaultValue(method.getReturnType());
+                });
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == float.class) {
+            return 0f;
+        } else if (type == double.class) {
+            return 0d;
+        }
+        return null;
+    }
+}
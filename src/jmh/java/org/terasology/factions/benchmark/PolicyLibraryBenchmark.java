@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.terasology.factions.policies.FactionPolicySystem;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building the policy library from many policy prefabs. Instantiating the prefabs is engine work and not part
+ * of the measurement, the benchmark registers the prefab contents directly and then refreshes the library.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PolicyLibraryBenchmark {
+    private static final int CATEGORY_COUNT = 10;
+
+    @Param({"10", "100", "1000"})
+    public int policyCount;
+
+    private FactionBenchmarkFixture fixture;
+
+    @Setup(Level.Invocation)
+    public void setup() {
+        fixture = new FactionBenchmarkFixture();
+    }
+
+    @Benchmark
+    public FactionPolicySystem refreshLibrary() {
+        for (int i = 0; i < policyCount; i++) {
+            String category = "category" + (i % CATEGORY_COUNT);
+            switch (i % 3) {
+                case 0:
+                    fixture.registerPolicy("discount" + i, category, new BenchmarkPolicies.DiscountPolicyComponent());
+                    break;
+                case 1:
+                    fixture.registerPolicy("tribute" + i, category, new BenchmarkPolicies.TributePolicyComponent());
+                    break;
+                default:
+                    fixture.registerPolicy("trade" + i, category, new BenchmarkPolicies.TradePolicyComponent());
+                    break;
+            }
+        }
+        FactionPolicySystem factionPolicySystem = fixture.getFactionPolicySystem();
+        factionPolicySystem.refreshLibrary();
+        return factionPolicySystem;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.terasology.factions.FactionSystem;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of single policy lookups. Run with the gc profiler to see the allocation rate of each access path.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PolicyLookupBenchmark {
+    @Param({"10", "100", "1000"})
+    public int factionCount;
+
+    private FactionSystem factionSystem;
+    private String[] factionNames;
+    private int step;
+
+    @Setup
+    public void setup() {
+        factionSystem = new FactionBenchmarkFixture().withDefaultPolicies().start().withFactions(factionCount)
+                .getFactionSystem();
+        factionNames = new String[factionCount];
+        for (int i = 0; i < factionCount; i++) {
+            factionNames[i] = FactionBenchmarkFixture.getFactionName(i);
+        }
+        // a few explicitly set policies so that lookups do not only hit the default
+        for (int i = 1; i < factionCount; i += 7) {
+            BenchmarkPolicies.TradePolicy tradePolicy = new BenchmarkPolicies.TradePolicy();
+            tradePolicy.tradeAllowed = false;
+            factionSystem.saveTwoWayPolicy(tradePolicy, factionNames[0], factionNames[i]);
+        }
+        factionSystem.flush();
+    }
+
+    private int nextFaction() {
+        step = (step + 31) % factionCount;
+        return step;
+    }
+
+    @Benchmark
+    public Object getInternalPolicy() {
+        return factionSystem.getInternalPolicy(BenchmarkPolicies.DiscountPolicy.class, factionNames[nextFaction()]);
+    }
+
+    @Benchmark
+    public Object getInternalPolicyViewById() {
+        return factionSystem.getInternalPolicyView(BenchmarkPolicies.DiscountPolicy.class, nextFaction());
+    }
+
+    @Benchmark
+    public Object getOneWayPolicy() {
+        return factionSystem.getOneWayPolicy(BenchmarkPolicies.TributePolicy.class,
+                factionNames[nextFaction()], factionNames[nextFaction()]);
+    }
+
+    @Benchmark
+    public Object getOneWayPolicyViewById() {
+        return factionSystem.getOneWayPolicyView(BenchmarkPolicies.TributePolicy.class, nextFaction(), nextFaction());
+    }
+
+    @Benchmark
+    public Object getTwoWayPolicy() {
+        return factionSystem.getTwoWayPolicy(BenchmarkPolicies.TradePolicy.class,
+                factionNames[nextFaction()], factionNames[nextFaction()]);
+    }
+
+    @Benchmark
+    public Object getTwoWayPolicyView() {
+        return factionSystem.getTwoWayPolicyView(BenchmarkPolicies.TradePolicy.class,
+                factionNames[nextFaction()], factionNames[nextFaction()]);
+    }
+
+    @Benchmark
+    public boolean getTwoWayPolicyViewById() {
+        return factionSystem.getTwoWayPolicyView(BenchmarkPolicies.TradePolicy.class, nextFaction(), nextFaction())
+                .getBoolean("tradeAllowed");
+    }
+}
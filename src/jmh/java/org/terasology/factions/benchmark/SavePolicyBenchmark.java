@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.terasology.factions.FactionSystem;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of saving policies, including the notification of a varying number of subscribers. The saved policies differ
+ * from the default policy and alternate between two values, policies equal to the default would not be stored.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SavePolicyBenchmark {
+    private static final int FACTION_COUNT = 100;
+
+    @Param({"0", "1", "10", "50"})
+    public int subscriberCount;
+
+    private FactionSystem factionSystem;
+    private BenchmarkPolicies.DiscountPolicy discountPolicy = new BenchmarkPolicies.DiscountPolicy();
+    private BenchmarkPolicies.TributePolicy tributePolicy = new BenchmarkPolicies.TributePolicy();
+    private BenchmarkPolicies.TradePolicy tradePolicy = new BenchmarkPolicies.TradePolicy();
+    private String[] factionNames;
+    private int step;
+    private boolean variant;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        factionSystem = new FactionBenchmarkFixture().withDefaultPolicies().start().withFactions(FACTION_COUNT)
+                .getFactionSystem();
+        factionNames = new String[FACTION_COUNT];
+        for (int i = 0; i < FACTION_COUNT; i++) {
+            factionNames[i] = FactionBenchmarkFixture.getFactionName(i);
+        }
+        for (int i = 0; i < subscriberCount; i++) {
+            factionSystem.registerPolicyChangeSubscriber(BenchmarkPolicies.DiscountPolicy.class,
+                    (policy, faction) -> blackhole.consume(policy));
+            factionSystem.registerPolicyChangeSubscriber(BenchmarkPolicies.TributePolicy.class,
+                    (policy, factionOne, factionTwo) -> blackhole.consume(policy));
+            factionSystem.registerPolicyChangeSubscriber(BenchmarkPolicies.TradePolicy.class,
+                    (policy, factionOne, factionTwo) -> blackhole.consume(policy));
+        }
+    }
+
+    private String nextFaction() {
+        step = (step + 31) % FACTION_COUNT;
+        return factionNames[step];
+    }
+
+    private boolean nextVariant() {
+        variant = !variant;
+        return variant;
+    }
+
+    @Benchmark
+    public void saveInternalPolicy() {
+        discountPolicy.discount = nextVariant() ? 0.5f : 0.75f;
+        factionSystem.saveInternalPolicy(discountPolicy, nextFaction());
+    }
+
+    @Benchmark
+    public void saveOneWayPolicy() {
+        tributePolicy.tribute = nextVariant() ? 5 : 10;
+        factionSystem.saveOneWayPolicy(tributePolicy, nextFaction(), nextFaction());
+    }
+
+    @Benchmark
+    public void saveTwoWayPolicy() {
+        tradePolicy.discount = nextVariant() ? 0.5f : 0.75f;
+        factionSystem.saveTwoWayPolicy(tradePolicy, nextFaction(), nextFaction());
+    }
+
+    /**
+     * A save followed by the flush that happens at the end of the frame.
+     */
+    @Benchmark
+    public void saveTwoWayPolicyAndFlush() {
+        tradePolicy.discount = nextVariant() ? 0.5f : 0.75f;
+        factionSystem.saveTwoWayPolicy(tradePolicy, nextFaction(), nextFaction());
+        factionSystem.flush();
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.policies;
+
+import org.terasology.factions.ui.FactionPolicyComponent;
+
+/**
+ * Lets the benchmarks add policies to the library without policy prefabs, which need the engine to be instantiated.
+ */
+public final class BenchmarkPolicyRegistry {
+    private BenchmarkPolicyRegistry() {
+    }
+
+    /**
+     * @see FactionPolicySystem#registerPolicy(FactionPolicyComponent, PolicyComponent)
+     */
+    public static boolean registerPolicy(FactionPolicySystem factionPolicySystem,
+                                         FactionPolicyComponent factionPolicyComponent,
+                                         PolicyComponent policyComponent) {
+        return factionPolicySystem.registerPolicy(factionPolicyComponent, policyComponent);
+    }
+}
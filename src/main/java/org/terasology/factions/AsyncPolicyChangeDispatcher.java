@@ -0,0 +1,271 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.factions.policies.PolicyType;
+import org.terasology.factions.policies.policies.Policy;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Delivers policy changes to subscribers on a small pool of worker threads.
+ * <p>
+ * Changes are queued per subscriber, policy class and faction (pair), the factions of two way policies in either order.
+ * Changes with the same key are delivered in the order they were saved and never concurrently. A change that is still
+ * waiting is replaced by a newer change of the same key, so a slow subscriber only sees the latest policy. When the
+ * executor queue is full the delivery waits in an overflow queue that the workers drain after their current task, so
+ * neither the order nor any change is lost and the saving thread never delivers itself.
+ * <p>
+ * Changes are submitted from the game thread only.
+ */
+public class AsyncPolicyChangeDispatcher {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncPolicyChangeDispatcher.class);
+
+    private final ThreadPoolExecutor executor;
+    private final ConcurrentMap<DeliveryKey, DeliverySlot> slots = new ConcurrentHashMap<>();
+    private final Queue<Runnable> overflow = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingChanges = new AtomicInteger();
+    private final LongAdder submittedChanges = new LongAdder();
+    private final LongAdder deliveredChanges = new LongAdder();
+    private final LongAdder coalescedChanges = new LongAdder();
+    private final LongAdder backpressuredChanges = new LongAdder();
+    private final LongAdder droppedChanges = new LongAdder();
+    private final LongAdder failedDeliveries = new LongAdder();
+
+    public AsyncPolicyChangeDispatcher(int threads, int queueCapacity) {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "Factions-policy-delivery-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public <T extends Policy> FactionSystem.InternalPolicyChangeCallback<T> wrap(
+            FactionSystem.InternalPolicyChangeCallback<T> callback) {
+        return (policy, faction) -> submit(new DeliveryKey(callback, policy.getClass(), faction, null),
+                () -> callback.onPolicyChange(policy, faction));
+    }
+
+    public <T extends Policy> FactionSystem.ExternalPolicyChangeCallback<T> wrap(
+            FactionSystem.ExternalPolicyChangeCallback<T> callback) {
+        return (policy, factionOne, factionTwo) -> submit(getPairKey(callback, policy, factionOne, factionTwo),
+                () -> callback.onPolicyChange(policy, factionOne, factionTwo));
+    }
+
+    private static DeliveryKey getPairKey(Object subscriber, Policy policy, String factionOne, String factionTwo) {
+        if (PolicyType.getPolicyType(policy.getClass()) == PolicyType.TWO_WAY && factionOne.compareTo(factionTwo) > 0) {
+            return new DeliveryKey(subscriber, policy.getClass(), factionTwo, factionOne);
+        }
+        return new DeliveryKey(subscriber, policy.getClass(), factionOne, factionTwo);
+    }
+
+    private void submit(DeliveryKey key, Runnable delivery) {
+        submittedChanges.increment();
+        if (executor.isShutdown()) {
+            droppedChanges.increment();
+            return;
+        }
+
+        DeliverySlot slot;
+        while (true) {
+            slot = slots.computeIfAbsent(key, k -> new DeliverySlot());
+            synchronized (slot) {
+                if (slot.retired) {
+                    continue;
+                }
+                if (slot.pending != null) {
+                    slot.pending = delivery;
+                    coalescedChanges.increment();
+                    return;
+                }
+                slot.pending = delivery;
+                pendingChanges.incrementAndGet();
+                if (slot.scheduled) {
+                    return;
+                }
+                slot.scheduled = true;
+                break;
+            }
+        }
+
+        DeliverySlot scheduledSlot = slot;
+        Runnable task = () -> drain(key, scheduledSlot);
+        try {
+            executor.execute(() -> {
+                task.run();
+                drainOverflow();
+            });
+        } catch (RejectedExecutionException e) {
+            if (executor.isShutdown()) {
+                synchronized (slot) {
+                    if (slot.pending != null) {
+                        slot.pending = null;
+                        pendingChanges.decrementAndGet();
+                        droppedChanges.increment();
+                    }
+                    slot.scheduled = false;
+                }
+            } else {
+                // the slot stays scheduled, so later changes of the key wait behind this one
+                backpressuredChanges.increment();
+                overflow.add(task);
+                try {
+                    executor.execute(this::drainOverflow);
+                } catch (RejectedExecutionException stillFull) {
+                    // every queued task drains the overflow once it is done
+                }
+            }
+        }
+    }
+
+    private void drainOverflow() {
+        Runnable task;
+        while ((task = overflow.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private void drain(DeliveryKey key, DeliverySlot slot) {
+        while (true) {
+            Runnable delivery;
+            synchronized (slot) {
+                delivery = slot.pending;
+                slot.pending = null;
+                if (delivery == null) {
+                    slot.scheduled = false;
+                    slot.retired = true;
+                    slots.remove(key, slot);
+                    return;
+                }
+            }
+            pendingChanges.decrementAndGet();
+            try {
+                delivery.run();
+                deliveredChanges.increment();
+            } catch (RuntimeException e) {
+                failedDeliveries.increment();
+                logger.error("Policy change subscriber failed for " + key, e);
+            }
+        }
+    }
+
+    /**
+     * @return the number of changes that wait for delivery
+     */
+    public int getQueueDepth() {
+        return pendingChanges.get();
+    }
+
+    public long getSubmittedCount() {
+        return submittedChanges.sum();
+    }
+
+    public long getDeliveredCount() {
+        return deliveredChanges.sum();
+    }
+
+    /**
+     * @return the number of changes that were replaced by a newer change before they were delivered
+     */
+    public long getCoalescedCount() {
+        return coalescedChanges.sum();
+    }
+
+    /**
+     * @return the number of deliveries that waited in the overflow queue because the executor queue was full
+     */
+    public long getBackpressuredCount() {
+        return backpressuredChanges.sum();
+    }
+
+    /**
+     * @return the number of changes that were submitted after shutdown and never delivered
+     */
+    public long getDroppedCount() {
+        return droppedChanges.sum();
+    }
+
+    public long getFailedCount() {
+        return failedDeliveries.sum();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static final class DeliverySlot {
+        private Runnable pending;
+        private boolean scheduled;
+        private boolean retired;
+    }
+
+    private static final class DeliveryKey {
+        private final Object subscriber;
+        private final Class<?> policyClass;
+        private final String firstFaction;
+        private final String secondFaction;
+        private final int hash;
+
+        private DeliveryKey(Object subscriber, Class<?> policyClass, String firstFaction, String secondFaction) {
+            this.subscriber = subscriber;
+            this.policyClass = policyClass;
+            this.firstFaction = firstFaction;
+            this.secondFaction = secondFaction;
+            this.hash = Objects.hash(System.identityHashCode(subscriber), policyClass, firstFaction, secondFaction);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof DeliveryKey)) {
+                return false;
+            }
+            DeliveryKey other = (DeliveryKey) o;
+            return subscriber == other.subscriber
+                    && policyClass == other.policyClass
+                    && Objects.equals(firstFaction, other.firstFaction)
+                    && Objects.equals(secondFaction, other.secondFaction);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return policyClass.getSimpleName() + "[" + firstFaction
+                    + (secondFaction == null ? "" : ", " + secondFaction) + "]";
+        }
+    }
+}
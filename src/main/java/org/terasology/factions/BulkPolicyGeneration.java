@@ -0,0 +1,226 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.factions.policies.PolicyType;
+import org.terasology.factions.policies.generator.BulkPolicyGenerator;
+import org.terasology.factions.policies.policies.ExternalPolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates the policies of all pairs of the factions that existed when it was started, in parallel on a fork join
+ * pool. The pairs are split into chunks of rows, every pair writes a copy of its result into its own slot, so the
+ * workers never contend. The faction system merges the results on the game thread once all chunks are done, spread over
+ * frames within {@link FactionSystem#BULK_MERGE_BUDGET_MICROS} per frame: pairs that got an own policy in the meantime
+ * are skipped, all others are saved and subscribers are notified with one batch per frame.
+ * <p>
+ * The generator runs on worker threads and reads faction state through the snapshot taken when the generation started,
+ * see {@link BulkPolicyGenerator}.
+ *
+ * @see FactionSystem#generatePolicies(Class, BulkPolicyGenerator)
+ */
+public class BulkPolicyGeneration<T extends ExternalPolicy> {
+    private static final Logger logger = LoggerFactory.getLogger(BulkPolicyGeneration.class);
+    private static final int PAIRS_PER_CHUNK = 1024;
+
+    private final Class<T> policyClass;
+    private final BulkPolicyGenerator<T> generator;
+    private final FactionSystem factionSystem;
+    private final FactionSnapshot snapshot;
+    private final boolean twoWay;
+    private final String[] factionNames;
+    private final Object[] results;
+    private final int totalPairs;
+    private final AtomicInteger completedPairs = new AtomicInteger();
+    private final AtomicInteger failedPairs = new AtomicInteger();
+    private volatile boolean cancelled;
+    private ForkJoinTask<?> task;
+    private boolean merged;
+    private int mergedRows;
+
+    BulkPolicyGeneration(Class<T> policyClass, BulkPolicyGenerator<T> generator, PolicyType policyType,
+                         List<String> factionNames, FactionSystem factionSystem) {
+        this.policyClass = policyClass;
+        this.generator = generator;
+        this.factionSystem = factionSystem;
+        this.snapshot = factionSystem.getSnapshot();
+        this.twoWay = policyType == PolicyType.TWO_WAY;
+        this.factionNames = factionNames.toArray(new String[factionNames.size()]);
+        int factionCount = this.factionNames.length;
+        this.totalPairs = twoWay ? factionCount * (factionCount - 1) / 2 : factionCount * (factionCount - 1);
+        this.results = new Object[twoWay ? totalPairs : factionCount * factionCount];
+    }
+
+    void start(ForkJoinPool pool) {
+        task = pool.submit(new ChunkTask(0, factionNames.length));
+    }
+
+    public Class<T> getPolicyClass() {
+        return policyClass;
+    }
+
+    public int getTotalPairs() {
+        return totalPairs;
+    }
+
+    public int getCompletedPairs() {
+        return completedPairs.get();
+    }
+
+    /**
+     * @return the share of generated pairs between 0 and 1, the results are only saved once {@link #isMerged()}
+     */
+    public float getProgress() {
+        return totalPairs == 0 ? 1 : (float) completedPairs.get() / totalPairs;
+    }
+
+    public boolean isDone() {
+        return task != null && task.isDone();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return whether the generated policies were saved
+     */
+    public boolean isMerged() {
+        return merged;
+    }
+
+    /**
+     * Stops generating, nothing more of this generation is saved.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Saves the next rows of generated policies until the deadline, at least one row. Called on the game thread every
+     * frame once {@link #isDone()}, the changes of a frame are notified with one batch.
+     *
+     * @return whether all generated policies were saved
+     */
+    boolean merge(long deadline) {
+        if (cancelled) {
+            merged = true;
+            return true;
+        }
+        if (mergedRows == 0 && failedPairs.get() > 0) {
+            logger.error("Policy generator of " + policyClass.getName() + " failed for " + failedPairs.get()
+                    + " pairs -> ignoring them!");
+        }
+
+        List<PolicyChange<?>> changes = new ArrayList<>();
+        int factionCount = factionNames.length;
+        while (mergedRows < factionCount) {
+            mergeRow(mergedRows, changes);
+            mergedRows++;
+            if (System.nanoTime() >= deadline) {
+                break;
+            }
+        }
+        if (!changes.isEmpty()) {
+            factionSystem.notifyPolicyChangeSubscribers(changes);
+        }
+        merged = mergedRows >= factionCount;
+        return merged;
+    }
+
+    private void mergeRow(int second, List<PolicyChange<?>> changes) {
+        int firstEnd = twoWay ? second : factionNames.length;
+        for (int first = 0; first < firstEnd; first++) {
+            T policy = first == second ? null : (T) results[getSlot(first, second)];
+            if (policy == null) {
+                continue;
+            }
+            results[getSlot(first, second)] = null;
+            int firstFactionId = factionSystem.getFactionId(factionNames[first]);
+            int secondFactionId = factionSystem.getFactionId(factionNames[second]);
+            if (firstFactionId == FactionRegistry.NO_FACTION || secondFactionId == FactionRegistry.NO_FACTION
+                    || factionSystem.hasOwnPolicy(policyClass, firstFactionId, secondFactionId)) {
+                continue;
+            }
+            PolicyChange<T> change = new PolicyChange<>(policy, factionNames[first], factionNames[second]);
+            factionSystem.applyPolicyChange(change);
+            changes.add(change);
+        }
+    }
+
+    private int getSlot(int first, int second) {
+        return twoWay ? second * (second - 1) / 2 + first : first * factionNames.length + second;
+    }
+
+    /**
+     * Generates the rows in [start, end), a row holds the pairs with the same second faction.
+     */
+    private final class ChunkTask extends RecursiveAction {
+        private final int start;
+        private final int end;
+
+        private ChunkTask(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start > 1 && getPairCount() > PAIRS_PER_CHUNK) {
+                int middle = (start + end) >>> 1;
+                invokeAll(new ChunkTask(start, middle), new ChunkTask(middle, end));
+                return;
+            }
+            for (int second = start; second < end && !cancelled; second++) {
+                int firstEnd = twoWay ? second : factionNames.length;
+                int generated = 0;
+                for (int first = 0; first < firstEnd; first++) {
+                    if (first == second) {
+                        continue;
+                    }
+                    try {
+                        T policy = generator.getPolicy(factionNames[first], factionNames[second], snapshot);
+                        // generators may reuse what they return, so copy it before the next pair overwrites it
+                        results[getSlot(first, second)] = policy == null ? null : (T) policy.clone();
+                    } catch (RuntimeException e) {
+                        if (failedPairs.getAndIncrement() == 0) {
+                            logger.error("Policy generator of " + policyClass.getName() + " failed for "
+                                    + factionNames[first] + ", " + factionNames[second], e);
+                        }
+                    }
+                    generated++;
+                }
+                completedPairs.addAndGet(generated);
+            }
+        }
+
+        private long getPairCount() {
+            if (!twoWay) {
+                return (long) (end - start) * (factionNames.length - 1);
+            }
+            // rows 0 to n - 1 hold n * (n - 1) / 2 pairs
+            return (long) end * (end - 1) / 2 - (long) start * (start - 1) / 2;
+        }
+    }
+}
@@ -0,0 +1,419 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions;
+
+import gnu.trove.map.TLongDoubleMap;
+import gnu.trove.map.hash.TLongDoubleHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.factions.policies.PolicyColumns;
+import org.terasology.factions.policies.PolicyField;
+import org.terasology.factions.policies.PolicyMetadata;
+import org.terasology.factions.policies.PolicyRelationGraph;
+import org.terasology.factions.policies.PolicyType;
+import org.terasology.factions.policies.policies.ExternalPolicy;
+import org.terasology.factions.policies.policies.OneWayPolicy;
+import org.terasology.factions.policies.policies.TwoWayPolicy;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Lets float and double fields of external policies evolve over time, e.g. trust drifting back to neutral, and lets
+ * events ripple out to the allies of the factions involved.
+ * <p>
+ * Every registered field is advanced in sweeps over all pairs, one run of the policy columns at a time, see
+ * {@link RelationDynamics}. The faction system calls {@link #update(float)} once per frame, which advances runs of all
+ * registered fields in turn until the tick budget is used up and then continues in the next frame. A sweep starts at
+ * most once per frame and advances every pair by the time that passed since the previous sweep started. Changed pairs
+ * are saved in chunks of {@link #PAIRS_PER_CHUNK} pairs of a run, one transaction per chunk, between budget checks, so
+ * saving counts toward the budget as well. A run may be saved over several frames, pairs that were saved otherwise in
+ * the meantime keep their new value.
+ *
+ * @see FactionSystem#getDiplomacySimulation()
+ */
+public class DiplomacySimulation {
+    public static final long DEFAULT_TICK_BUDGET_MICROS = 500;
+    public static final int PAIRS_PER_CHUNK = 64;
+
+    private static final Logger logger = LoggerFactory.getLogger(DiplomacySimulation.class);
+
+    private final FactionSystem factionSystem;
+    private final List<Simulation<?>> simulations = new ArrayList<>();
+    private long tickBudgetMicros = DEFAULT_TICK_BUDGET_MICROS;
+    private boolean paused;
+    private int current;
+    private double[] currentValues = new double[0];
+
+    DiplomacySimulation(FactionSystem factionSystem) {
+        this.factionSystem = factionSystem;
+    }
+
+    /**
+     * Advances the field with the dynamics from now on, replacing earlier dynamics of the same field.
+     *
+     * @return whether the field exists and is a float or double field
+     */
+    public <T extends ExternalPolicy> boolean register(Class<T> policyClass, String fieldName,
+                                                       RelationDynamics dynamics) {
+        PolicyField field = null;
+        for (PolicyField candidate : PolicyMetadata.of(policyClass).getFields()) {
+            if (candidate.getName().equals(fieldName)
+                    && (candidate.getType() == double.class || candidate.getType() == float.class)) {
+                field = candidate;
+            }
+        }
+        if (field == null) {
+            logger.error(policyClass.getName() + " has no float or double field " + fieldName);
+            return false;
+        }
+        unregister(policyClass, fieldName);
+        simulations.add(new Simulation<>(policyClass, field, dynamics));
+        return true;
+    }
+
+    public void unregister(Class<? extends ExternalPolicy> policyClass, String fieldName) {
+        Iterator<Simulation<?>> iterator = simulations.iterator();
+        while (iterator.hasNext()) {
+            Simulation<?> simulation = iterator.next();
+            if (simulation.policyClass == policyClass && simulation.field.getName().equals(fieldName)) {
+                iterator.remove();
+            }
+        }
+        current = 0;
+    }
+
+    /**
+     * Changes the field of the pair by the amount on the next update. If a graph to spread along is given, the
+     * factions up to the given number of edges away from the first faction, e.g. its allies, get the amount times
+     * falloff per edge added to their pair with the second faction as well.
+     */
+    public void ripple(Class<? extends ExternalPolicy> policyClass, String fieldName, int firstFaction,
+                       int secondFaction, double amount, PolicyRelationGraph<?> spread, double falloff, int hops) {
+        Simulation<?> simulation = getSimulation(policyClass, fieldName);
+        if (simulation == null) {
+            logger.error("No dynamics registered for " + policyClass.getName() + "." + fieldName);
+            return;
+        }
+        simulation.addImpulse(firstFaction, secondFaction, amount);
+        if (spread == null) {
+            return;
+        }
+
+        long[] previous = spread.newFactionSet();
+        if (firstFaction >> 6 < previous.length) {
+            previous[firstFaction >> 6] |= 1L << firstFaction;
+        }
+        long[] reached = null;
+        long[] layer = spread.newFactionSet();
+        double share = amount;
+        for (int hop = 1; hop <= hops; hop++) {
+            share *= falloff;
+            reached = spread.getReachable(firstFaction, hop, reached);
+            boolean grown = false;
+            for (int word = 0; word < layer.length; word++) {
+                layer[word] = reached[word] & ~previous[word];
+                previous[word] |= reached[word];
+                grown |= layer[word] != 0;
+            }
+            if (!grown) {
+                break;
+            }
+            double hopShare = share;
+            PolicyRelationGraph.forEach(layer, faction -> {
+                if (faction != secondFaction) {
+                    simulation.addImpulse(faction, secondFaction, hopShare);
+                }
+            });
+        }
+    }
+
+    public long getTickBudgetMicros() {
+        return tickBudgetMicros;
+    }
+
+    /**
+     * Sets the time the simulation may take per frame. At least one run is advanced per frame, so very small budgets
+     * still make progress.
+     */
+    public void setTickBudgetMicros(long tickBudgetMicros) {
+        this.tickBudgetMicros = tickBudgetMicros;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Stops advancing the fields, time that passes while paused is not simulated later. Ripples are still applied.
+     */
+    public void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+
+    /**
+     * @return the number of completed sweeps over the field, or -1 if it has no registered dynamics
+     */
+    public int getCompletedSweeps(Class<? extends ExternalPolicy> policyClass, String fieldName) {
+        Simulation<?> simulation = getSimulation(policyClass, fieldName);
+        return simulation == null ? -1 : simulation.completedSweeps;
+    }
+
+    void update(float delta) {
+        if (simulations.isEmpty()) {
+            return;
+        }
+        long deadline = System.nanoTime() + tickBudgetMicros * 1000;
+
+        // ripples are committed first, so that the runs advanced below already see them
+        PolicyTransaction impulseTransaction = factionSystem.beginTransaction();
+        for (Simulation<?> simulation : simulations) {
+            simulation.applyImpulses(impulseTransaction);
+        }
+        commit(impulseTransaction);
+        if (paused) {
+            return;
+        }
+
+        for (Simulation<?> simulation : simulations) {
+            simulation.pendingTime += delta;
+            simulation.sweptThisTick = false;
+        }
+        // every step either advances one run or saves one chunk of it, so the saves count toward the budget too
+        int idle = 0;
+        do {
+            Simulation<?> simulation = simulations.get(current);
+            current = (current + 1) % simulations.size();
+            idle = simulation.step() ? 0 : idle + 1;
+        } while (idle < simulations.size() && System.nanoTime() < deadline);
+    }
+
+    /**
+     * Called by the faction system after the faction registry gave the id of the removed faction to the moved
+     * faction, so that queued ripples keep their factions.
+     */
+    void onFactionRemoved(int factionId, int movedFactionId) {
+        for (Simulation<?> simulation : simulations) {
+            simulation.onFactionRemoved(factionId, movedFactionId);
+        }
+    }
+
+    private void commit(PolicyTransaction transaction) {
+        if (transaction.isEmpty()) {
+            transaction.rollback();
+        } else {
+            transaction.commit();
+        }
+    }
+
+    private Simulation<?> getSimulation(Class<? extends ExternalPolicy> policyClass, String fieldName) {
+        for (Simulation<?> simulation : simulations) {
+            if (simulation.policyClass == policyClass && simulation.field.getName().equals(fieldName)) {
+                return simulation;
+            }
+        }
+        return null;
+    }
+
+    private final class Simulation<T extends ExternalPolicy> {
+        private final Class<T> policyClass;
+        private final PolicyField field;
+        private final RelationDynamics dynamics;
+        private final boolean twoWay;
+        private final T scratch;
+        private final TLongDoubleMap impulses = new TLongDoubleHashMap();
+        private float pendingTime;
+        private float sweepTime;
+        private boolean sweptThisTick;
+        private int run = -1;
+        private int completedSweeps;
+        private double[] values = new double[0];
+        private double[] next = new double[0];
+        private int savingRun = -1;
+        private int savingLength;
+        private int saveOffset;
+
+        Simulation(Class<T> policyClass, PolicyField field, RelationDynamics dynamics) {
+            this.policyClass = policyClass;
+            this.field = field;
+            this.dynamics = dynamics;
+            this.twoWay = PolicyMetadata.of(policyClass).getPolicyType() == PolicyType.TWO_WAY;
+            this.scratch = PolicyMetadata.of(policyClass).newInstance();
+        }
+
+        void addImpulse(int firstFaction, int secondFaction, double amount) {
+            if (firstFaction == secondFaction) {
+                return;
+            }
+            long pair = getImpulseKey(firstFaction, secondFaction);
+            impulses.adjustOrPutValue(pair, amount, amount);
+        }
+
+        private long getImpulseKey(int firstFaction, int secondFaction) {
+            return twoWay && secondFaction < firstFaction
+                    ? getPair(secondFaction, firstFaction)
+                    : getPair(firstFaction, secondFaction);
+        }
+
+        void applyImpulses(PolicyTransaction transaction) {
+            if (impulses.isEmpty()) {
+                return;
+            }
+            impulses.forEachEntry((pair, amount) -> {
+                save(transaction, (int) (pair >>> 32), (int) pair, amount, true);
+                return true;
+            });
+            impulses.clear();
+        }
+
+        void onFactionRemoved(int factionId, int movedFactionId) {
+            // the pairs of the run being saved may have changed their ids
+            savingRun = -1;
+            if (impulses.isEmpty()) {
+                return;
+            }
+            TLongDoubleMap rebased = new TLongDoubleHashMap();
+            impulses.forEachEntry((pair, amount) -> {
+                int firstFaction = (int) (pair >>> 32);
+                int secondFaction = (int) pair;
+                if (firstFaction != factionId && secondFaction != factionId) {
+                    long newPair = getImpulseKey(firstFaction == movedFactionId ? factionId : firstFaction,
+                            secondFaction == movedFactionId ? factionId : secondFaction);
+                    rebased.adjustOrPutValue(newPair, amount, amount);
+                }
+                return true;
+            });
+            impulses.clear();
+            impulses.putAll(rebased);
+        }
+
+        /**
+         * Advances the next run, or saves the next chunk of the changed pairs of the run advanced last.
+         *
+         * @return false if the field has nothing left to do in this frame
+         */
+        boolean step() {
+            PolicyColumns<T> columns = factionSystem.getPolicyColumns(policyClass);
+            if (columns == null) {
+                return false;
+            }
+            if (savingRun >= 0 && savingRun < columns.getRunCount()) {
+                saveChunk(columns);
+                return true;
+            }
+            savingRun = -1;
+            if (run < 0) {
+                if (sweptThisTick) {
+                    return false;
+                }
+                sweepTime = pendingTime;
+                pendingTime = 0;
+                run = 0;
+            }
+            if (run >= columns.getRunCount()) {
+                run = -1;
+                sweptThisTick = true;
+                completedSweeps++;
+                return false;
+            }
+
+            long sample = factionSystem.getMetrics().begin(FactionMetrics.Operation.SIMULATE);
+            int length = columns.getRunLength(run);
+            if (values.length < length) {
+                values = new double[length];
+                next = new double[length];
+            }
+            columns.readDoubles(field.getName(), run, values);
+            dynamics.advance(values, next, length, sweepTime);
+            savingRun = run;
+            savingLength = length;
+            saveOffset = 0;
+            run++;
+            factionSystem.getMetrics().end(FactionMetrics.Operation.SIMULATE, sample);
+            return true;
+        }
+
+        private void saveChunk(PolicyColumns<T> columns) {
+            long sample = factionSystem.getMetrics().begin(FactionMetrics.Operation.SIMULATE);
+            int length = columns.getRunLength(savingRun);
+            if (currentValues.length < length) {
+                currentValues = new double[length];
+            }
+            columns.readDoubles(field.getName(), savingRun, currentValues);
+
+            PolicyTransaction transaction = factionSystem.beginTransaction();
+            int end = Math.min(Math.min(savingLength, length), saveOffset + PAIRS_PER_CHUNK);
+            for (int offset = saveOffset; offset < end; offset++) {
+                int firstFaction = columns.getFirstFaction(savingRun, offset);
+                int secondFaction = columns.getSecondFaction(savingRun, offset);
+                // pairs saved by someone else since the run was advanced keep that value
+                if (firstFaction != secondFaction && Double.compare(currentValues[offset], values[offset]) == 0
+                        && isChanged(values[offset], next[offset])) {
+                    save(transaction, firstFaction, secondFaction, next[offset], false);
+                }
+            }
+            saveOffset = end;
+            if (saveOffset >= Math.min(savingLength, length)) {
+                savingRun = -1;
+            }
+            commit(transaction);
+            factionSystem.getMetrics().end(FactionMetrics.Operation.SIMULATE, sample);
+        }
+
+        private boolean isChanged(double value, double nextValue) {
+            return field.getType() == float.class
+                    ? Float.compare((float) value, (float) nextValue) != 0
+                    : Double.compare(value, nextValue) != 0;
+        }
+
+        private void save(PolicyTransaction transaction, int firstFaction, int secondFaction, double value,
+                          boolean relative) {
+            ExternalPolicy policy;
+            if (twoWay) {
+                Class<TwoWayPolicy> twoWayClass = (Class<TwoWayPolicy>) (Class<?>) policyClass;
+                policy = scratch != null
+                        ? factionSystem.getTwoWayPolicy(twoWayClass, firstFaction, secondFaction, (TwoWayPolicy) scratch)
+                        : factionSystem.getTwoWayPolicy(twoWayClass, firstFaction, secondFaction);
+            } else {
+                Class<OneWayPolicy> oneWayClass = (Class<OneWayPolicy>) (Class<?>) policyClass;
+                policy = scratch != null
+                        ? factionSystem.getOneWayPolicy(oneWayClass, firstFaction, secondFaction, (OneWayPolicy) scratch)
+                        : factionSystem.getOneWayPolicy(oneWayClass, firstFaction, secondFaction);
+            }
+            if (policy == null) {
+                return;
+            }
+            if (relative) {
+                value += ((Number) field.get(policy)).doubleValue();
+            }
+            field.set(policy, field.getType() == float.class ? (Object) (float) value : (Object) value);
+
+            // the transaction stages a copy, so the scratch policy can be reused right away
+            String firstFactionName = factionSystem.getFactionName(firstFaction);
+            String secondFactionName = factionSystem.getFactionName(secondFaction);
+            if (twoWay) {
+                transaction.saveTwoWayPolicy((TwoWayPolicy) policy, firstFactionName, secondFactionName);
+            } else {
+                transaction.saveOneWayPolicy((OneWayPolicy) policy, firstFactionName, secondFactionName);
+            }
+        }
+    }
+
+    private static long getPair(int firstFaction, int secondFaction) {
+        return ((long) firstFaction << 32) | (secondFaction & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions;
+
+import com.google.common.collect.Maps;
+import org.terasology.entitySystem.entity.EntityRef;
+import org.terasology.entitySystem.entity.lifecycleEvents.BeforeDeactivateComponent;
+import org.terasology.entitySystem.entity.lifecycleEvents.OnActivatedComponent;
+import org.terasology.entitySystem.entity.lifecycleEvents.OnChangedComponent;
+import org.terasology.entitySystem.event.ReceiveEvent;
+import org.terasology.entitySystem.systems.BaseComponentSystem;
+import org.terasology.entitySystem.systems.RegisterSystem;
+import org.terasology.factions.components.FactionDatabaseComponent;
+import org.terasology.factions.components.FactionMemberComponent;
+import org.terasology.factions.events.FactionCreatedEvent;
+import org.terasology.factions.events.FactionRemovedEvent;
+import org.terasology.registry.Share;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps track of the members of each faction, so that members and member counts can be queried without scanning all
+ * entities with a {@link FactionMemberComponent}. Each faction keeps one member set from its creation (or its first
+ * member) until it is removed.
+ */
+@RegisterSystem
+@Share(FactionMembershipSystem.class)
+public class FactionMembershipSystem extends BaseComponentSystem {
+    private Map<EntityRef, String> memberFactions = new HashMap<>();
+    private Map<String, Set<EntityRef>> factionMembers = new HashMap<>();
+    private Map<String, Set<EntityRef>> factionMembersViews = new HashMap<>();
+    private Set<String> factionsWithMembers = Collections.unmodifiableSet(
+            Maps.filterValues(factionMembers, members -> !members.isEmpty()).keySet());
+
+    @ReceiveEvent(components = {FactionDatabaseComponent.class})
+    public void onFactionCreated(FactionCreatedEvent event, EntityRef entity) {
+        getOrCreateMembers(event.getFaction());
+    }
+
+    @ReceiveEvent(components = {FactionDatabaseComponent.class})
+    public void onFactionRemoved(FactionRemovedEvent event, EntityRef entity) {
+        // members of a removed faction leave or move before the event, only members that kept its name keep the set
+        Set<EntityRef> members = factionMembers.get(event.getFaction());
+        if (members != null && members.isEmpty()) {
+            factionMembers.remove(event.getFaction());
+            factionMembersViews.remove(event.getFaction());
+        }
+    }
+
+    @ReceiveEvent(components = FactionMemberComponent.class)
+    public void onMemberActivated(OnActivatedComponent event, EntityRef entity, FactionMemberComponent member) {
+        updateMember(entity, member.name);
+    }
+
+    @ReceiveEvent(components = FactionMemberComponent.class)
+    public void onMemberChanged(OnChangedComponent event, EntityRef entity, FactionMemberComponent member) {
+        updateMember(entity, member.name);
+    }
+
+    @ReceiveEvent(components = FactionMemberComponent.class)
+    public void onMemberDeactivated(BeforeDeactivateComponent event, EntityRef entity) {
+        removeMember(entity);
+    }
+
+    private void updateMember(EntityRef entity, String faction) {
+        String oldFaction = memberFactions.get(entity);
+        if (faction == null) {
+            removeMember(entity);
+            return;
+        }
+        if (faction.equals(oldFaction)) {
+            return;
+        }
+        if (oldFaction != null) {
+            removeFromFaction(entity, oldFaction);
+        }
+        memberFactions.put(entity, faction);
+        getOrCreateMembers(faction).add(entity);
+    }
+
+    private void removeMember(EntityRef entity) {
+        String oldFaction = memberFactions.remove(entity);
+        if (oldFaction != null) {
+            removeFromFaction(entity, oldFaction);
+        }
+    }
+
+    private void removeFromFaction(EntityRef entity, String faction) {
+        factionMembers.get(faction).remove(entity);
+    }
+
+    private Set<EntityRef> getOrCreateMembers(String faction) {
+        Set<EntityRef> members = factionMembers.get(faction);
+        if (members == null) {
+            members = new HashSet<>();
+            factionMembers.put(faction, members);
+            factionMembersViews.put(faction, Collections.unmodifiableSet(members));
+        }
+        return members;
+    }
+
+    /**
+     * @return a live, read-only view of the members of the faction, which stays valid until the faction is removed,
+     * or an empty set if the faction neither exists nor has members
+     */
+    public Set<EntityRef> getMembers(String faction) {
+        Set<EntityRef> members = factionMembersViews.get(faction);
+        return members == null ? Collections.emptySet() : members;
+    }
+
+    public int getMemberCount(String faction) {
+        Set<EntityRef> members = factionMembers.get(faction);
+        return members == null ? 0 : members.size();
+    }
+
+    /**
+     * @return the faction of the entity, or null if it is not a member of any faction
+     */
+    public String getFaction(EntityRef entity) {
+        return memberFactions.get(entity);
+    }
+
+    public boolean isMember(EntityRef entity, String faction) {
+        return faction.equals(memberFactions.get(entity));
+    }
+
+    /**
+     * @return the factions that have at least one member
+     */
+    public Set<String> getFactionsWithMembers() {
+        return factionsWithMembers;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Low overhead call counters and latency histograms of the faction systems.
+ * <p>
+ * Every call is counted with a striped counter, but only one call in {@link Operation#getSampleInterval()} is timed,
+ * so that frequent operations like lookups do not pay for {@link System#nanoTime()} on every call. Latencies are kept in
+ * histograms with power of two buckets, percentiles are therefore reported as the upper bound of their bucket.
+ */
+public class FactionMetrics {
+    private static final int BUCKET_COUNT = 64;
+    private static final long NOT_SAMPLED = 0;
+
+    public enum Operation {
+        INTERNAL_LOOKUP(64),
+        ONE_WAY_LOOKUP(64),
+        TWO_WAY_LOOKUP(64),
+        CLONE(64),
+        SAVE(8),
+        SUBSCRIBER_DISPATCH(8),
+        FLUSH(1),
+        CREATE_FACTION(1),
+        GENERATE_POLICY(1),
+        SIMULATE(1),
+        CONSTRUCT_POLICY(8),
+        REFRESH_LIBRARY(1);
+
+        private final int sampleMask;
+
+        Operation(int sampleInterval) {
+            this.sampleMask = sampleInterval - 1;
+        }
+
+        public int getSampleInterval() {
+            return sampleMask + 1;
+        }
+    }
+
+    private final OperationMetrics[] operations = new OperationMetrics[Operation.values().length];
+
+    public FactionMetrics() {
+        for (int i = 0; i < operations.length; i++) {
+            operations[i] = new OperationMetrics();
+        }
+    }
+
+    /**
+     * Counts a call of the operation.
+     *
+     * @return the value to pass to {@link #end(Operation, long)} once the operation is done
+     */
+    public long begin(Operation operation) {
+        OperationMetrics metrics = operations[operation.ordinal()];
+        metrics.calls.increment();
+        if ((++metrics.tick & operation.sampleMask) != 0) {
+            return NOT_SAMPLED;
+        }
+        return System.nanoTime();
+    }
+
+    public void end(Operation operation, long start) {
+        if (start != NOT_SAMPLED) {
+            operations[operation.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    public long getCount(Operation operation) {
+        return operations[operation.ordinal()].calls.sum();
+    }
+
+    public long getSampleCount(Operation operation) {
+        return operations[operation.ordinal()].samples.sum();
+    }
+
+    public double getMeanNanos(Operation operation) {
+        OperationMetrics metrics = operations[operation.ordinal()];
+        long samples = metrics.samples.sum();
+        return samples == 0 ? 0 : (double) metrics.totalNanos.sum() / samples;
+    }
+
+    public long getMaxNanos(Operation operation) {
+        return operations[operation.ordinal()].maxNanos.get();
+    }
+
+    /**
+     * @param percentile between 0 and 1
+     * @return the upper bound of the histogram bucket that contains the percentile, 0 if nothing was sampled
+     */
+    public long getPercentileNanos(Operation operation, double percentile) {
+        OperationMetrics metrics = operations[operation.ordinal()];
+        long samples = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            samples += metrics.buckets.get(bucket);
+        }
+        if (samples == 0) {
+            return 0;
+        }
+        long threshold = (long) Math.ceil(samples * percentile);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += metrics.buckets.get(bucket);
+            if (seen >= threshold) {
+                return bucket >= BUCKET_COUNT - 1 ? Long.MAX_VALUE : (1L << (bucket + 1)) - 1;
+            }
+        }
+        return metrics.maxNanos.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < operations.length; i++) {
+            operations[i] = new OperationMetrics();
+        }
+    }
+
+    private static final class OperationMetrics {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder samples = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+        // only used to pick the calls to sample, lost updates are harmless
+        private int tick;
+
+        private void record(long nanos) {
+            nanos = Math.max(nanos, 0);
+            samples.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+            buckets.incrementAndGet(nanos == 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos));
+        }
+    }
+}
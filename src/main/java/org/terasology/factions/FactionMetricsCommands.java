@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions;
+
+import org.terasology.entitySystem.systems.BaseComponentSystem;
+import org.terasology.entitySystem.systems.RegisterSystem;
+import org.terasology.factions.policies.FactionPolicySystem;
+import org.terasology.factions.policies.policies.Policy;
+import org.terasology.logic.console.commandSystem.annotations.Command;
+import org.terasology.logic.permission.PermissionManager;
+import org.terasology.registry.In;
+
+@RegisterSystem
+public class FactionMetricsCommands extends BaseComponentSystem {
+    @In
+    private FactionSystem factionSystem;
+    @In
+    private FactionPolicySystem factionPolicySystem;
+
+    @Command(shortDescription = "Shows faction system metrics",
+            helpText = "Lists call counts and sampled latencies of the faction systems, the number of factions "
+                    + "and the number of stored policies per policy class",
+            runOnServer = true, requiredPermission = PermissionManager.DEBUG_PERMISSION)
+    public String factionMetrics() {
+        StringBuilder report = new StringBuilder();
+        report.append("factions: ").append(factionSystem.getFactions().size()).append('\n');
+        for (Class<? extends Policy> policyClass : factionPolicySystem.getPolicyClasses()) {
+            report.append(policyClass.getSimpleName()).append(" entries: ")
+                    .append(factionSystem.getPolicyEntryCount(policyClass)).append('\n');
+        }
+        report.append(String.format("%-20s %12s %10s %10s %10s %10s%n",
+                "operation", "calls", "mean ns", "p50 ns", "p99 ns", "max ns"));
+        appendOperations(report, factionSystem.getMetrics());
+        appendOperations(report, factionPolicySystem.getMetrics());
+        return report.toString();
+    }
+
+    @Command(shortDescription = "Resets the faction system metrics",
+            runOnServer = true, requiredPermission = PermissionManager.DEBUG_PERMISSION)
+    public String factionMetricsReset() {
+        factionSystem.getMetrics().reset();
+        factionPolicySystem.getMetrics().reset();
+        return "Faction metrics reset";
+    }
+
+    private void appendOperations(StringBuilder report, FactionMetrics metrics) {
+        for (FactionMetrics.Operation operation : FactionMetrics.Operation.values()) {
+            long calls = metrics.getCount(operation);
+            if (calls == 0) {
+                continue;
+            }
+            report.append(String.format("%-20s %12d %10.0f %10d %10d %10d%n", operation, calls,
+                    metrics.getMeanNanos(operation),
+                    metrics.getPercentileNanos(operation, 0.5),
+                    metrics.getPercentileNanos(operation, 0.99),
+                    metrics.getMaxNanos(operation)));
+        }
+    }
+}
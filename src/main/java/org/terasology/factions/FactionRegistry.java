@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions;
+
+import org.terasology.factions.components.FactionComponent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hands out dense integer ids to factions in the order they are created, so relations can be stored in flat arrays
+ * indexed by id instead of maps keyed by concatenated faction names.
+ */
+public class FactionRegistry {
+    public static final int NO_FACTION = -1;
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<FactionComponent> factions = new ArrayList<>();
+    private final List<FactionComponent> factionsView = Collections.unmodifiableList(factions);
+
+    public int register(FactionComponent factionComponent) {
+        int id = factions.size();
+        factions.add(factionComponent);
+        ids.put(factionComponent.name, id);
+        return id;
+    }
+
+    /**
+     * Removes the faction and gives its id to the faction with the highest id, so that the ids stay dense.
+     *
+     * @return the previous id of the faction that took over the id, or {@link #NO_FACTION} if the removed faction had
+     * the highest id
+     */
+    public int remove(int factionId) {
+        FactionComponent removed = factions.get(factionId);
+        ids.remove(removed.name);
+        int lastId = factions.size() - 1;
+        FactionComponent last = factions.remove(lastId);
+        if (lastId == factionId) {
+            return NO_FACTION;
+        }
+        factions.set(factionId, last);
+        ids.put(last.name, factionId);
+        return lastId;
+    }
+
+    public boolean contains(String factionName) {
+        return ids.containsKey(factionName);
+    }
+
+    public boolean isValid(int factionId) {
+        return factionId >= 0 && factionId < factions.size();
+    }
+
+    public int getId(String factionName) {
+        Integer id = ids.get(factionName);
+        return id == null ? NO_FACTION : id;
+    }
+
+    public String getName(int factionId) {
+        return factions.get(factionId).name;
+    }
+
+    public FactionComponent getFaction(int factionId) {
+        return factions.get(factionId);
+    }
+
+    /**
+     * @return the number of ids handed out so far, all ids are below this value
+     */
+    public int size() {
+        return factions.size();
+    }
+
+    public List<FactionComponent> getFactions() {
+        return factionsView;
+    }
+}
@@ -0,0 +1,372 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions;
+
+import gnu.trove.map.TLongFloatMap;
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.TLongLongMap;
+import gnu.trove.map.hash.TLongFloatHashMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.map.hash.TLongLongHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.engine.Time;
+import org.terasology.entitySystem.entity.EntityRef;
+import org.terasology.entitySystem.entity.lifecycleEvents.BeforeRemoveComponent;
+import org.terasology.entitySystem.event.ReceiveEvent;
+import org.terasology.entitySystem.systems.BaseComponentSystem;
+import org.terasology.entitySystem.systems.RegisterSystem;
+import org.terasology.entitySystem.systems.UpdateSubscriberSystem;
+import org.terasology.factions.components.FactionDatabaseComponent;
+import org.terasology.factions.components.FactionReputationComponent;
+import org.terasology.factions.events.FactionRemovedEvent;
+import org.terasology.registry.In;
+import org.terasology.registry.Share;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reputation of individual faction members with each faction, e.g. how a faction views a player that attacked its
+ * guards. Reputations decay exponentially toward 0 with a common half-life.
+ * <p>
+ * Every faction id has two primitive maps keyed by entity id, one with the value and one with the game time it was
+ * last written. The decayed value is only computed when it is read, reads never change the maps. Reputations that
+ * decayed to almost 0 are dropped by a maintenance pass over one faction per {@link #PRUNE_INTERVAL_MS}, those of
+ * destroyed entities and removed factions right away. Entities are given a {@link FactionReputationComponent} with
+ * their first reputation, which tells when they are destroyed. Unloading an entity keeps its reputations. Reputations
+ * are not persisted.
+ */
+@RegisterSystem
+@Share(FactionReputationSystem.class)
+public class FactionReputationSystem extends BaseComponentSystem implements UpdateSubscriberSystem {
+    public static final float DEFAULT_HALF_LIFE = 600f;
+    public static final long PRUNE_INTERVAL_MS = 1000;
+    private static final float NEGLIGIBLE_REPUTATION = 0.001f;
+
+    private static final Logger logger = LoggerFactory.getLogger(FactionReputationSystem.class);
+
+    private FactionReputations[] reputations = new FactionReputations[0];
+    private float halfLife = DEFAULT_HALF_LIFE;
+    private final TLongIntMap entityFactionCounts = new TLongIntHashMap();
+    private long nextPruneTime;
+    private int nextPrunedFaction;
+
+    @In
+    private FactionSystem factionSystem;
+    @In
+    private Time time;
+
+    /**
+     * Receives the decayed reputation of an entity.
+     */
+    @FunctionalInterface
+    public interface ReputationConsumer {
+        void accept(long entityId, float reputation);
+    }
+
+    /**
+     * The marker component is never removed by this system, so its removal means the entity is destroyed.
+     */
+    @ReceiveEvent(components = {FactionReputationComponent.class})
+    public void onEntityDestroyed(BeforeRemoveComponent event, EntityRef entity) {
+        long entityId = entity.getId();
+        if (!entityFactionCounts.containsKey(entityId)) {
+            return;
+        }
+        for (FactionReputations factionReputations : reputations) {
+            if (factionReputations != null) {
+                factionReputations.remove(entityId);
+            }
+        }
+    }
+
+    @ReceiveEvent(components = {FactionDatabaseComponent.class})
+    public void onFactionRemoved(FactionRemovedEvent event, EntityRef entity) {
+        int factionId = event.getFactionId();
+        if (factionId < reputations.length && reputations[factionId] != null) {
+            reputations[factionId].clear();
+            reputations[factionId] = null;
+        }
+        int movedFactionId = event.getMovedFactionId();
+        if (movedFactionId != FactionRegistry.NO_FACTION && movedFactionId < reputations.length) {
+            reputations[factionId] = reputations[movedFactionId];
+            reputations[movedFactionId] = null;
+        }
+    }
+
+    @Override
+    public void update(float delta) {
+        long now = time.getGameTimeInMs();
+        if (now < nextPruneTime || reputations.length == 0) {
+            return;
+        }
+        nextPruneTime = now + PRUNE_INTERVAL_MS;
+        FactionReputations factionReputations = reputations[nextPrunedFaction];
+        nextPrunedFaction = (nextPrunedFaction + 1) % reputations.length;
+        if (factionReputations != null) {
+            factionReputations.prune(now);
+        }
+    }
+
+    /**
+     * @return the time in seconds after which a reputation has decayed to half its value
+     */
+    public float getHalfLife() {
+        return halfLife;
+    }
+
+    /**
+     * Changes the half-life, which applies to the stored reputations as well.
+     */
+    public void setHalfLife(float halfLife) {
+        if (halfLife <= 0) {
+            logger.error("Reputation half-life must be positive, was " + halfLife);
+            return;
+        }
+        this.halfLife = halfLife;
+    }
+
+    public float getReputation(EntityRef entity, String faction) {
+        return getReputation(entity, factionSystem.getFactionId(faction));
+    }
+
+    /**
+     * @return the decayed reputation, 0 if the entity has none with the faction
+     */
+    public float getReputation(EntityRef entity, int factionId) {
+        FactionReputations factionReputations = getFactionReputations(factionId);
+        return factionReputations == null ? 0 : factionReputations.get(entity.getId(), time.getGameTimeInMs());
+    }
+
+    public void setReputation(EntityRef entity, String faction, float reputation) {
+        setReputation(entity, factionSystem.getFactionId(faction), reputation);
+    }
+
+    public void setReputation(EntityRef entity, int factionId, float reputation) {
+        if (!isExistingFaction(factionId)) {
+            logger.error("Faction with id " + factionId + " does not exist");
+            return;
+        }
+        markEntity(entity);
+        getOrCreateFactionReputations(factionId).put(entity.getId(), reputation, time.getGameTimeInMs());
+    }
+
+    public float addReputation(EntityRef entity, String faction, float amount) {
+        return addReputation(entity, factionSystem.getFactionId(faction), amount);
+    }
+
+    /**
+     * Adds the amount to the decayed reputation.
+     *
+     * @return the new reputation
+     */
+    public float addReputation(EntityRef entity, int factionId, float amount) {
+        if (!isExistingFaction(factionId)) {
+            logger.error("Faction with id " + factionId + " does not exist");
+            return 0;
+        }
+        markEntity(entity);
+        long now = time.getGameTimeInMs();
+        FactionReputations factionReputations = getOrCreateFactionReputations(factionId);
+        float reputation = factionReputations.get(entity.getId(), now) + amount;
+        factionReputations.put(entity.getId(), reputation, now);
+        return reputation;
+    }
+
+    /**
+     * Reads the reputations of many entities with one faction at once, e.g. to rank the targets an agent sees.
+     *
+     * @param result receives the reputation of the entity with the same index, a new array is returned if it is null or
+     *               too small
+     */
+    public float[] getReputations(int factionId, List<EntityRef> entities, float[] result) {
+        if (result == null || result.length < entities.size()) {
+            result = new float[entities.size()];
+        }
+        FactionReputations factionReputations = getFactionReputations(factionId);
+        if (factionReputations == null) {
+            Arrays.fill(result, 0, entities.size(), 0);
+            return result;
+        }
+        long now = time.getGameTimeInMs();
+        for (int i = 0; i < entities.size(); i++) {
+            result[i] = factionReputations.get(entities.get(i).getId(), now);
+        }
+        return result;
+    }
+
+    /**
+     * Reads the reputations of the entity with every faction.
+     *
+     * @param result receives the reputation with the faction of the same id, a new array is returned if it is null or
+     *               too small
+     */
+    public float[] getReputations(EntityRef entity, float[] result) {
+        int factionCount = factionSystem.getFactions().size();
+        if (result == null || result.length < factionCount) {
+            result = new float[factionCount];
+        }
+        long entityId = entity.getId();
+        long now = time.getGameTimeInMs();
+        for (int factionId = 0; factionId < factionCount; factionId++) {
+            FactionReputations factionReputations = getFactionReputations(factionId);
+            result[factionId] = factionReputations == null ? 0 : factionReputations.get(entityId, now);
+        }
+        return result;
+    }
+
+    /**
+     * @return the candidate the faction views worst, or {@link EntityRef#NULL} if no candidate has a negative
+     * reputation
+     */
+    public EntityRef getLowestReputation(int factionId, List<EntityRef> candidates) {
+        FactionReputations factionReputations = getFactionReputations(factionId);
+        if (factionReputations == null) {
+            return EntityRef.NULL;
+        }
+        long now = time.getGameTimeInMs();
+        EntityRef lowest = EntityRef.NULL;
+        float lowestReputation = 0;
+        for (EntityRef candidate : candidates) {
+            float reputation = factionReputations.get(candidate.getId(), now);
+            if (reputation < lowestReputation) {
+                lowest = candidate;
+                lowestReputation = reputation;
+            }
+        }
+        return lowest;
+    }
+
+    /**
+     * Passes every entity with a stored reputation with the faction to the consumer, with its decayed reputation.
+     */
+    public void forEachReputation(int factionId, ReputationConsumer consumer) {
+        FactionReputations factionReputations = getFactionReputations(factionId);
+        if (factionReputations != null) {
+            factionReputations.forEach(time.getGameTimeInMs(), consumer);
+        }
+    }
+
+    /**
+     * @return the number of stored reputations over all factions
+     */
+    public int getEntryCount() {
+        int count = 0;
+        for (FactionReputations factionReputations : reputations) {
+            if (factionReputations != null) {
+                count += factionReputations.values.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the reputation after decaying for the elapsed game time
+     */
+    static float decay(float reputation, long elapsedMs, float halfLife) {
+        return (float) (reputation * Math.pow(0.5, elapsedMs / (halfLife * 1000.0)));
+    }
+
+    private boolean isExistingFaction(int factionId) {
+        return factionId >= 0 && factionId < factionSystem.getFactions().size();
+    }
+
+    private static void markEntity(EntityRef entity) {
+        if (!entity.hasComponent(FactionReputationComponent.class)) {
+            entity.addComponent(new FactionReputationComponent());
+        }
+    }
+
+    private FactionReputations getFactionReputations(int factionId) {
+        return factionId >= 0 && factionId < reputations.length ? reputations[factionId] : null;
+    }
+
+    private FactionReputations getOrCreateFactionReputations(int factionId) {
+        if (factionId >= reputations.length) {
+            reputations = Arrays.copyOf(reputations, Math.max(factionId + 1, reputations.length * 2));
+        }
+        if (reputations[factionId] == null) {
+            reputations[factionId] = new FactionReputations();
+        }
+        return reputations[factionId];
+    }
+
+    private final class FactionReputations {
+        private final TLongFloatMap values = new TLongFloatHashMap();
+        private final TLongLongMap updateTimes = new TLongLongHashMap();
+
+        float get(long entityId, long now) {
+            if (!values.containsKey(entityId)) {
+                return 0;
+            }
+            float reputation = decay(values.get(entityId), now - updateTimes.get(entityId), halfLife);
+            return Math.abs(reputation) < NEGLIGIBLE_REPUTATION ? 0 : reputation;
+        }
+
+        void put(long entityId, float reputation, long now) {
+            if (!values.containsKey(entityId)) {
+                entityFactionCounts.adjustOrPutValue(entityId, 1, 1);
+            }
+            values.put(entityId, reputation);
+            updateTimes.put(entityId, now);
+        }
+
+        void remove(long entityId) {
+            if (values.containsKey(entityId)) {
+                values.remove(entityId);
+                updateTimes.remove(entityId);
+                releaseEntity(entityId);
+            }
+        }
+
+        void clear() {
+            values.forEachKey(entityId -> {
+                releaseEntity(entityId);
+                return true;
+            });
+            values.clear();
+            updateTimes.clear();
+        }
+
+        void prune(long now) {
+            values.retainEntries((entityId, reputation) -> {
+                if (Math.abs(decay(reputation, now - updateTimes.get(entityId), halfLife)) >= NEGLIGIBLE_REPUTATION) {
+                    return true;
+                }
+                updateTimes.remove(entityId);
+                releaseEntity(entityId);
+                return false;
+            });
+        }
+
+        void forEach(long now, ReputationConsumer consumer) {
+            values.forEachEntry((entityId, reputation) -> {
+                float decayed = decay(reputation, now - updateTimes.get(entityId), halfLife);
+                if (Math.abs(decayed) >= NEGLIGIBLE_REPUTATION) {
+                    consumer.accept(entityId, decayed);
+                }
+                return true;
+            });
+        }
+
+        private void releaseEntity(long entityId) {
+            if (entityFactionCounts.adjustOrPutValue(entityId, -1, 0) <= 0) {
+                entityFactionCounts.remove(entityId);
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.terasology.factions.policies.PolicyTableSnapshot;
+import org.terasology.factions.policies.policies.InternalPolicy;
+import org.terasology.factions.policies.policies.OneWayPolicy;
+import org.terasology.factions.policies.policies.Policy;
+import org.terasology.factions.policies.policies.TwoWayPolicy;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, consistent view of all factions and their policies at one point in time.
+ * <p>
+ * Snapshots are published by {@link FactionSystem#getSnapshot()} after each flush and can be read from any thread
+ * without locking. The returned policies are shared and must not be modified. Unlike the {@link FactionSystem} getters
+ * the snapshot getters do not log, they return null if a faction or policy class is unknown.
+ */
+public final class FactionSnapshot {
+    public static final FactionSnapshot EMPTY = new FactionSnapshot(0, ImmutableList.of(), ImmutableMap.of(),
+            ImmutableMap.of());
+
+    private final long version;
+    private final List<String> factionNames;
+    private final Map<String, Integer> factionIds;
+    private final Map<Class<? extends Policy>, PolicyTableSnapshot<?>> policyTables;
+
+    FactionSnapshot(long version, List<String> factionNames, Map<String, Integer> factionIds,
+                    Map<Class<? extends Policy>, PolicyTableSnapshot<?>> policyTables) {
+        this.version = version;
+        this.factionNames = factionNames;
+        this.factionIds = factionIds;
+        this.policyTables = policyTables;
+    }
+
+    /**
+     * @return a number that increases with every published snapshot
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int getFactionCount() {
+        return factionNames.size();
+    }
+
+    public List<String> getFactionNames() {
+        return factionNames;
+    }
+
+    public int getFactionId(String factionName) {
+        Integer id = factionIds.get(factionName);
+        return id == null ? FactionRegistry.NO_FACTION : id;
+    }
+
+    public String getFactionName(int factionId) {
+        return factionNames.get(factionId);
+    }
+
+    <T extends Policy> PolicyTableSnapshot<T> getPolicyTable(Class<T> policyClass) {
+        return (PolicyTableSnapshot<T>) policyTables.get(policyClass);
+    }
+
+    Map<Class<? extends Policy>, PolicyTableSnapshot<?>> getPolicyTables() {
+        return policyTables;
+    }
+
+    Map<String, Integer> getFactionIdMap() {
+        return factionIds;
+    }
+
+    private boolean isValid(int factionId) {
+        return factionId >= 0 && factionId < factionNames.size();
+    }
+
+    public <T extends InternalPolicy> T getInternalPolicy(Class<T> internalPolicyClass, int factionId) {
+        PolicyTableSnapshot<T> policyTable = getPolicyTable(internalPolicyClass);
+        if (policyTable == null || !isValid(factionId)) {
+            return null;
+        }
+        return policyTable.resolve(factionId);
+    }
+
+    public <T extends InternalPolicy> T getInternalPolicy(Class<T> internalPolicyClass, String factionName) {
+        return getInternalPolicy(internalPolicyClass, getFactionId(factionName));
+    }
+
+    public <T extends OneWayPolicy> T getOneWayPolicy(Class<T> oneWayPolicyClass, int firstFactionId, int secondFactionId) {
+        return getExternalPolicy(oneWayPolicyClass, firstFactionId, secondFactionId);
+    }
+
+    public <T extends OneWayPolicy> T getOneWayPolicy(Class<T> oneWayPolicyClass, String firstFactionName, String secondFactionName) {
+        return getExternalPolicy(oneWayPolicyClass, getFactionId(firstFactionName), getFactionId(secondFactionName));
+    }
+
+    public <T extends TwoWayPolicy> T getTwoWayPolicy(Class<T> twoWayPolicyClass, int firstFactionId, int secondFactionId) {
+        return getExternalPolicy(twoWayPolicyClass, firstFactionId, secondFactionId);
+    }
+
+    public <T extends TwoWayPolicy> T getTwoWayPolicy(Class<T> twoWayPolicyClass, String firstFactionName, String secondFactionName) {
+        return getExternalPolicy(twoWayPolicyClass, getFactionId(firstFactionName), getFactionId(secondFactionName));
+    }
+
+    private <T extends Policy> T getExternalPolicy(Class<T> policyClass, int firstFactionId, int secondFactionId) {
+        PolicyTableSnapshot<T> policyTable = getPolicyTable(policyClass);
+        if (policyTable == null || !isValid(firstFactionId) || !isValid(secondFactionId)) {
+            return null;
+        }
+        return policyTable.resolve(firstFactionId, secondFactionId);
+    }
+}
@@ -0,0 +1,410 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions;
+
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import org.terasology.entitySystem.entity.EntityRef;
+import org.terasology.entitySystem.entity.lifecycleEvents.BeforeDeactivateComponent;
+import org.terasology.entitySystem.entity.lifecycleEvents.OnActivatedComponent;
+import org.terasology.entitySystem.entity.lifecycleEvents.OnChangedComponent;
+import org.terasology.entitySystem.event.ReceiveEvent;
+import org.terasology.entitySystem.systems.BaseComponentSystem;
+import org.terasology.entitySystem.systems.RegisterSystem;
+import org.terasology.factions.components.FactionDatabaseComponent;
+import org.terasology.factions.components.FactionMemberComponent;
+import org.terasology.factions.events.FactionCreatedEvent;
+import org.terasology.factions.events.FactionRemovedEvent;
+import org.terasology.factions.policies.PolicyView;
+import org.terasology.factions.policies.policies.OneWayPolicy;
+import org.terasology.factions.policies.policies.TwoWayPolicy;
+import org.terasology.logic.location.LocationComponent;
+import org.terasology.math.geom.Vector3f;
+import org.terasology.registry.In;
+import org.terasology.registry.Share;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * Spatial index of faction members, bucketed by faction id.
+ * <p>
+ * Every faction has its own grid of vertical columns of {@link #CELL_SIZE} x {@link #CELL_SIZE} blocks. Queries first
+ * decide per faction whether it is of interest, for example because it is hostile, and only then look at the members
+ * of the factions that passed. For factions with few members the member list is scanned directly instead of the grid.
+ */
+@RegisterSystem
+@Share(FactionSpatialIndexSystem.class)
+public class FactionSpatialIndexSystem extends BaseComponentSystem {
+    public static final float CELL_SIZE = 16f;
+
+    private Map<EntityRef, Member> members = new HashMap<>();
+    private Map<EntityRef, String> pendingMembers = new HashMap<>();
+    private FactionGrid[] grids = new FactionGrid[0];
+
+    @In
+    private FactionSystem factionSystem;
+
+    @ReceiveEvent(components = {FactionMemberComponent.class, LocationComponent.class})
+    public void onMemberActivated(OnActivatedComponent event, EntityRef entity) {
+        updateMember(entity);
+    }
+
+    @ReceiveEvent(components = {FactionMemberComponent.class, LocationComponent.class})
+    public void onMemberChanged(OnChangedComponent event, EntityRef entity) {
+        updateMember(entity);
+    }
+
+    @ReceiveEvent(components = {FactionMemberComponent.class})
+    public void onMemberDeactivated(BeforeDeactivateComponent event, EntityRef entity) {
+        removeMember(entity);
+        pendingMembers.remove(entity);
+    }
+
+    @ReceiveEvent(components = {LocationComponent.class})
+    public void onLocationDeactivated(BeforeDeactivateComponent event, EntityRef entity) {
+        removeMember(entity);
+        pendingMembers.remove(entity);
+    }
+
+    @ReceiveEvent(components = {FactionDatabaseComponent.class})
+    public void onFactionRemoved(FactionRemovedEvent event, EntityRef entity) {
+        int factionId = event.getFactionId();
+        if (factionId < grids.length && grids[factionId] != null) {
+            // members of a removed faction lose their member component, this only catches members that kept it
+            for (Member member : new ArrayList<>(grids[factionId].members)) {
+                members.remove(member.entity);
+            }
+            grids[factionId] = null;
+        }
+
+        int movedFactionId = event.getMovedFactionId();
+        if (movedFactionId != FactionRegistry.NO_FACTION && movedFactionId < grids.length) {
+            FactionGrid grid = grids[movedFactionId];
+            grids[movedFactionId] = null;
+            if (grid != null) {
+                for (Member member : grid.members) {
+                    member.factionId = factionId;
+                }
+                grids[factionId] = grid;
+            }
+        }
+    }
+
+    private void updateMember(EntityRef entity) {
+        FactionMemberComponent memberComponent = entity.getComponent(FactionMemberComponent.class);
+        LocationComponent location = entity.getComponent(LocationComponent.class);
+        int factionId = memberComponent.name == null
+                ? FactionRegistry.NO_FACTION : factionSystem.getFactionId(memberComponent.name);
+        Vector3f position = location.getWorldPosition();
+        if (factionId == FactionRegistry.NO_FACTION || Float.isNaN(position.getX())) {
+            removeMember(entity);
+            if (factionId == FactionRegistry.NO_FACTION && memberComponent.name != null) {
+                // the faction may not be created yet, e.g. for entities activated before the faction system started
+                pendingMembers.put(entity, memberComponent.name);
+            }
+            return;
+        }
+        pendingMembers.remove(entity);
+
+        Member member = members.get(entity);
+        if (member != null && member.factionId != factionId) {
+            removeMember(entity);
+            member = null;
+        }
+        if (member == null) {
+            member = new Member(entity, factionId);
+            members.put(entity, member);
+            getOrCreateGrid(factionId).add(member, position.getX(), position.getY(), position.getZ());
+        } else {
+            grids[factionId].move(member, position.getX(), position.getY(), position.getZ());
+        }
+    }
+
+    @ReceiveEvent(components = {FactionDatabaseComponent.class})
+    public void onFactionCreated(FactionCreatedEvent event, EntityRef entity) {
+        if (pendingMembers.isEmpty()) {
+            return;
+        }
+        List<EntityRef> joined = new ArrayList<>();
+        for (Map.Entry<EntityRef, String> entry : pendingMembers.entrySet()) {
+            if (entry.getValue().equals(event.getFaction())) {
+                joined.add(entry.getKey());
+            }
+        }
+        for (EntityRef member : joined) {
+            pendingMembers.remove(member);
+            if (member.hasComponent(FactionMemberComponent.class) && member.hasComponent(LocationComponent.class)) {
+                updateMember(member);
+            }
+        }
+    }
+
+    private void removeMember(EntityRef entity) {
+        Member member = members.remove(entity);
+        if (member != null) {
+            grids[member.factionId].remove(member);
+        }
+    }
+
+    private FactionGrid getOrCreateGrid(int factionId) {
+        if (factionId >= grids.length) {
+            grids = Arrays.copyOf(grids, Math.max(factionId + 1, grids.length * 2));
+        }
+        if (grids[factionId] == null) {
+            grids[factionId] = new FactionGrid();
+        }
+        return grids[factionId];
+    }
+
+    public int getIndexedMemberCount(int factionId) {
+        return factionId < grids.length && grids[factionId] != null ? grids[factionId].size() : 0;
+    }
+
+    /**
+     * @return the nearest member within the radius whose faction passes the filter, or {@link EntityRef#NULL}
+     */
+    public EntityRef findNearest(Vector3f position, float radius, IntPredicate factionFilter) {
+        float x = position.getX();
+        float y = position.getY();
+        float z = position.getZ();
+        Member nearest = null;
+        float nearestDistanceSquared = radius * radius;
+        for (int factionId = 0; factionId < grids.length; factionId++) {
+            FactionGrid grid = grids[factionId];
+            if (grid == null || grid.size() == 0 || !factionFilter.test(factionId)) {
+                continue;
+            }
+            Member candidate = grid.findNearest(x, y, z, radius, nearestDistanceSquared);
+            if (candidate != null) {
+                nearest = candidate;
+                nearestDistanceSquared = candidate.distanceSquared(x, y, z);
+            }
+        }
+        return nearest == null ? EntityRef.NULL : nearest.entity;
+    }
+
+    /**
+     * Adds all members within the radius whose faction passes the filter to the result list.
+     */
+    public void findWithin(Vector3f position, float radius, IntPredicate factionFilter, List<EntityRef> result) {
+        for (int factionId = 0; factionId < grids.length; factionId++) {
+            FactionGrid grid = grids[factionId];
+            if (grid != null && grid.size() != 0 && factionFilter.test(factionId)) {
+                grid.findWithin(position.getX(), position.getY(), position.getZ(), radius, result);
+            }
+        }
+    }
+
+    /**
+     * Finds the nearest member of a faction whose two way policy with the given faction matches the relation.
+     * The relation is checked once per faction, before any distance is computed.
+     */
+    public <T extends TwoWayPolicy> EntityRef findNearest(Vector3f position, float radius, String faction,
+                                                          Class<T> policyClass,
+                                                          Predicate<? super PolicyView<T>> relation) {
+        int factionId = factionSystem.getFactionId(faction);
+        if (factionId == FactionRegistry.NO_FACTION) {
+            return EntityRef.NULL;
+        }
+        return findNearest(position, radius, otherFactionId -> otherFactionId != factionId
+                && relation.test(factionSystem.getTwoWayPolicyView(policyClass, factionId, otherFactionId)));
+    }
+
+    /**
+     * Finds the nearest member of a faction towards which the given faction has a one way policy that matches the
+     * relation.
+     */
+    public <T extends OneWayPolicy> EntityRef findNearestTowards(Vector3f position, float radius, String faction,
+                                                                 Class<T> policyClass,
+                                                                 Predicate<? super PolicyView<T>> relation) {
+        int factionId = factionSystem.getFactionId(faction);
+        if (factionId == FactionRegistry.NO_FACTION) {
+            return EntityRef.NULL;
+        }
+        return findNearest(position, radius, otherFactionId -> otherFactionId != factionId
+                && relation.test(factionSystem.getOneWayPolicyView(policyClass, factionId, otherFactionId)));
+    }
+
+    private static long getCellKey(float x, float z) {
+        return getCellKey((int) Math.floor(x / CELL_SIZE), (int) Math.floor(z / CELL_SIZE));
+    }
+
+    private static long getCellKey(int cellX, int cellZ) {
+        return ((long) cellX << 32) | (cellZ & 0xFFFFFFFFL);
+    }
+
+    private static final class Member {
+        private final EntityRef entity;
+        private int factionId;
+        private float x;
+        private float y;
+        private float z;
+        private long cellKey;
+        private int cellIndex;
+        private int listIndex;
+
+        private Member(EntityRef entity, int factionId) {
+            this.entity = entity;
+            this.factionId = factionId;
+        }
+
+        private float distanceSquared(float px, float py, float pz) {
+            float dx = x - px;
+            float dy = y - py;
+            float dz = z - pz;
+            return dx * dx + dy * dy + dz * dz;
+        }
+    }
+
+    private static final class FactionGrid {
+        private final TLongObjectMap<List<Member>> cells = new TLongObjectHashMap<>();
+        private final List<Member> members = new ArrayList<>();
+
+        private int size() {
+            return members.size();
+        }
+
+        private void add(Member member, float x, float y, float z) {
+            member.x = x;
+            member.y = y;
+            member.z = z;
+            member.listIndex = members.size();
+            members.add(member);
+            addToCell(member, getCellKey(x, z));
+        }
+
+        private void move(Member member, float x, float y, float z) {
+            member.x = x;
+            member.y = y;
+            member.z = z;
+            long cellKey = getCellKey(x, z);
+            if (cellKey != member.cellKey) {
+                removeFromCell(member);
+                addToCell(member, cellKey);
+            }
+        }
+
+        private void remove(Member member) {
+            removeFromCell(member);
+            Member last = members.remove(members.size() - 1);
+            if (last != member) {
+                members.set(member.listIndex, last);
+                last.listIndex = member.listIndex;
+            }
+        }
+
+        private void addToCell(Member member, long cellKey) {
+            List<Member> cell = cells.get(cellKey);
+            if (cell == null) {
+                cell = new ArrayList<>();
+                cells.put(cellKey, cell);
+            }
+            member.cellKey = cellKey;
+            member.cellIndex = cell.size();
+            cell.add(member);
+        }
+
+        private void removeFromCell(Member member) {
+            List<Member> cell = cells.get(member.cellKey);
+            Member last = cell.remove(cell.size() - 1);
+            if (last != member) {
+                cell.set(member.cellIndex, last);
+                last.cellIndex = member.cellIndex;
+            }
+            if (cell.isEmpty()) {
+                cells.remove(member.cellKey);
+            }
+        }
+
+        private boolean shouldScanCells(float radius) {
+            int cellsPerSide = (int) (2 * radius / CELL_SIZE) + 2;
+            return cellsPerSide * cellsPerSide < members.size();
+        }
+
+        private Member findNearest(float x, float y, float z, float radius, float maxDistanceSquared) {
+            Member nearest = null;
+            float nearestDistanceSquared = maxDistanceSquared;
+            if (shouldScanCells(radius)) {
+                int minCellX = (int) Math.floor((x - radius) / CELL_SIZE);
+                int maxCellX = (int) Math.floor((x + radius) / CELL_SIZE);
+                int minCellZ = (int) Math.floor((z - radius) / CELL_SIZE);
+                int maxCellZ = (int) Math.floor((z + radius) / CELL_SIZE);
+                for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+                    for (int cellZ = minCellZ; cellZ <= maxCellZ; cellZ++) {
+                        List<Member> cell = cells.get(getCellKey(cellX, cellZ));
+                        if (cell == null) {
+                            continue;
+                        }
+                        for (int i = 0; i < cell.size(); i++) {
+                            Member member = cell.get(i);
+                            float distanceSquared = member.distanceSquared(x, y, z);
+                            if (distanceSquared <= nearestDistanceSquared) {
+                                nearest = member;
+                                nearestDistanceSquared = distanceSquared;
+                            }
+                        }
+                    }
+                }
+            } else {
+                for (int i = 0; i < members.size(); i++) {
+                    Member member = members.get(i);
+                    float distanceSquared = member.distanceSquared(x, y, z);
+                    if (distanceSquared <= nearestDistanceSquared) {
+                        nearest = member;
+                        nearestDistanceSquared = distanceSquared;
+                    }
+                }
+            }
+            return nearest;
+        }
+
+        private void findWithin(float x, float y, float z, float radius, List<EntityRef> result) {
+            float radiusSquared = radius * radius;
+            if (shouldScanCells(radius)) {
+                int minCellX = (int) Math.floor((x - radius) / CELL_SIZE);
+                int maxCellX = (int) Math.floor((x + radius) / CELL_SIZE);
+                int minCellZ = (int) Math.floor((z - radius) / CELL_SIZE);
+                int maxCellZ = (int) Math.floor((z + radius) / CELL_SIZE);
+                for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+                    for (int cellZ = minCellZ; cellZ <= maxCellZ; cellZ++) {
+                        List<Member> cell = cells.get(getCellKey(cellX, cellZ));
+                        if (cell != null) {
+                            addWithin(cell, x, y, z, radiusSquared, result);
+                        }
+                    }
+                }
+            } else {
+                addWithin(members, x, y, z, radiusSquared, result);
+            }
+        }
+
+        private static void addWithin(List<Member> candidates, float x, float y, float z, float radiusSquared,
+                                      List<EntityRef> result) {
+            for (int i = 0; i < candidates.size(); i++) {
+                Member member = candidates.get(i);
+                if (member.distanceSquared(x, y, z) <= radiusSquared) {
+                    result.add(member.entity);
+                }
+            }
+        }
+    }
+}
@@ -16,7 +16,10 @@
 package org.terasology.factions;
 
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.SetMultimap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,28 +34,72 @@ import org.terasology.entitySystem.systems.UpdateSubscriberSystem;
 import org.terasology.factions.components.FactionComponent;
 import org.terasology.factions.components.FactionDatabaseComponent;
 import org.terasology.factions.components.FactionMemberComponent;
+import org.terasology.factions.events.FactionCreatedEvent;
+import org.terasology.factions.events.FactionRemovedEvent;
+import org.terasology.factions.events.FactionsMergedEvent;
 import org.terasology.factions.policies.FactionPolicySystem;
+import org.terasology.factions.policies.GeneratedPolicyMemo;
+import org.terasology.factions.policies.PolicyColumns;
 import org.terasology.factions.policies.PolicyComponent;
+import org.terasology.factions.policies.PolicyCopier;
+import org.terasology.factions.policies.PolicyField;
+import org.terasology.factions.policies.PolicyKeyIndex;
+import org.terasology.factions.policies.PolicyMetadata;
+import org.terasology.factions.policies.PolicyRelationGraph;
+import org.terasology.factions.policies.PolicyRules;
+import org.terasology.factions.policies.PolicyTable;
+import org.terasology.factions.policies.PolicyTableSnapshot;
 import org.terasology.factions.policies.PolicyType;
+import org.terasology.factions.policies.PolicyView;
+import org.terasology.factions.policies.generator.BulkPolicyGenerator;
+import org.terasology.factions.policies.generator.ExternalPolicyGenerator;
+import org.terasology.factions.policies.generator.FactionPolicyGenerator;
+import org.terasology.factions.policies.generator.InternalPolicyGenerator;
 import org.terasology.factions.policies.policies.*;
 import org.terasology.logic.players.event.OnPlayerSpawnedEvent;
 import org.terasology.registry.In;
 import org.terasology.registry.Share;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicReference;
 
 @RegisterSystem
 @Share(FactionSystem.class)
 public class FactionSystem extends BaseComponentSystem implements UpdateSubscriberSystem {
     private EntityRef database;
-    private Map<String, FactionComponent> factions = new HashMap<>();
-    private SetMultimap<Class<? extends InternalPolicy>
-            , InternalPolicyChangeCallback> internalPolicySubscribers = HashMultimap.create();
-    private SetMultimap<Class<? extends ExternalPolicy>
-            , ExternalPolicyChangeCallback> externalPolicySubscribers = HashMultimap.create();
+    private FactionRegistry factionRegistry = new FactionRegistry();
+    private Map<Class<? extends Policy>, PolicyTable<?>> policyTables = new HashMap<>();
+    private Map<Class<? extends Policy>, PolicyKeyIndex> policyKeyIndices = new HashMap<>();
+    private Set<Class<? extends PolicyComponent>> dirtyPolicyComponents = new LinkedHashSet<>();
+    private SetMultimap<Class<? extends Policy>
+            , InternalPolicyChangeCallback> internalPolicySubscribers = LinkedHashMultimap.create();
+    private SetMultimap<Class<? extends Policy>
+            , ExternalPolicyChangeCallback> externalPolicySubscribers = LinkedHashMultimap.create();
+    private SetMultimap<Class<? extends Policy>
+            , PolicyBatchChangeCallback> policyBatchSubscribers = LinkedHashMultimap.create();
+    private Map<Class<? extends Policy>, PolicySubscribers> policySubscriberDispatch = new HashMap<>();
+    private Map<Class<? extends Policy>, FactionPolicyGenerator<?>> policyGenerators = new HashMap<>();
+    private SetMultimap<Class<? extends Policy>, Class<? extends Policy>> generatorDependents = HashMultimap.create();
+    private Map<Class<? extends Policy>, Map<String, PolicyRelationGraph<?>>> relationGraphs = new HashMap<>();
+    private AsyncPolicyChangeDispatcher asyncPolicyChangeDispatcher;
+    private ForkJoinPool policyGenerationPool;
+    private List<BulkPolicyGeneration<?>> bulkPolicyGenerations = new ArrayList<>();
+    private final DiplomacySimulation diplomacySimulation = new DiplomacySimulation(this);
+    private final AtomicReference<FactionSnapshot> snapshot = new AtomicReference<>(FactionSnapshot.EMPTY);
+    private boolean snapshotOutdated;
+    private boolean factionsChangedSinceSnapshot;
+    private final FactionMetrics metrics = new FactionMetrics();
 
     @In
     private EntityManager entityManager;
@@ -60,41 +107,182 @@ public class FactionSystem extends BaseComponentSystem implements UpdateSubscrib
     private PrefabManager prefabManager;
     @In
     private FactionPolicySystem factionPolicySystem;
+    @In
+    private FactionMembershipSystem factionMembershipSystem;
 
     private static final Logger logger = LoggerFactory.getLogger(FactionSystem.class);
+    private static final int ASYNC_DELIVERY_THREADS = 2;
+    private static final int ASYNC_DELIVERY_QUEUE_CAPACITY = 1024;
+    /**
+     * Time per frame for saving the results of bulk policy generations.
+     */
+    public static final long BULK_MERGE_BUDGET_MICROS = 1000;
 
     public Collection<FactionComponent> getFactions() {
-        return factions.values();
+        return factionRegistry.getFactions();
+    }
+
+    /**
+     * @return the dense id of the faction, or {@link FactionRegistry#NO_FACTION} if it does not exist
+     */
+    public int getFactionId(String factionName) {
+        return factionRegistry.getId(factionName);
+    }
+
+    public String getFactionName(int factionId) {
+        return factionRegistry.getName(factionId);
+    }
+
+    /**
+     * Lets the generator compute the policy of every faction without an own policy, on the first lookup of that
+     * faction. Replaces a previously registered generator of the policy class.
+     */
+    public <T extends InternalPolicy>
+    void registerPolicyGenerator(Class<T> policyClass, InternalPolicyGenerator<T> generator) {
+        setPolicyGenerator(policyClass, generator);
+    }
+
+    /**
+     * Lets the generator compute the policy of every pair without an own policy, on the first lookup of that pair.
+     * Replaces a previously registered generator of the policy class.
+     */
+    public <T extends ExternalPolicy>
+    void registerPolicyGenerator(Class<T> policyClass, ExternalPolicyGenerator<T> generator) {
+        setPolicyGenerator(policyClass, generator);
+    }
+
+    private <T extends Policy> void setPolicyGenerator(Class<T> policyClass, FactionPolicyGenerator<T> generator) {
+        FactionPolicyGenerator<?> previous = policyGenerators.put(policyClass, generator);
+        if (previous != null) {
+            for (Class<? extends Policy> dependency : previous.getDependencies()) {
+                generatorDependents.remove(dependency, policyClass);
+            }
+        }
+        for (Class<? extends Policy> dependency : generator.getDependencies()) {
+            generatorDependents.put(dependency, policyClass);
+        }
+        PolicyTable<T> policyTable = getPolicyTable(policyClass);
+        if (policyTable != null) {
+            policyTable.setGenerator(generator);
+        }
     }
 
     public <T extends InternalPolicy>
     void registerPolicyChangeSubscriber(Class<T> policyClass, InternalPolicyChangeCallback<T> callback) {
         internalPolicySubscribers.put(policyClass, callback);
+        policySubscriberDispatch.clear();
     }
 
     public <T extends ExternalPolicy>
     void registerPolicyChangeSubscriber(Class<T> policyClass, ExternalPolicyChangeCallback<T> callback) {
         externalPolicySubscribers.put(policyClass, callback);
+        policySubscriberDispatch.clear();
     }
 
-    private <T extends InternalPolicy> void notifyInternalPolicyChangeSubscribers(T policy, String faction) {
-        internalPolicySubscribers.get(policy.getClass()).forEach(sub -> sub.onPolicyChange(policy, faction));
+    public <T extends InternalPolicy>
+    void registerPolicyChangeSubscriber(Class<T> policyClass, InternalPolicyChangeCallback<T> callback,
+                                        PolicyChangeDelivery delivery) {
+        if (delivery == PolicyChangeDelivery.ASYNCHRONOUS) {
+            callback = getAsyncPolicyChangeDispatcher().wrap(callback);
+        }
+        registerPolicyChangeSubscriber(policyClass, callback);
+    }
+
+    public <T extends ExternalPolicy>
+    void registerPolicyChangeSubscriber(Class<T> policyClass, ExternalPolicyChangeCallback<T> callback,
+                                        PolicyChangeDelivery delivery) {
+        if (delivery == PolicyChangeDelivery.ASYNCHRONOUS) {
+            callback = getAsyncPolicyChangeDispatcher().wrap(callback);
+        }
+        registerPolicyChangeSubscriber(policyClass, callback);
+    }
+
+    /**
+     * @return the dispatcher of asynchronous subscribers, it also exposes the delivery metrics
+     */
+    public AsyncPolicyChangeDispatcher getAsyncPolicyChangeDispatcher() {
+        if (asyncPolicyChangeDispatcher == null) {
+            asyncPolicyChangeDispatcher = new AsyncPolicyChangeDispatcher(ASYNC_DELIVERY_THREADS,
+                    ASYNC_DELIVERY_QUEUE_CAPACITY);
+        }
+        return asyncPolicyChangeDispatcher;
+    }
+
+    /**
+     * The callback receives all changes of a policy class that were committed together, a plain save is delivered as
+     * a batch of one.
+     */
+    public <T extends Policy>
+    void registerPolicyBatchChangeSubscriber(Class<T> policyClass, PolicyBatchChangeCallback<T> callback) {
+        policyBatchSubscribers.put(policyClass, callback);
+        policySubscriberDispatch.clear();
+    }
+
+    /**
+     * Starts staging policy changes that are applied together, see {@link PolicyTransaction}.
+     */
+    public PolicyTransaction beginTransaction() {
+        return new PolicyTransaction(this);
+    }
+
+    /**
+     * Notifies subscribers of changes that all belong to the same policy class.
+     */
+    void notifyPolicyChangeSubscribers(List<? extends PolicyChange<?>> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        PolicySubscribers subscribers = getPolicySubscribers(changes.get(0).getPolicy().getClass());
+        if (subscribers == PolicySubscribers.NONE) {
+            return;
+        }
+        long sample = metrics.begin(FactionMetrics.Operation.SUBSCRIBER_DISPATCH);
+        for (PolicyChange<?> change : changes) {
+            if (change.isInternal()) {
+                for (InternalPolicyChangeCallback callback : subscribers.internalCallbacks) {
+                    callback.onPolicyChange(change.getPolicy(), change.getFirstFaction());
+                }
+            } else {
+                for (ExternalPolicyChangeCallback callback : subscribers.externalCallbacks) {
+                    callback.onPolicyChange(change.getPolicy(), change.getFirstFaction(), change.getSecondFaction());
+                }
+            }
+        }
+        if (subscribers.batchCallbacks.length != 0) {
+            List<PolicyChange<?>> batch = Collections.unmodifiableList(changes);
+            for (PolicyBatchChangeCallback callback : subscribers.batchCallbacks) {
+                callback.onPolicyChanges(batch);
+            }
+        }
+        metrics.end(FactionMetrics.Operation.SUBSCRIBER_DISPATCH, sample);
     }
 
-    private <T extends ExternalPolicy> void notifyExternalPolicyChangeSubscribers(T policy,
-                                                                                  String factionOne, String factionTwo) {
-        externalPolicySubscribers.get(policy.getClass()).forEach(sub -> sub.onPolicyChange(policy, factionOne, factionTwo));
+    /**
+     * The dispatch table is filled lazily per concrete policy class and dropped whenever a subscriber is registered.
+     */
+    private PolicySubscribers getPolicySubscribers(Class<? extends Policy> policyClass) {
+        PolicySubscribers subscribers = policySubscriberDispatch.get(policyClass);
+        if (subscribers == null) {
+            subscribers = PolicySubscribers.build(policyClass,
+                    internalPolicySubscribers, externalPolicySubscribers, policyBatchSubscribers);
+            policySubscriberDispatch.put(policyClass, subscribers);
+        }
+        return subscribers;
     }
 
     @Override
     public void update(float delta) {
         if (database != null) {
+            mergeBulkPolicyGenerations();
+            diplomacySimulation.update(delta);
+            flush();
             return;
         }
 
         if (entityManager.getCountOfEntitiesWith(FactionDatabaseComponent.class) != 0) {
             database = Iterables.getOnlyElement(
                     entityManager.getEntitiesWith(FactionDatabaseComponent.class));
+            initialisePolicyTables();
             return;
         }
 
@@ -109,35 +297,219 @@ public class FactionSystem extends BaseComponentSystem implements UpdateSubscrib
         if (database == null) {
             database = entityManager.create(new FactionDatabaseComponent());
         }
+        initialisePolicyTables();
 
+        // size the tables once for the prefab factions, one way tables would otherwise copy their matrix per faction
+        Collection<Prefab> factionPrefabs = prefabManager.listPrefabs(FactionComponent.class);
+        for (PolicyTable<?> policyTable : policyTables.values()) {
+            policyTable.ensureCapacity(factionRegistry.size() + factionPrefabs.size());
+        }
+        for (Prefab prefab : factionPrefabs) {
+            FactionComponent factionComponent = prefab.getComponent(FactionComponent.class);
+            createFaction(factionComponent);
+        }
+
+    }
+
+    /**
+     * Builds the policy tables and key indices from the policy components of the database, which is either new or was
+     * loaded with a saved game. Policy components of newly registered policy classes are added to the database.
+     */
+    private void initialisePolicyTables() {
         for (Class<? extends Policy> policyClass : factionPolicySystem.getPolicyClasses()) {
             final PolicyComponent policyComponent = factionPolicySystem.getPolicyComponent(policyClass);
             if (!database.hasComponent(policyComponent.getClass())) {
                 database.addComponent(policyComponent);
             }
+
+            PolicyType policyType = PolicyMetadata.of(policyClass).getPolicyType();
+            PolicyTable<Policy> policyTable = new PolicyTable<>(policyType, policyComponent.newDefaultPolicy(),
+                    factionRegistry.getFactions());
+            policyTable.setGenerator((FactionPolicyGenerator<Policy>) policyGenerators.get(policyClass));
+            for (PolicyRelationGraph<?> relationGraph : relationGraphs.getOrDefault(policyClass,
+                    Collections.emptyMap()).values()) {
+                policyTable.addRelationGraph((PolicyRelationGraph<Policy>) relationGraph);
+            }
+            policyTables.put(policyClass, policyTable);
+
+            PolicyKeyIndex keyIndex = new PolicyKeyIndex(policyType);
+            Map<String, Policy> policyMap = getPolicyComponent(policyClass).getPolicyMap();
+            for (Map.Entry<String, Policy> entry : policyMap.entrySet()) {
+                String key = entry.getKey();
+                boolean valid = PolicyRules.isRuleKey(key)
+                        ? policyTable.putRule(key, entry.getValue())
+                        : keyIndex.add(key);
+                if (!valid) {
+                    logger.warn("Malformed policy key " + key + " for Policy: " + policyClass + " -> ignoring!");
+                }
+            }
+            policyKeyIndices.put(policyClass, keyIndex);
         }
+    }
 
-        for (Prefab prefab : prefabManager.listPrefabs(FactionComponent.class)) {
-            FactionComponent factionComponent = prefab.getComponent(FactionComponent.class);
-            createFaction(factionComponent);
+    @Override
+    public void preSave() {
+        flush();
+    }
+
+    @Override
+    public void shutdown() {
+        if (asyncPolicyChangeDispatcher != null) {
+            asyncPolicyChangeDispatcher.shutdown();
+        }
+        for (BulkPolicyGeneration<?> generation : bulkPolicyGenerations) {
+            generation.cancel();
+        }
+        if (policyGenerationPool != null) {
+            policyGenerationPool.shutdownNow();
+        }
+    }
+
+    /**
+     * Generates the policies of all pairs of the existing factions in parallel, for example to fill in the relations
+     * of a newly generated world. The results are saved on the game thread once all pairs are done, spread over frames,
+     * pairs with an own policy keep it. Use the returned object to show the progress.
+     *
+     * @return the running generation, or null if the faction database does not exist yet
+     */
+    public <T extends ExternalPolicy> BulkPolicyGeneration<T> generatePolicies(Class<T> policyClass,
+                                                                             BulkPolicyGenerator<T> generator) {
+        if (!policyTables.containsKey(policyClass)) {
+            logger.error("Cannot generate " + policyClass.getName() + " before the faction database exists");
+            return null;
+        }
+        // the generator reads through the snapshot, so it has to be up to date
+        flush();
+
+        List<String> factionNames = new ArrayList<>(factionRegistry.size());
+        for (FactionComponent faction : factionRegistry.getFactions()) {
+            factionNames.add(faction.name);
+        }
+        BulkPolicyGeneration<T> generation = new BulkPolicyGeneration<>(policyClass, generator,
+                PolicyMetadata.of(policyClass).getPolicyType(), factionNames, this);
+        generation.start(getPolicyGenerationPool());
+        bulkPolicyGenerations.add(generation);
+        return generation;
+    }
+
+    /**
+     * @return the simulation that lets policy fields evolve over time, it runs in {@link #update(float)} within a
+     * per frame time budget
+     */
+    public DiplomacySimulation getDiplomacySimulation() {
+        return diplomacySimulation;
+    }
+
+    private ForkJoinPool getPolicyGenerationPool() {
+        if (policyGenerationPool == null) {
+            int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+            policyGenerationPool = new ForkJoinPool(parallelism, pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("Factions-policy-generation-" + thread.getPoolIndex());
+                return thread;
+            }, null, false);
+        }
+        return policyGenerationPool;
+    }
+
+    private void mergeBulkPolicyGenerations() {
+        if (bulkPolicyGenerations.isEmpty()) {
+            return;
+        }
+        long deadline = System.nanoTime() + BULK_MERGE_BUDGET_MICROS * 1000;
+        Iterator<BulkPolicyGeneration<?>> iterator = bulkPolicyGenerations.iterator();
+        while (iterator.hasNext()) {
+            BulkPolicyGeneration<?> generation = iterator.next();
+            if ((generation.isDone() || generation.isCancelled()) && generation.merge(deadline)) {
+                iterator.remove();
+            }
         }
+    }
 
+    /**
+     * Saves the policy components changed since the last flush. This happens once per frame anyway, call it directly
+     * only if the changes have to be persisted or replicated right away.
+     */
+    public void flush() {
+        if (dirtyPolicyComponents.isEmpty() && !snapshotOutdated) {
+            return;
+        }
+        long sample = metrics.begin(FactionMetrics.Operation.FLUSH);
+        for (Class<? extends PolicyComponent> policyComponentClass : dirtyPolicyComponents) {
+            database.saveComponent(database.getComponent(policyComponentClass));
+        }
+        dirtyPolicyComponents.clear();
+        if (snapshotOutdated) {
+            publishSnapshot();
+        }
+        metrics.end(FactionMetrics.Operation.FLUSH, sample);
+    }
+
+    /**
+     * @return the latest published snapshot, it contains all changes up to the last flush and is safe to read from
+     * any thread
+     */
+    public FactionSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    private void publishSnapshot() {
+        FactionSnapshot previous = snapshot.get();
+
+        List<String> factionNames = previous.getFactionNames();
+        Map<String, Integer> factionIds = previous.getFactionIdMap();
+        if (factionsChangedSinceSnapshot) {
+            ImmutableList.Builder<String> namesBuilder = ImmutableList.builder();
+            ImmutableMap.Builder<String, Integer> idsBuilder = ImmutableMap.builder();
+            for (int factionId = 0; factionId < factionRegistry.size(); factionId++) {
+                namesBuilder.add(factionRegistry.getName(factionId));
+                idsBuilder.put(factionRegistry.getName(factionId), factionId);
+            }
+            factionNames = namesBuilder.build();
+            factionIds = idsBuilder.build();
+        }
+
+        ImmutableMap.Builder<Class<? extends Policy>, PolicyTableSnapshot<?>> tablesBuilder = ImmutableMap.builder();
+        for (Map.Entry<Class<? extends Policy>, PolicyTable<?>> entry : policyTables.entrySet()) {
+            PolicyTable policyTable = entry.getValue();
+            PolicyTableSnapshot previousTable = previous.getPolicyTables().get(entry.getKey());
+            tablesBuilder.put(entry.getKey(), policyTable.snapshot(previousTable));
+        }
+
+        snapshot.set(new FactionSnapshot(previous.getVersion() + 1, factionNames, factionIds, tablesBuilder.build()));
+        snapshotOutdated = false;
+        factionsChangedSinceSnapshot = false;
+    }
+
+    private void markDirty(PolicyComponent policyComponent) {
+        dirtyPolicyComponents.add(policyComponent.getClass());
     }
 
     private boolean isExistingFaction(String factionName) {
-        return factions.containsKey(factionName);
+        return factionRegistry.contains(factionName);
     }
 
-    private String getTwoWayPolicyKey(String factionOne, String factionTwo) {
-        if (factionOne.compareTo(factionTwo) > 0) {
-            return factionTwo + "&" + factionOne;
-        } else {
-            return factionOne + "&" + factionTwo;
+    boolean checkFactionExists(String factionName) {
+        return requireFactionId(factionName) != FactionRegistry.NO_FACTION;
+    }
+
+    /**
+     * @return the id of the faction, or {@link FactionRegistry#NO_FACTION} after logging an error if it does not exist
+     */
+    private int requireFactionId(String factionName) {
+        int factionId = factionRegistry.getId(factionName);
+        if (factionId == FactionRegistry.NO_FACTION) {
+            logger.error("Faction " + factionName + " does not exist");
         }
+        return factionId;
     }
 
-    private String getOneWayPolicyKey(String factionOne, String factionTwo) {
-        return factionOne + ">" + factionTwo;
+    private boolean isExistingFaction(int factionId) {
+        if (!factionRegistry.isValid(factionId)) {
+            logger.error("Faction with id " + factionId + " does not exist");
+            return false;
+        }
+        return true;
     }
 
     public void createFaction(FactionComponent newFactionComponent) {
@@ -147,45 +519,445 @@ public class FactionSystem extends BaseComponentSystem implements UpdateSubscrib
             return;
         }
 
+        for (Class<? extends Policy> policyClass : factionPolicySystem.getPolicyClasses()) {
+            if (!getPolicyTable(policyClass).ensureCapacity(factionRegistry.size() + 1)) {
+                logger.error("Cannot create faction " + newFaction + ", the policy table of " + policyClass.getSimpleName()
+                        + " cannot hold more than " + factionRegistry.size() + " factions");
+                return;
+            }
+        }
+
+        long sample = metrics.begin(FactionMetrics.Operation.CREATE_FACTION);
+        factionRegistry.register(newFactionComponent);
+        snapshotOutdated = true;
+        factionsChangedSinceSnapshot = true;
 
+        // only policies that differ from the default are stored, so the new faction only needs to pick up the
+        // persisted policies that mention it and whose other faction already exists
         for (Class<? extends Policy> policyClass : factionPolicySystem.getPolicyClasses()) {
-            final Class<? extends PolicyComponent> policyComponentClass = factionPolicySystem
-                    .getPolicyComponentClass(policyClass);
+            PolicyTable<Policy> policyTable = getPolicyTable(policyClass);
+            policyTable.invalidateRules();
 
-            PolicyComponent policyComponent = database.getComponent(policyComponentClass);
+            PolicyKeyIndex keyIndex = policyKeyIndices.get(policyClass);
+            Set<String> persistedKeys = keyIndex.getKeys(newFaction);
+            if (persistedKeys.isEmpty()) {
+                continue;
+            }
 
-            PolicyType policyType = PolicyType.getPolicyType(policyClass);
-            if (policyType == PolicyType.INTERNAL) {
-                policyComponent.getPolicyMap().putIfAbsent(newFaction,
-                        policyComponent.newDefaultPolicy());
-            } else {
-                for (String existingFaction : factions.keySet()) {
-                    if (policyType == PolicyType.ONE_WAY) {
-                        policyComponent.getPolicyMap().putIfAbsent(getOneWayPolicyKey(newFaction, existingFaction),
-                                policyComponent.newDefaultPolicy());
-                        policyComponent.getPolicyMap().putIfAbsent(getOneWayPolicyKey(existingFaction, newFaction),
-                                policyComponent.newDefaultPolicy());
-                    } else {
-                        String key = getTwoWayPolicyKey(newFaction, existingFaction);
-                        policyComponent.getPolicyMap().putIfAbsent(key, policyComponent.newDefaultPolicy());
-                    }
+            PolicyComponent policyComponent = getPolicyComponent(policyClass);
+            Map<String, Policy> policyMap = policyComponent.getPolicyMap();
+            List<String> defaultKeys = new ArrayList<>();
+            for (String key : persistedKeys) {
+                int firstFactionId = factionRegistry.getId(keyIndex.getFirstFaction(key));
+                int secondFactionId = factionRegistry.getId(keyIndex.getSecondFaction(key));
+                if (firstFactionId == FactionRegistry.NO_FACTION || secondFactionId == FactionRegistry.NO_FACTION) {
+                    continue;
+                }
+                Policy stored;
+                if (policyTable.getPolicyType() == PolicyType.INTERNAL) {
+                    stored = policyTable.set(policyTable.indexOf(firstFactionId), policyMap.get(key),
+                            getRedundantPolicy(policyTable, firstFactionId, firstFactionId));
+                } else {
+                    stored = policyTable.set(policyTable.indexOf(firstFactionId, secondFactionId), policyMap.get(key),
+                            getRedundantPolicy(policyTable, firstFactionId, secondFactionId));
+                }
+                if (stored == null) {
+                    defaultKeys.add(key);
+                } else {
+                    policyMap.put(key, stored);
+                }
+            }
+            if (!defaultKeys.isEmpty()) {
+                for (String key : defaultKeys) {
+                    policyMap.remove(key);
+                    keyIndex.remove(key);
+                }
+                markDirty(policyComponent);
+            }
+        }
+        metrics.end(FactionMetrics.Operation.CREATE_FACTION, sample);
+        database.send(new FactionCreatedEvent(newFaction, factionRegistry.getId(newFaction)));
+    }
+
+    /**
+     * Removes the faction with all its policies and takes the active members out of the faction. The policy maps are
+     * cleaned up through the key index and every touched policy component is saved once. Subscribers are notified that
+     * the removed policies are back to the default policy with one batch per policy class, then a
+     * {@link FactionRemovedEvent} is sent to the faction database entity.
+     */
+    public void removeFaction(String factionName) {
+        if (!checkFactionExists(factionName)) {
+            return;
+        }
+
+        for (EntityRef member : new ArrayList<>(factionMembershipSystem.getMembers(factionName))) {
+            member.removeComponent(FactionMemberComponent.class);
+        }
+        List<List<PolicyChange<?>>> changesByClass = new ArrayList<>();
+        for (Class<? extends Policy> policyClass : factionPolicySystem.getPolicyClasses()) {
+            PolicyKeyIndex keyIndex = policyKeyIndices.get(policyClass);
+            List<String> keys = new ArrayList<>(keyIndex.getKeys(factionName));
+            if (keys.isEmpty()) {
+                continue;
+            }
+            PolicyComponent policyComponent = getPolicyComponent(policyClass);
+            Policy defaultPolicy = getPolicyTable(policyClass).getDefaultPolicy();
+            boolean internal = PolicyMetadata.of(policyClass).getPolicyType() == PolicyType.INTERNAL;
+            List<PolicyChange<?>> changes = new ArrayList<>(keys.size());
+            for (String key : keys) {
+                policyComponent.getPolicyMap().remove(key);
+                changes.add(internal
+                        ? new PolicyChange<>(defaultPolicy, factionName)
+                        : new PolicyChange<>(defaultPolicy, keyIndex.getFirstFaction(key), keyIndex.getSecondFaction(key)));
+                keyIndex.remove(key);
+            }
+            markDirty(policyComponent);
+            changesByClass.add(changes);
+        }
+
+        int factionId = factionRegistry.getId(factionName);
+        int movedFactionId = detachFaction(factionId);
+        for (List<PolicyChange<?>> changes : changesByClass) {
+            notifyPolicyChangeSubscribers(changes);
+        }
+        database.send(new FactionRemovedEvent(factionName, factionId, movedFactionId));
+    }
+
+    /**
+     * Merges the source faction into the target faction: the active members of the source join the target and the
+     * policies of the source are moved to the target, unless the target has its own policy for the same faction or
+     * pair. Policies between the two factions are dropped. Then the source is removed as by
+     * {@link #removeFaction(String)}, subscribers are notified of the moved policies with one batch per policy class
+     * and a {@link FactionsMergedEvent} is sent to the faction database entity.
+     */
+    public void mergeFactions(String sourceFaction, String targetFaction) {
+        if (!checkFactionExists(sourceFaction) || !checkFactionExists(targetFaction)) {
+            return;
+        }
+        if (sourceFaction.equals(targetFaction)) {
+            logger.error("Cannot merge faction " + sourceFaction + " into itself");
+            return;
+        }
+
+        for (EntityRef member : new ArrayList<>(factionMembershipSystem.getMembers(sourceFaction))) {
+            FactionMemberComponent memberComponent = member.getComponent(FactionMemberComponent.class);
+            memberComponent.name = targetFaction;
+            member.saveComponent(memberComponent);
+        }
+
+        List<List<PolicyChange<?>>> changesByClass = new ArrayList<>();
+        for (Class<? extends Policy> policyClass : factionPolicySystem.getPolicyClasses()) {
+            PolicyKeyIndex keyIndex = policyKeyIndices.get(policyClass);
+            List<String> keys = new ArrayList<>(keyIndex.getKeys(sourceFaction));
+            if (keys.isEmpty()) {
+                continue;
+            }
+            PolicyComponent policyComponent = getPolicyComponent(policyClass);
+            Map<String, Policy> policyMap = policyComponent.getPolicyMap();
+            List<PolicyChange<?>> changes = new ArrayList<>();
+            for (String key : keys) {
+                Policy policy = policyMap.remove(key);
+                keyIndex.remove(key);
+                PolicyChange<?> change = rekeyPolicy(keyIndex, key, policy, sourceFaction, targetFaction);
+                if (change != null) {
+                    applyPolicyChange(change);
+                    changes.add(change);
                 }
             }
+            markDirty(policyComponent);
+            if (!changes.isEmpty()) {
+                changesByClass.add(changes);
+            }
+        }
+
+        int factionId = factionRegistry.getId(sourceFaction);
+        int movedFactionId = detachFaction(factionId);
+        for (List<PolicyChange<?>> changes : changesByClass) {
+            notifyPolicyChangeSubscribers(changes);
+        }
+        database.send(new FactionsMergedEvent(sourceFaction, factionId, movedFactionId, targetFaction));
+    }
+
+    /**
+     * @return the change that moves the policy from the source to the target faction, or null if the policy is
+     * dropped because it is between both factions or the target has its own policy
+     */
+    private PolicyChange<?> rekeyPolicy(PolicyKeyIndex keyIndex, String key, Policy policy, String sourceFaction,
+                                        String targetFaction) {
+        PolicyType policyType = PolicyType.getPolicyType(policy.getClass());
+        if (policyType == PolicyType.INTERNAL) {
+            return isOwnPolicy(policy.getClass(), targetFaction) ? null : new PolicyChange<>(policy, targetFaction);
+        }
+        String firstFaction = keyIndex.getFirstFaction(key);
+        String secondFaction = keyIndex.getSecondFaction(key);
+        firstFaction = firstFaction.equals(sourceFaction) ? targetFaction : firstFaction;
+        secondFaction = secondFaction.equals(sourceFaction) ? targetFaction : secondFaction;
+        if (firstFaction.equals(secondFaction)) {
+            return null;
+        }
+        String newKey = policyType == PolicyType.ONE_WAY
+                ? PolicyKeyIndex.getOneWayKey(firstFaction, secondFaction)
+                : PolicyKeyIndex.getTwoWayKey(firstFaction, secondFaction);
+        return isOwnPolicy(policy.getClass(), newKey) ? null : new PolicyChange<>(policy, firstFaction, secondFaction);
+    }
+
+    private boolean isOwnPolicy(Class<? extends Policy> policyClass, String key) {
+        return getPolicyComponent(policyClass).getPolicyMap().containsKey(key);
+    }
+
+    /**
+     * Removes the faction from the registry and the policy tables.
+     *
+     * @return the previous id of the faction that took over the id of the removed faction
+     */
+    private int detachFaction(int factionId) {
+        int lastFactionId = factionRegistry.size() - 1;
+        for (PolicyTable<?> policyTable : policyTables.values()) {
+            policyTable.removeFaction(factionId, lastFactionId);
+        }
+        int movedFactionId = factionRegistry.remove(factionId);
+        diplomacySimulation.onFactionRemoved(factionId, movedFactionId);
+        snapshotOutdated = true;
+        factionsChangedSinceSnapshot = true;
+        return movedFactionId;
+    }
+
+    private <T extends Policy> PolicyTable<T> getPolicyTable(Class<? extends T> policyClass) {
+        return (PolicyTable<T>) policyTables.get(policyClass);
+    }
+
+    /**
+     * Resolves a faction (with the same id twice) or pair: its own policy, else a generated policy, else the rules.
+     */
+    private <T extends Policy> T resolvePolicy(PolicyTable<T> policyTable, int firstFactionId, int secondFactionId) {
+        boolean internal = policyTable.getPolicyType() == PolicyType.INTERNAL;
+        int index = internal
+                ? policyTable.indexOf(firstFactionId)
+                : policyTable.indexOf(firstFactionId, secondFactionId);
+        if (policyTable.isSet(index)) {
+            return policyTable.get(index);
+        }
+        if (policyTable.getGenerator() != null) {
+            T generated = generatePolicy(policyTable, firstFactionId, secondFactionId);
+            if (generated != null) {
+                return generated;
+            }
+        }
+        return internal
+                ? policyTable.resolveRule(firstFactionId)
+                : policyTable.resolveRule(firstFactionId, secondFactionId);
+    }
+
+    /**
+     * @return the policy that makes an own policy of the faction or pair redundant, or null if an own policy is never
+     * redundant because a generator may produce something else
+     */
+    private <T extends Policy> T getRedundantPolicy(PolicyTable<T> policyTable, int firstFactionId, int secondFactionId) {
+        if (policyTable.getGenerator() != null) {
+            return null;
+        }
+        return policyTable.getPolicyType() == PolicyType.INTERNAL
+                ? policyTable.resolveRule(firstFactionId)
+                : policyTable.resolveRule(firstFactionId, secondFactionId);
+    }
+
+    private <T extends Policy> T generatePolicy(PolicyTable<T> policyTable, int firstFactionId, int secondFactionId) {
+        GeneratedPolicyMemo<T> generatedPolicies = policyTable.getGeneratedPolicies();
+        if (generatedPolicies.contains(firstFactionId, secondFactionId)) {
+            return generatedPolicies.get(firstFactionId, secondFactionId);
+        }
+        String firstFaction = factionRegistry.getName(firstFactionId);
+        String secondFaction = factionRegistry.getName(secondFactionId);
+        if (!generatedPolicies.begin(firstFactionId, secondFactionId)) {
+            logger.warn("Generator of " + policyTable.getDefaultPolicy().getClass().getName()
+                    + " depends on its own result for " + firstFaction + ", " + secondFaction + " -> ignoring!");
+            return null;
+        }
+
+        long sample = metrics.begin(FactionMetrics.Operation.GENERATE_POLICY);
+        T policy = null;
+        try {
+            FactionPolicyGenerator<? extends T> generator = policyTable.getGenerator();
+            if (generator instanceof InternalPolicyGenerator) {
+                policy = (T) ((InternalPolicyGenerator<?>) generator).getPolicy(firstFaction, this);
+            } else {
+                policy = (T) ((ExternalPolicyGenerator<?>) generator).getPolicy(firstFaction, secondFaction, this);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Policy generator failed for " + firstFaction + ", " + secondFaction, e);
+        }
+        // failures are remembered as well, so that a broken generator does not run on every lookup
+        generatedPolicies.finish(firstFactionId, secondFactionId, policy);
+        metrics.end(FactionMetrics.Operation.GENERATE_POLICY, sample);
+        return policy;
+    }
+
+    boolean hasOwnPolicy(Class<? extends Policy> policyClass, int firstFactionId, int secondFactionId) {
+        PolicyTable<?> policyTable = policyTables.get(policyClass);
+        int index = policyTable.getPolicyType() == PolicyType.INTERNAL
+                ? policyTable.indexOf(firstFactionId)
+                : policyTable.indexOf(firstFactionId, secondFactionId);
+        return policyTable.isSet(index);
+    }
+
+    private void invalidateGeneratedPolicies(Class<? extends Policy> dependency) {
+        for (Class<? extends Policy> policyClass : generatorDependents.get(dependency)) {
+            PolicyTable<?> policyTable = policyTables.get(policyClass);
+            if (policyTable != null) {
+                policyTable.getGeneratedPolicies().clear();
+            }
+        }
+    }
+
+    <T extends Policy> T copyPolicy(T policy) {
+        if (policy == null) {
+            return null;
+        }
+        long sample = metrics.begin(FactionMetrics.Operation.CLONE);
+        T copy = (T) policy.clone();
+        metrics.end(FactionMetrics.Operation.CLONE, sample);
+        return copy;
+    }
 
-            database.saveComponent(policyComponent);
+    private <T extends Policy> T copyPolicyInto(T policy, T target) {
+        if (policy == null) {
+            return null;
+        }
+        if (policy.getClass() != target.getClass()) {
+            logger.error("Cannot copy " + policy.getClass().getName() + " into " + target.getClass().getName());
+            return null;
         }
+        long sample = metrics.begin(FactionMetrics.Operation.CLONE);
+        PolicyCopier<T> copier = (PolicyCopier<T>) PolicyCopier.of(policy.getClass());
+        copier.copyInto(policy, target);
+        metrics.end(FactionMetrics.Operation.CLONE, sample);
+        return target;
+    }
+
+    public FactionMetrics getMetrics() {
+        return metrics;
+    }
 
-        factions.put(newFaction, newFactionComponent);
+    /**
+     * @return the number of persisted policies of the policy class, 0 before the faction database exists
+     */
+    public int getPolicyEntryCount(Class<? extends Policy> policyClass) {
+        if (database == null || !policyTables.containsKey(policyClass)) {
+            return 0;
+        }
+        return getPolicyComponent(policyClass).getPolicyMap().size();
+    }
+
+    /**
+     * Column store of the primitive fields of the policy class for bulk scans, e.g. all pairs with a discount below
+     * 0.5. The columns are indexed like the policy table, see {@link PolicyColumns}, and are only valid until the next
+     * policy change.
+     *
+     * @return the columns, or null if the policy class is not registered
+     */
+    public <T extends Policy> PolicyColumns<T> getPolicyColumns(Class<T> policyClass) {
+        PolicyTable<T> policyTable = getPolicyTable(policyClass);
+        if (policyTable == null) {
+            logger.error(policyClass.getName() + " is not a registered policy class");
+            return null;
+        }
+        return policyTable.getColumns();
+    }
+
+    /**
+     * Graph of the pairs whose policy has the boolean field set, e.g. the factions that allow trade with each other,
+     * for fast neighbor, reachability and common neighbor queries, see {@link PolicyRelationGraph}. The graph follows
+     * own policies and rules, generated policies are not part of it. Asking again for the same field returns the same
+     * graph, which stays up to date with every save.
+     *
+     * @return the graph, or null if the class has no public boolean field of that name
+     */
+    public <T extends ExternalPolicy> PolicyRelationGraph<T> getRelationGraph(Class<T> policyClass, String fieldName) {
+        Map<String, PolicyRelationGraph<?>> classGraphs = relationGraphs.computeIfAbsent(policyClass,
+                key -> new HashMap<>());
+        PolicyRelationGraph<T> relationGraph = (PolicyRelationGraph<T>) classGraphs.get(fieldName);
+        if (relationGraph != null) {
+            return relationGraph;
+        }
+        PolicyField field = null;
+        for (PolicyField candidate : PolicyMetadata.of(policyClass).getFields()) {
+            if (candidate.getName().equals(fieldName) && candidate.getType() == boolean.class) {
+                field = candidate;
+            }
+        }
+        if (field == null) {
+            logger.error(policyClass.getName() + " has no boolean field " + fieldName);
+            return null;
+        }
+
+        relationGraph = new PolicyRelationGraph<>(policyClass, field);
+        classGraphs.put(fieldName, relationGraph);
+        PolicyTable<T> policyTable = getPolicyTable(policyClass);
+        if (policyTable != null) {
+            policyTable.addRelationGraph(relationGraph);
+        }
+        return relationGraph;
+    }
+
+    /**
+     * @return the number of distinct stored policy values of the policy class, which all equal pairs share
+     */
+    public int getDistinctPolicyCount(Class<? extends Policy> policyClass) {
+        if (!policyTables.containsKey(policyClass)) {
+            return 0;
+        }
+        return getPolicyTable(policyClass).getDistinctPolicyCount();
     }
 
     private <T extends Policy> PolicyComponent getPolicyComponent(Class<T> policyClass) {
-        Class<? extends PolicyComponent> policyComponentClass = factionPolicySystem.getPolicyComponentClass(policyClass);
-        return database.getComponent(policyComponentClass);
+        return database.getComponent(PolicyMetadata.of(policyClass).getPolicyComponentClass());
     }
 
     public <T extends InternalPolicy> T getInternalPolicy(Class<T> internalPolicyClass, String factionName) {
-        if (!isExistingFaction(factionName)) {
-            logger.error("Faction " + factionName + " does not exist");
+        int factionId = requireFactionId(factionName);
+        if (factionId == FactionRegistry.NO_FACTION) {
+            return null;
+        }
+
+        return getInternalPolicy(internalPolicyClass, factionId);
+    }
+
+    public <T extends InternalPolicy> T getInternalPolicy(Class<T> internalPolicyClass, int factionId) {
+        return copyPolicy(lookupInternalPolicy(internalPolicyClass, factionId));
+    }
+
+    /**
+     * Same as {@link #getInternalPolicy(Class, int)} but copies the policy into the given instance, so that a scratch
+     * policy can be reused without allocating.
+     *
+     * @return the target, or null if the policy could not be looked up
+     */
+    public <T extends InternalPolicy> T getInternalPolicy(Class<T> internalPolicyClass, int factionId, T target) {
+        return copyPolicyInto(lookupInternalPolicy(internalPolicyClass, factionId), target);
+    }
+
+    /**
+     * Same as {@link #getInternalPolicy(Class, String)} but gives read-only access to the stored policy instead of
+     * copying it, see {@link PolicyView}.
+     */
+    public <T extends InternalPolicy> PolicyView<T> getInternalPolicyView(Class<T> internalPolicyClass, String factionName) {
+        int factionId = requireFactionId(factionName);
+        if (factionId == FactionRegistry.NO_FACTION) {
+            return null;
+        }
+
+        return getInternalPolicyView(internalPolicyClass, factionId);
+    }
+
+    public <T extends InternalPolicy> PolicyView<T> getInternalPolicyView(Class<T> internalPolicyClass, int factionId) {
+        return PolicyView.of(lookupInternalPolicy(internalPolicyClass, factionId));
+    }
+
+    /**
+     * @return the stored instance, which is shared and must not be modified or handed out
+     */
+    private <T extends InternalPolicy> T lookupInternalPolicy(Class<T> internalPolicyClass, int factionId) {
+        if (!isExistingFaction(factionId)) {
             return null;
         }
 
@@ -195,91 +967,256 @@ public class FactionSystem extends BaseComponentSystem implements UpdateSubscrib
 
         }
 
-
-        return (T) ((Policy) (getPolicyComponent(internalPolicyClass).getPolicyMap().get(factionName))).clone();
+        long sample = metrics.begin(FactionMetrics.Operation.INTERNAL_LOOKUP);
+        PolicyTable<T> policyTable = getPolicyTable(internalPolicyClass);
+        T policy = resolvePolicy(policyTable, factionId, factionId);
+        metrics.end(FactionMetrics.Operation.INTERNAL_LOOKUP, sample);
+        return policy;
     }
 
     public <T extends InternalPolicy> void saveInternalPolicy(T internalPolicy, String factionName) {
-        if (!isExistingFaction(factionName)) {
-            logger.error("Faction " + factionName + " does not exist");
+        if (requireFactionId(factionName) == FactionRegistry.NO_FACTION) {
             return;
         }
 
-        PolicyComponent policyComponent = getPolicyComponent(internalPolicy.getClass());
-        policyComponent.getPolicyMap().put(factionName, internalPolicy);
+        // keep a private copy so that the stored policy never changes under a view
+        PolicyChange<T> change = new PolicyChange<>(copyPolicy(internalPolicy), factionName);
+        applyPolicyChange(change);
+        notifyPolicyChangeSubscribers(Collections.singletonList(change));
+    }
 
-        database.saveComponent(policyComponent);
+    public <T extends OneWayPolicy> T getOneWayPolicy(Class<T> oneWayPolicyClass, String firstFactionName, String secondFactionName) {
+        int firstFactionId = requireFactionId(firstFactionName);
+        int secondFactionId = requireFactionId(secondFactionName);
+        if (firstFactionId == FactionRegistry.NO_FACTION || secondFactionId == FactionRegistry.NO_FACTION) {
+            return null;
+        }
 
-        notifyInternalPolicyChangeSubscribers(internalPolicy, factionName);
+        return getOneWayPolicy(oneWayPolicyClass, firstFactionId, secondFactionId);
+    }
 
+    public <T extends OneWayPolicy> T getOneWayPolicy(Class<T> oneWayPolicyClass, int firstFactionId, int secondFactionId) {
+        return copyPolicy(lookupOneWayPolicy(oneWayPolicyClass, firstFactionId, secondFactionId));
     }
 
-    public <T extends OneWayPolicy> T getOneWayPolicy(Class<T> oneWayPolicyClass, String firstFactionName, String secondFactionName) {
-        if (!isExistingFaction(firstFactionName)) {
-            logger.error("Faction " + firstFactionName + " does not exist");
+    /**
+     * Same as {@link #getOneWayPolicy(Class, int, int)} but copies the policy into the given instance.
+     *
+     * @return the target, or null if the policy could not be looked up
+     */
+    public <T extends OneWayPolicy> T getOneWayPolicy(Class<T> oneWayPolicyClass, int firstFactionId, int secondFactionId, T target) {
+        return copyPolicyInto(lookupOneWayPolicy(oneWayPolicyClass, firstFactionId, secondFactionId), target);
+    }
+
+    /**
+     * Same as {@link #getOneWayPolicy(Class, String, String)} but gives read-only access to the stored policy instead
+     * of copying it, see {@link PolicyView}.
+     */
+    public <T extends OneWayPolicy> PolicyView<T> getOneWayPolicyView(Class<T> oneWayPolicyClass, String firstFactionName, String secondFactionName) {
+        int firstFactionId = requireFactionId(firstFactionName);
+        int secondFactionId = requireFactionId(secondFactionName);
+        if (firstFactionId == FactionRegistry.NO_FACTION || secondFactionId == FactionRegistry.NO_FACTION) {
             return null;
         }
-        if (!isExistingFaction(secondFactionName)) {
-            logger.error("Faction " + secondFactionName + " does not exist");
+
+        return getOneWayPolicyView(oneWayPolicyClass, firstFactionId, secondFactionId);
+    }
+
+    public <T extends OneWayPolicy> PolicyView<T> getOneWayPolicyView(Class<T> oneWayPolicyClass, int firstFactionId, int secondFactionId) {
+        return PolicyView.of(lookupOneWayPolicy(oneWayPolicyClass, firstFactionId, secondFactionId));
+    }
+
+    private <T extends OneWayPolicy> T lookupOneWayPolicy(Class<T> oneWayPolicyClass, int firstFactionId, int secondFactionId) {
+        if (!isExistingFaction(firstFactionId) || !isExistingFaction(secondFactionId)) {
             return null;
         }
 
-        return (T) ((Policy) (getPolicyComponent(oneWayPolicyClass).getPolicyMap()
-                .get(getOneWayPolicyKey(firstFactionName, secondFactionName)))).clone();
+        long sample = metrics.begin(FactionMetrics.Operation.ONE_WAY_LOOKUP);
+        PolicyTable<T> policyTable = getPolicyTable(oneWayPolicyClass);
+        T policy = resolvePolicy(policyTable, firstFactionId, secondFactionId);
+        metrics.end(FactionMetrics.Operation.ONE_WAY_LOOKUP, sample);
+        return policy;
     }
 
     public <T extends OneWayPolicy> void saveOneWayPolicy(T oneWayPolicy, String firstFactionName, String secondFactionName) {
-        if (!isExistingFaction(firstFactionName)) {
-            logger.error("Faction " + firstFactionName + " does not exist");
+        if (requireFactionId(firstFactionName) == FactionRegistry.NO_FACTION
+                || requireFactionId(secondFactionName) == FactionRegistry.NO_FACTION) {
             return;
         }
-        if (!isExistingFaction(secondFactionName)) {
-            logger.error("Faction " + secondFactionName + " does not exist");
-            return;
+
+        PolicyChange<T> change = new PolicyChange<>(copyPolicy(oneWayPolicy), firstFactionName, secondFactionName);
+        applyPolicyChange(change);
+        notifyPolicyChangeSubscribers(Collections.singletonList(change));
+    }
+
+    public <T extends TwoWayPolicy> T getTwoWayPolicy(Class<T> twoWayPolicyClass, String firstFactionName, String secondFactionName) {
+        int firstFactionId = requireFactionId(firstFactionName);
+        int secondFactionId = requireFactionId(secondFactionName);
+        if (firstFactionId == FactionRegistry.NO_FACTION || secondFactionId == FactionRegistry.NO_FACTION) {
+            return null;
         }
 
-        PolicyComponent policyComponent = getPolicyComponent(oneWayPolicy.getClass());
-        policyComponent.getPolicyMap()
-                .put(getOneWayPolicyKey(firstFactionName, secondFactionName), oneWayPolicy);
+        return getTwoWayPolicy(twoWayPolicyClass, firstFactionId, secondFactionId);
+    }
 
-        database.saveComponent(policyComponent);
+    public <T extends TwoWayPolicy> T getTwoWayPolicy(Class<T> twoWayPolicyClass, int firstFactionId, int secondFactionId) {
+        return copyPolicy(lookupTwoWayPolicy(twoWayPolicyClass, firstFactionId, secondFactionId));
+    }
 
-        notifyExternalPolicyChangeSubscribers(oneWayPolicy, firstFactionName, secondFactionName);
+    /**
+     * Same as {@link #getTwoWayPolicy(Class, int, int)} but copies the policy into the given instance.
+     *
+     * @return the target, or null if the policy could not be looked up
+     */
+    public <T extends TwoWayPolicy> T getTwoWayPolicy(Class<T> twoWayPolicyClass, int firstFactionId, int secondFactionId, T target) {
+        return copyPolicyInto(lookupTwoWayPolicy(twoWayPolicyClass, firstFactionId, secondFactionId), target);
     }
 
-    public <T extends TwoWayPolicy> T getTwoWayPolicy(Class<T> twoWayPolicyClass, String firstFactionName, String secondFactionName) {
-        if (!isExistingFaction(firstFactionName)) {
-            logger.error("Faction " + firstFactionName + " does not exist");
+    /**
+     * Same as {@link #getTwoWayPolicy(Class, String, String)} but gives read-only access to the stored policy instead
+     * of copying it, see {@link PolicyView}.
+     */
+    public <T extends TwoWayPolicy> PolicyView<T> getTwoWayPolicyView(Class<T> twoWayPolicyClass, String firstFactionName, String secondFactionName) {
+        int firstFactionId = requireFactionId(firstFactionName);
+        int secondFactionId = requireFactionId(secondFactionName);
+        if (firstFactionId == FactionRegistry.NO_FACTION || secondFactionId == FactionRegistry.NO_FACTION) {
             return null;
         }
-        if (!isExistingFaction(secondFactionName)) {
-            logger.error("Faction " + secondFactionName + " does not exist");
+
+        return getTwoWayPolicyView(twoWayPolicyClass, firstFactionId, secondFactionId);
+    }
+
+    public <T extends TwoWayPolicy> PolicyView<T> getTwoWayPolicyView(Class<T> twoWayPolicyClass, int firstFactionId, int secondFactionId) {
+        return PolicyView.of(lookupTwoWayPolicy(twoWayPolicyClass, firstFactionId, secondFactionId));
+    }
+
+    private <T extends TwoWayPolicy> T lookupTwoWayPolicy(Class<T> twoWayPolicyClass, int firstFactionId, int secondFactionId) {
+        if (!isExistingFaction(firstFactionId) || !isExistingFaction(secondFactionId)) {
             return null;
         }
 
-        return (T) ((Policy) (getPolicyComponent(twoWayPolicyClass).getPolicyMap()
-                .get(getTwoWayPolicyKey(firstFactionName, secondFactionName)))).clone();
-
+        long sample = metrics.begin(FactionMetrics.Operation.TWO_WAY_LOOKUP);
+        PolicyTable<T> policyTable = getPolicyTable(twoWayPolicyClass);
+        T policy = resolvePolicy(policyTable, firstFactionId, secondFactionId);
+        metrics.end(FactionMetrics.Operation.TWO_WAY_LOOKUP, sample);
+        return policy;
     }
 
     public <T extends TwoWayPolicy> void saveTwoWayPolicy(T twoWayPolicy, String firstFactionName, String secondFactionName) {
-        if (!isExistingFaction(firstFactionName)) {
-            logger.error("Faction " + firstFactionName + " does not exist");
+        if (requireFactionId(firstFactionName) == FactionRegistry.NO_FACTION
+                || requireFactionId(secondFactionName) == FactionRegistry.NO_FACTION) {
             return;
         }
-        if (!isExistingFaction(secondFactionName)) {
-            logger.error("Faction " + secondFactionName + " does not exist");
+        PolicyChange<T> change = new PolicyChange<>(copyPolicy(twoWayPolicy), firstFactionName, secondFactionName);
+        applyPolicyChange(change);
+        notifyPolicyChangeSubscribers(Collections.singletonList(change));
+    }
+
+    /**
+     * Saves a policy for every faction or pair matched by the rule key, for example "*&amp;Humans" or "#Undead&gt;*".
+     * Factions and pairs with their own policy keep it. Policy change subscribers are not notified of rules, since a
+     * rule does not change a single faction or pair.
+     *
+     * @see PolicyRules
+     */
+    public <T extends Policy> void savePolicyRule(T policy, String ruleKey) {
+        if (!PolicyRules.isRuleKey(ruleKey)) {
+            logger.error(ruleKey + " is not a policy rule key");
             return;
         }
-        PolicyComponent policyComponent = getPolicyComponent(twoWayPolicy.getClass());
-        policyComponent.getPolicyMap()
-                .put(getTwoWayPolicyKey(firstFactionName, secondFactionName), twoWayPolicy);
+        PolicyTable<Policy> policyTable = getPolicyTable(policy.getClass());
+        if (policyTable == null) {
+            logger.error(policy.getClass().getName() + " is not a registered policy class");
+            return;
+        }
+        Policy copy = copyPolicy(policy);
+        if (!policyTable.putRule(ruleKey, copy)) {
+            logger.error("Malformed policy rule key " + ruleKey + " for Policy: " + policy.getClass());
+            return;
+        }
+        PolicyComponent policyComponent = getPolicyComponent(policy.getClass());
+        policyComponent.getPolicyMap().put(ruleKey, copy);
+        markDirty(policyComponent);
+        invalidateGeneratedPolicies(policy.getClass());
+        snapshotOutdated = true;
+    }
 
-        database.saveComponent(policyComponent);
+    public void removePolicyRule(Class<? extends Policy> policyClass, String ruleKey) {
+        PolicyTable<Policy> policyTable = getPolicyTable(policyClass);
+        if (policyTable == null || !policyTable.removeRule(ruleKey)) {
+            return;
+        }
+        PolicyComponent policyComponent = getPolicyComponent(policyClass);
+        policyComponent.getPolicyMap().remove(ruleKey);
+        markDirty(policyComponent);
+        invalidateGeneratedPolicies(policyClass);
+        snapshotOutdated = true;
+    }
 
-        notifyExternalPolicyChangeSubscribers(twoWayPolicy, firstFactionName, secondFactionName);
+    /**
+     * @return whether {@link #applyPolicyChange(PolicyChange)} can store the change: its policy class is registered
+     * with the type of the change and its factions exist
+     */
+    boolean isApplicable(PolicyChange<?> change) {
+        Class<? extends Policy> policyClass = change.getPolicy().getClass();
+        PolicyTable<?> policyTable = policyTables.get(policyClass);
+        if (policyTable == null) {
+            logger.error(policyClass.getName() + " is not a registered policy class");
+            return false;
+        }
+        if ((policyTable.getPolicyType() == PolicyType.INTERNAL) != change.isInternal()) {
+            logger.error("Policy change of " + policyClass.getName() + " does not match its policy type "
+                    + policyTable.getPolicyType());
+            return false;
+        }
+        return checkFactionExists(change.getFirstFaction())
+                && (change.isInternal() || checkFactionExists(change.getSecondFaction()));
     }
 
+    /**
+     * Stores the policy of the change, the factions of the change must exist.
+     */
+    void applyPolicyChange(PolicyChange<?> change) {
+        long sample = metrics.begin(FactionMetrics.Operation.SAVE);
+        Policy policy = change.getPolicy();
+        PolicyComponent policyComponent = getPolicyComponent(policy.getClass());
+        PolicyTable<Policy> policyTable = getPolicyTable(policy.getClass());
+        int firstFactionId = factionRegistry.getId(change.getFirstFaction());
+
+        String key;
+        int index;
+        Policy rulePolicy;
+        if (policyTable.getPolicyType() == PolicyType.INTERNAL) {
+            key = change.getFirstFaction();
+            index = policyTable.indexOf(firstFactionId);
+            rulePolicy = getRedundantPolicy(policyTable, firstFactionId, firstFactionId);
+        } else {
+            int secondFactionId = factionRegistry.getId(change.getSecondFaction());
+            key = policyTable.getPolicyType() == PolicyType.ONE_WAY
+                    ? PolicyKeyIndex.getOneWayKey(change.getFirstFaction(), change.getSecondFaction())
+                    : PolicyKeyIndex.getTwoWayKey(change.getFirstFaction(), change.getSecondFaction());
+            index = policyTable.indexOf(firstFactionId, secondFactionId);
+            rulePolicy = getRedundantPolicy(policyTable, firstFactionId, secondFactionId);
+        }
+
+        // equal policies share one stored instance and policies equal to the default are not persisted at all
+        Policy stored = policyTable.set(index, policy, rulePolicy);
+        if (stored == null) {
+            policyComponent.getPolicyMap().remove(key);
+            policyKeyIndices.get(policy.getClass()).remove(key);
+        } else {
+            policyComponent.getPolicyMap().put(key, stored);
+            policyKeyIndices.get(policy.getClass()).add(key);
+        }
+        if (policyTable.getPolicyType() != PolicyType.INTERNAL) {
+            policyTable.updateRelationGraphs(firstFactionId, factionRegistry.getId(change.getSecondFaction()));
+        }
+
+        markDirty(policyComponent);
+        invalidateGeneratedPolicies(policy.getClass());
+        snapshotOutdated = true;
+        metrics.end(FactionMetrics.Operation.SAVE, sample);
+    }
 
     @ReceiveEvent
     public void onPlayerSpawn(OnPlayerSpawnedEvent event, EntityRef entity) {
@@ -295,4 +1232,9 @@ public class FactionSystem extends BaseComponentSystem implements UpdateSubscrib
     public static interface ExternalPolicyChangeCallback<T extends Policy> {
         public void onPolicyChange(T policy, String factionOne, String factionTwo);
     }
+
+    @FunctionalInterface
+    public static interface PolicyBatchChangeCallback<T extends Policy> {
+        public void onPolicyChanges(List<PolicyChange<T>> changes);
+    }
 }
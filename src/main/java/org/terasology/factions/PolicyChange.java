@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions;
+
+import org.terasology.factions.policies.policies.Policy;
+
+/**
+ * A policy that was saved for a faction, or for a pair of factions in case of an external policy.
+ */
+public final class PolicyChange<T extends Policy> {
+    private final T policy;
+    private final String firstFaction;
+    private final String secondFaction;
+
+    PolicyChange(T policy, String faction) {
+        this(policy, faction, null);
+    }
+
+    PolicyChange(T policy, String firstFaction, String secondFaction) {
+        this.policy = policy;
+        this.firstFaction = firstFaction;
+        this.secondFaction = secondFaction;
+    }
+
+    /**
+     * @return the saved policy, it is shared with the faction system and must not be modified
+     */
+    public T getPolicy() {
+        return policy;
+    }
+
+    public String getFirstFaction() {
+        return firstFaction;
+    }
+
+    /**
+     * @return the second faction, or null for internal policies
+     */
+    public String getSecondFaction() {
+        return secondFaction;
+    }
+
+    public boolean isInternal() {
+        return secondFaction == null;
+    }
+
+    @Override
+    public String toString() {
+        if (isInternal()) {
+            return policy.getClass().getSimpleName() + "[" + firstFaction + "]";
+        }
+        return policy.getClass().getSimpleName() + "[" + firstFaction + ", " + secondFaction + "]";
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions;
+
+import com.google.common.collect.SetMultimap;
+import org.terasology.factions.policies.policies.Policy;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Dispatch table entry with the subscribers of one concrete policy class, including the subscribers registered on its
+ * superclasses.
+ */
+final class PolicySubscribers {
+    static final PolicySubscribers NONE = new PolicySubscribers(new FactionSystem.InternalPolicyChangeCallback[0],
+            new FactionSystem.ExternalPolicyChangeCallback[0], new FactionSystem.PolicyBatchChangeCallback[0]);
+
+    final FactionSystem.InternalPolicyChangeCallback[] internalCallbacks;
+    final FactionSystem.ExternalPolicyChangeCallback[] externalCallbacks;
+    final FactionSystem.PolicyBatchChangeCallback[] batchCallbacks;
+
+    private PolicySubscribers(FactionSystem.InternalPolicyChangeCallback[] internalCallbacks,
+                              FactionSystem.ExternalPolicyChangeCallback[] externalCallbacks,
+                              FactionSystem.PolicyBatchChangeCallback[] batchCallbacks) {
+        this.internalCallbacks = internalCallbacks;
+        this.externalCallbacks = externalCallbacks;
+        this.batchCallbacks = batchCallbacks;
+    }
+
+    boolean isEmpty() {
+        return internalCallbacks.length == 0 && externalCallbacks.length == 0 && batchCallbacks.length == 0;
+    }
+
+    static PolicySubscribers build(Class<? extends Policy> policyClass,
+                                   SetMultimap<Class<? extends Policy>, FactionSystem.InternalPolicyChangeCallback> internalSubscribers,
+                                   SetMultimap<Class<? extends Policy>, FactionSystem.ExternalPolicyChangeCallback> externalSubscribers,
+                                   SetMultimap<Class<? extends Policy>, FactionSystem.PolicyBatchChangeCallback> batchSubscribers) {
+        Set<FactionSystem.InternalPolicyChangeCallback> internalCallbacks = new LinkedHashSet<>();
+        Set<FactionSystem.ExternalPolicyChangeCallback> externalCallbacks = new LinkedHashSet<>();
+        Set<FactionSystem.PolicyBatchChangeCallback> batchCallbacks = new LinkedHashSet<>();
+        Class<?> type = policyClass;
+        while (type != null && Policy.class.isAssignableFrom(type)) {
+            Class<? extends Policy> subscribedClass = (Class<? extends Policy>) type;
+            internalCallbacks.addAll(internalSubscribers.get(subscribedClass));
+            externalCallbacks.addAll(externalSubscribers.get(subscribedClass));
+            batchCallbacks.addAll(batchSubscribers.get(subscribedClass));
+            type = type.getSuperclass();
+        }
+
+        PolicySubscribers subscribers = new PolicySubscribers(
+                internalCallbacks.toArray(new FactionSystem.InternalPolicyChangeCallback[internalCallbacks.size()]),
+                externalCallbacks.toArray(new FactionSystem.ExternalPolicyChangeCallback[externalCallbacks.size()]),
+                batchCallbacks.toArray(new FactionSystem.PolicyBatchChangeCallback[batchCallbacks.size()]));
+        return subscribers.isEmpty() ? NONE : subscribers;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.factions.policies.PolicyKeyIndex;
+import org.terasology.factions.policies.policies.InternalPolicy;
+import org.terasology.factions.policies.policies.OneWayPolicy;
+import org.terasology.factions.policies.policies.Policy;
+import org.terasology.factions.policies.policies.TwoWayPolicy;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stages policy changes and applies them together on {@link #commit()}.
+ * <p>
+ * Changes are validated when they are staged and again before the commit applies any of them, so a commit applies
+ * either every staged change or, if a faction was removed in between, none of them. Saving the same key twice keeps
+ * only the last policy. On commit every touched policy component is saved once and subscribers are notified only
+ * after all changes were applied, batch subscribers with one callback per policy class.
+ *
+ * @see FactionSystem#beginTransaction()
+ */
+public class PolicyTransaction {
+    private static final Logger logger = LoggerFactory.getLogger(PolicyTransaction.class);
+
+    private final FactionSystem factionSystem;
+    private final Map<Class<? extends Policy>, Map<String, PolicyChange<?>>> changes = new LinkedHashMap<>();
+    private boolean finished;
+
+    PolicyTransaction(FactionSystem factionSystem) {
+        this.factionSystem = factionSystem;
+    }
+
+    public <T extends InternalPolicy> void saveInternalPolicy(T internalPolicy, String factionName) {
+        ensureOpen();
+        if (factionSystem.checkFactionExists(factionName)) {
+            stage(new PolicyChange<>(factionSystem.copyPolicy(internalPolicy), factionName), factionName);
+        }
+    }
+
+    public <T extends OneWayPolicy> void saveOneWayPolicy(T oneWayPolicy, String firstFactionName, String secondFactionName) {
+        ensureOpen();
+        if (factionSystem.checkFactionExists(firstFactionName)
+                && factionSystem.checkFactionExists(secondFactionName)) {
+            stage(new PolicyChange<>(factionSystem.copyPolicy(oneWayPolicy), firstFactionName, secondFactionName),
+                    PolicyKeyIndex.getOneWayKey(firstFactionName, secondFactionName));
+        }
+    }
+
+    public <T extends TwoWayPolicy> void saveTwoWayPolicy(T twoWayPolicy, String firstFactionName, String secondFactionName) {
+        ensureOpen();
+        if (factionSystem.checkFactionExists(firstFactionName)
+                && factionSystem.checkFactionExists(secondFactionName)) {
+            stage(new PolicyChange<>(factionSystem.copyPolicy(twoWayPolicy), firstFactionName, secondFactionName),
+                    PolicyKeyIndex.getTwoWayKey(firstFactionName, secondFactionName));
+        }
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    /**
+     * @return false if a staged change can no longer be applied, in which case no change is applied
+     */
+    public boolean commit() {
+        ensureOpen();
+        finished = true;
+
+        // a faction may have been removed since the change was staged
+        for (Map<String, PolicyChange<?>> classChanges : changes.values()) {
+            for (PolicyChange<?> change : classChanges.values()) {
+                if (!factionSystem.isApplicable(change)) {
+                    logger.error("Discarding policy transaction, a staged change can no longer be applied");
+                    changes.clear();
+                    return false;
+                }
+            }
+        }
+
+        List<List<PolicyChange<?>>> changesByClass = new ArrayList<>(changes.size());
+        for (Map<String, PolicyChange<?>> classChanges : changes.values()) {
+            List<PolicyChange<?>> changeList = new ArrayList<>(classChanges.values());
+            for (PolicyChange<?> change : changeList) {
+                factionSystem.applyPolicyChange(change);
+            }
+            changesByClass.add(changeList);
+        }
+        changes.clear();
+
+        for (List<PolicyChange<?>> changeList : changesByClass) {
+            if (!changeList.isEmpty()) {
+                factionSystem.notifyPolicyChangeSubscribers(changeList);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Discards all staged changes.
+     */
+    public void rollback() {
+        changes.clear();
+        finished = true;
+    }
+
+    private void stage(PolicyChange<?> change, String key) {
+        changes.computeIfAbsent(change.getPolicy().getClass(), k -> new LinkedHashMap<>()).put(key, change);
+    }
+
+    private void ensureOpen() {
+        if (finished) {
+            throw new IllegalStateException("Policy transaction was already committed or rolled back");
+        }
+    }
+}
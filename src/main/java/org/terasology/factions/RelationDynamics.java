@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions;
+
+/**
+ * How a float or double field of an external policy evolves over time, e.g. trust that decays toward neutral. Works
+ * on whole runs of pairs at once, see {@link org.terasology.factions.policies.PolicyColumns#readDoubles}, so that
+ * implementations are plain loops over arrays.
+ *
+ * @see DiplomacySimulation#register(Class, String, RelationDynamics)
+ */
+@FunctionalInterface
+public interface RelationDynamics {
+    /**
+     * Computes the values after the elapsed time. The two arrays may be the same array.
+     *
+     * @param values the current values of the run
+     * @param next   receives the new values
+     * @param length the number of pairs in the run
+     * @param elapsed the seconds since the run was advanced last
+     */
+    void advance(double[] values, double[] next, int length, float elapsed);
+
+    default RelationDynamics andThen(RelationDynamics after) {
+        return (values, next, length, elapsed) -> {
+            advance(values, next, length, elapsed);
+            after.advance(next, next, length, elapsed);
+        };
+    }
+
+    /**
+     * Exponential decay toward the target, values within 1e-6 of the target snap to it so that the pairs stop
+     * changing.
+     */
+    static RelationDynamics decay(double target, double halfLifeSeconds) {
+        double rate = Math.log(2) / halfLifeSeconds;
+        return (values, next, length, elapsed) -> {
+            double factor = Math.exp(-rate * elapsed);
+            for (int i = 0; i < length; i++) {
+                double value = target + (values[i] - target) * factor;
+                next[i] = Math.abs(value - target) < 1e-6 ? target : value;
+            }
+        };
+    }
+
+    /**
+     * Linear drift by the rate per second, clamped to the bounds.
+     */
+    static RelationDynamics drift(double ratePerSecond, double min, double max) {
+        return (values, next, length, elapsed) -> {
+            double change = ratePerSecond * elapsed;
+            for (int i = 0; i < length; i++) {
+                next[i] = Math.min(max, Math.max(min, values[i] + change));
+            }
+        };
+    }
+}
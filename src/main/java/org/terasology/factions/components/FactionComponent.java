@@ -19,6 +19,10 @@ import org.terasology.entitySystem.Component;
 
 public class FactionComponent implements Component{
     public String name;
+    /**
+     * Optional, policy rules can refer to all factions of a category with "#category".
+     */
+    public String category;
 
     public FactionComponent() {
     }
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.events;
+
+import org.terasology.entitySystem.event.Event;
+
+/**
+ * Sent to the faction database entity after a faction was registered and its persisted policies were loaded.
+ */
+public class FactionCreatedEvent implements Event {
+    private final String faction;
+    private final int factionId;
+
+    public FactionCreatedEvent(String faction, int factionId) {
+        this.faction = faction;
+        this.factionId = factionId;
+    }
+
+    public String getFaction() {
+        return faction;
+    }
+
+    public int getFactionId() {
+        return factionId;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.events;
+
+import org.terasology.entitySystem.event.Event;
+
+/**
+ * Sent to the faction database entity after a faction and all its policies were removed. Faction ids stay dense, so
+ * the faction with the highest id takes over the id of the removed faction.
+ */
+public class FactionRemovedEvent implements Event {
+    private final String faction;
+    private final int factionId;
+    private final int movedFactionId;
+
+    public FactionRemovedEvent(String faction, int factionId, int movedFactionId) {
+        this.faction = faction;
+        this.factionId = factionId;
+        this.movedFactionId = movedFactionId;
+    }
+
+    public String getFaction() {
+        return faction;
+    }
+
+    /**
+     * @return the id the removed faction had, which now belongs to the moved faction if there is one
+     */
+    public int getFactionId() {
+        return factionId;
+    }
+
+    /**
+     * @return the previous id of the faction that took over {@link #getFactionId()}, or
+     * {@link org.terasology.factions.FactionRegistry#NO_FACTION} if no faction was moved
+     */
+    public int getMovedFactionId() {
+        return movedFactionId;
+    }
+}
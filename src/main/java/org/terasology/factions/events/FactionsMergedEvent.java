@@ -0,0 +1,33 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.events;
+
+/**
+ * Sent instead of a {@link FactionRemovedEvent} when a faction was merged into another one. The members and the
+ * policies of the removed faction were moved to the target faction, where the target did not have its own policy.
+ */
+public class FactionsMergedEvent extends FactionRemovedEvent {
+    private final String targetFaction;
+
+    public FactionsMergedEvent(String faction, int factionId, int movedFactionId, String targetFaction) {
+        super(faction, factionId, movedFactionId);
+        this.targetFaction = targetFaction;
+    }
+
+    public String getTargetFaction() {
+        return targetFaction;
+    }
+}
@@ -29,9 +29,9 @@ import org.terasology.entitySystem.prefab.Prefab;
 import org.terasology.entitySystem.prefab.PrefabManager;
 import org.terasology.entitySystem.systems.BaseComponentSystem;
 import org.terasology.entitySystem.systems.RegisterSystem;
+import org.terasology.factions.FactionMetrics;
 import org.terasology.factions.policies.policies.Policy;
 import org.terasology.factions.ui.FactionPolicyComponent;
-import org.terasology.reflection.MappedContainer;
 import org.terasology.registry.In;
 import org.terasology.registry.Share;
 
@@ -46,6 +46,7 @@ public class FactionPolicySystem extends BaseComponentSystem{
     private BiMap<Class<? extends Policy>, FactionPolicyComponent> policies = HashBiMap.create();
     private Map<String, List<FactionPolicyComponent>> categoryComponents = Maps.newHashMap();
     private List<String> categories;
+    private final FactionMetrics metrics = new FactionMetrics();
 
     @In
     private EntityManager entityManager;
@@ -58,8 +59,14 @@ public class FactionPolicySystem extends BaseComponentSystem{
     }
 
     public void refreshLibrary() {
+        long sample = metrics.begin(FactionMetrics.Operation.REFRESH_LIBRARY);
         refreshPrefabs();
         sortLibrary();
+        metrics.end(FactionMetrics.Operation.REFRESH_LIBRARY, sample);
+    }
+
+    public FactionMetrics getMetrics() {
+        return metrics;
     }
 
     private void sortLibrary() {
@@ -79,13 +86,11 @@ public class FactionPolicySystem extends BaseComponentSystem{
 
             final FactionPolicyComponent factionPolicyComponent = entityRef.getComponent(FactionPolicyComponent.class);
             PolicyComponent policyComponent = null;
-            Class<? extends Policy> policyClass = null;
 
             int i = 0;
             for (Component component : entityRef.iterateComponents()) {
                 if (component instanceof PolicyComponent) {
                     policyComponent = (PolicyComponent) component;
-                    policyClass = policyComponent.newDefaultPolicy().getClass();
                 }
                 i++;
             }
@@ -101,36 +106,53 @@ public class FactionPolicySystem extends BaseComponentSystem{
                 continue;
             }
 
-            if (!policyClass.isAnnotationPresent(MappedContainer.class)) {
-                logger.warn("Faction Policy is not MappedContainer -> ignoring! for Policy: "
-                        + policyClass + " name=" + factionPolicyComponent.name);
-                continue;
-            }
-
-            try {
-                policyClass.getConstructor();
-            } catch (NoSuchMethodException e) {
-                logger.warn("Faction Policy cannot be constructed! -> ignoring! "
-                        + policyClass + " name=" + factionPolicyComponent.name);
+            if (!registerPolicy(factionPolicyComponent, policyComponent)) {
                 continue;
             }
 
-            policies.put(policyClass, factionPolicyComponent);
-            policyComponents.put(policyClass, policyComponent);
-            categoryComponents.computeIfAbsent(factionPolicyComponent.category, k -> new ArrayList<>());
-            categoryComponents.get(factionPolicyComponent.category).add(factionPolicyComponent);
+            entityRef.destroy();
+        }
+    }
 
-            logger.debug("Found Faction Policy: name=" + factionPolicyComponent.name);
+    /**
+     * Adds a policy to the library, {@link #refreshLibrary()} has to be called afterwards to sort the library.
+     *
+     * @return false if the policy class is not valid and was ignored
+     */
+    boolean registerPolicy(FactionPolicyComponent factionPolicyComponent, PolicyComponent policyComponent) {
+        Class<? extends Policy> policyClass = policyComponent.newDefaultPolicy().getClass();
+        PolicyMetadata metadata = PolicyMetadata.of(policyClass);
+
+        if (!metadata.isMappedContainer()) {
+            logger.warn("Faction Policy is not MappedContainer -> ignoring! for Policy: "
+                    + policyClass + " name=" + factionPolicyComponent.name);
+            return false;
+        }
 
-            entityRef.destroy();
+        if (!metadata.isConstructible()) {
+            logger.warn("Faction Policy cannot be constructed! -> ignoring! "
+                    + policyClass + " name=" + factionPolicyComponent.name);
+            return false;
         }
+
+        policies.put(policyClass, factionPolicyComponent);
+        policyComponents.put(policyClass, policyComponent);
+        metadata.bind(policyComponent);
+        categoryComponents.computeIfAbsent(factionPolicyComponent.category, k -> new ArrayList<>());
+        categoryComponents.get(factionPolicyComponent.category).add(factionPolicyComponent);
+
+        logger.debug("Found Faction Policy: name=" + factionPolicyComponent.name);
+        return true;
     }
 
     public Policy constructPolicy(Class<? extends Policy> policyClass) {
+        long sample = metrics.begin(FactionMetrics.Operation.CONSTRUCT_POLICY);
         try {
-            return policyClass.getConstructor().newInstance();
-        } catch (Exception e) {
-            e.printStackTrace();
+            return PolicyMetadata.of(policyClass).newInstance();
+        } catch (RuntimeException e) {
+            logger.error("Faction Policy cannot be constructed: " + policyClass, e);
+        } finally {
+            metrics.end(FactionMetrics.Operation.CONSTRUCT_POLICY, sample);
         }
         return null;
     }
@@ -144,7 +166,7 @@ public class FactionPolicySystem extends BaseComponentSystem{
     }
 
     public Class<? extends PolicyComponent> getPolicyComponentClass(Class<? extends Policy> policy) {
-        return policyComponents.get(policy).getClass();
+        return PolicyMetadata.of(policy).getPolicyComponentClass();
     }
 
     public List<String> getCategories() {
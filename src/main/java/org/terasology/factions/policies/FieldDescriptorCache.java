@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.policies;
+
+import org.terasology.factions.policies.policies.Policy;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Field descriptors of the policies of one class, generated from the public fields of the class. There is one cache
+ * per class, see {@link #of(Class)}.
+ * <p>
+ * Names and descriptions are known per class. The value string of a field is only rebuilt when the field differs from
+ * the policy described last: primitive fields are compared by value without boxing, strings, enums and boxed
+ * primitives by reference. Collections, maps and arrays are compared by reference and size, so an in-place change
+ * that keeps the size is only noticed once the field refers to another instance; stored policies are shared and must
+ * not be changed in place anyway. Other field types are converted on every call. The cache is thread-safe and the
+ * returned lists are immutable, the same list is returned as long as nothing changed.
+ */
+public final class FieldDescriptorCache {
+    private static final ClassValue<FieldDescriptorCache> CACHES = new ClassValue<FieldDescriptorCache>() {
+        @Override
+        protected FieldDescriptorCache computeValue(Class<?> type) {
+            return new FieldDescriptorCache((Class<? extends Policy>) type);
+        }
+    };
+
+    private final List<PolicyField> fields;
+    private final long[] lastBits;
+    private final Object[] lastReferences;
+    private final int[] lastSizes;
+    private final FieldDescriptor[] descriptors;
+    private List<FieldDescriptor> descriptorList;
+    private boolean initialized;
+
+    private FieldDescriptorCache(Class<? extends Policy> policyClass) {
+        this.fields = PolicyMetadata.of(policyClass).getFields();
+        this.lastBits = new long[fields.size()];
+        this.lastReferences = new Object[fields.size()];
+        this.lastSizes = new int[fields.size()];
+        this.descriptors = new FieldDescriptor[fields.size()];
+    }
+
+    public static FieldDescriptorCache of(Class<? extends Policy> policyClass) {
+        return CACHES.get(policyClass);
+    }
+
+    /**
+     * @return the descriptors of the policy, the list of the previous call if no value changed
+     */
+    public synchronized List<FieldDescriptor> describe(Policy policy) {
+        boolean changed = !initialized;
+        for (int i = 0; i < descriptors.length; i++) {
+            PolicyField field = fields.get(i);
+            if (field.isPrimitive()) {
+                long bits = field.getBits(policy);
+                if (initialized && bits == lastBits[i]) {
+                    continue;
+                }
+                lastBits[i] = bits;
+                descriptors[i] = describe(field, field.get(policy));
+                changed = true;
+            } else {
+                Object value = field.get(policy);
+                int size = sizeOf(value);
+                boolean unchanged = isImmutable(value) || size >= 0 && size == lastSizes[i];
+                if (initialized && value == lastReferences[i] && unchanged) {
+                    continue;
+                }
+                lastReferences[i] = value;
+                lastSizes[i] = size;
+                descriptors[i] = describe(field, value);
+                changed = true;
+            }
+        }
+        initialized = true;
+        if (changed) {
+            descriptorList = Collections.unmodifiableList(Arrays.asList(descriptors.clone()));
+        }
+        return descriptorList;
+    }
+
+    private static FieldDescriptor describe(PolicyField field, Object value) {
+        return new FieldDescriptor(field.getName(), String.valueOf(value), field.getDescription());
+    }
+
+    /**
+     * @return the size of a collection, map or array, -1 for any other value
+     */
+    private static int sizeOf(Object value) {
+        if (value instanceof Collection) {
+            return ((Collection<?>) value).size();
+        } else if (value instanceof Map) {
+            return ((Map<?, ?>) value).size();
+        } else if (value != null && value.getClass().isArray()) {
+            return Array.getLength(value);
+        }
+        return -1;
+    }
+
+    private static boolean isImmutable(Object value) {
+        return value == null || value instanceof String || value instanceof Enum || value instanceof Number
+                || value instanceof Boolean || value instanceof Character;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.policies;
+
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import org.terasology.factions.policies.policies.Policy;
+
+/**
+ * Remembers the policies a generator produced, keyed by faction id or faction id pair. Two way pairs are keyed in
+ * either order. A pair is marked while its policy is being generated, so that generators which look up their own
+ * output can be detected.
+ */
+public final class GeneratedPolicyMemo<T extends Policy> {
+    private static final Object NO_POLICY = new Object();
+    private static final Object GENERATING = new Object();
+
+    private final PolicyType policyType;
+    private final TLongObjectMap<Object> entries = new TLongObjectHashMap<>();
+
+    public GeneratedPolicyMemo(PolicyType policyType) {
+        this.policyType = policyType;
+    }
+
+    public boolean contains(int firstFaction, int secondFaction) {
+        Object entry = entries.get(getKey(firstFaction, secondFaction));
+        return entry != null && entry != GENERATING;
+    }
+
+    /**
+     * @return the generated policy, or null if the generator did not produce one or the pair was not generated yet
+     */
+    public T get(int firstFaction, int secondFaction) {
+        Object entry = entries.get(getKey(firstFaction, secondFaction));
+        return entry == null || entry == NO_POLICY || entry == GENERATING ? null : (T) entry;
+    }
+
+    /**
+     * Marks the pair as being generated.
+     *
+     * @return false if the pair is already being generated
+     */
+    public boolean begin(int firstFaction, int secondFaction) {
+        long key = getKey(firstFaction, secondFaction);
+        if (entries.get(key) == GENERATING) {
+            return false;
+        }
+        entries.put(key, GENERATING);
+        return true;
+    }
+
+    /**
+     * @param policy the generated policy, or null if the generator did not produce one
+     */
+    public void finish(int firstFaction, int secondFaction, T policy) {
+        entries.put(getKey(firstFaction, secondFaction), policy == null ? NO_POLICY : policy);
+    }
+
+    /**
+     * Forgets all generated policies, pairs that are being generated stay marked.
+     */
+    public void clear() {
+        entries.retainEntries((key, entry) -> entry == GENERATING);
+    }
+
+    public void remove(int firstFaction, int secondFaction) {
+        long key = getKey(firstFaction, secondFaction);
+        if (entries.get(key) != GENERATING) {
+            entries.remove(key);
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private long getKey(int firstFaction, int secondFaction) {
+        if (policyType == PolicyType.INTERNAL) {
+            return firstFaction;
+        }
+        if (policyType == PolicyType.TWO_WAY && firstFaction > secondFaction) {
+            return ((long) secondFaction << 32) | firstFaction;
+        }
+        return ((long) firstFaction << 32) | secondFaction;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.policies;
+
+import org.terasology.factions.policies.policies.Policy;
+
+/**
+ * The blocs of a two way {@link PolicyRelationGraph}, the groups of factions that are connected through its edges, e.g.
+ * alliances. Kept in a union-find structure: added edges merge two blocs, a removed edge searches the bloc it was in
+ * to find out whether it split, so it only costs time proportional to the size of that bloc.
+ * <p>
+ * Bloc ids are the id of one faction of the bloc and only stay valid until the next change of the graph, use
+ * {@link #isSameBloc(int, int)} to compare factions.
+ */
+public final class PolicyBlocs<T extends Policy> {
+    private final PolicyRelationGraph<T> relationGraph;
+    private int[] parents = new int[0];
+    private int[] sizes = new int[0];
+    private int blocCount;
+    private boolean outdated = true;
+
+    PolicyBlocs(PolicyRelationGraph<T> relationGraph) {
+        this.relationGraph = relationGraph;
+    }
+
+    void invalidate() {
+        outdated = true;
+    }
+
+    void edgeAdded(int firstFaction, int secondFaction) {
+        if (!outdated) {
+            union(firstFaction, secondFaction);
+        }
+    }
+
+    void edgeRemoved(int firstFaction, int secondFaction) {
+        if (outdated) {
+            return;
+        }
+        long[] firstBloc = relationGraph.getReachable(firstFaction, Integer.MAX_VALUE, null);
+        if (PolicyRelationGraph.contains(firstBloc, secondFaction)) {
+            return;
+        }
+        long[] secondBloc = relationGraph.getReachable(secondFaction, Integer.MAX_VALUE, null);
+        relink(firstFaction, firstBloc);
+        relink(secondFaction, secondBloc);
+        blocCount++;
+    }
+
+    private void relink(int root, long[] bloc) {
+        parents[root] = root;
+        sizes[root] = 1;
+        PolicyRelationGraph.forEach(bloc, faction -> {
+            if (faction != root) {
+                parents[faction] = root;
+                sizes[root]++;
+            }
+        });
+    }
+
+    private void ensureBuilt() {
+        int factionCount = relationGraph.getFactionCount();
+        if (!outdated) {
+            return;
+        }
+        parents = new int[factionCount];
+        sizes = new int[factionCount];
+        for (int faction = 0; faction < factionCount; faction++) {
+            parents[faction] = faction;
+            sizes[faction] = 1;
+        }
+        blocCount = factionCount;
+        for (int faction = 0; faction < factionCount; faction++) {
+            long[] row = relationGraph.getRow(faction);
+            // every edge is in both rows, the part of the row above the faction covers it once
+            for (int word = faction >>> 6; word < row.length; word++) {
+                long bits = row[word];
+                if (word == faction >>> 6) {
+                    bits &= -2L << faction;
+                }
+                while (bits != 0) {
+                    union(faction, (word << 6) + Long.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                }
+            }
+        }
+        outdated = false;
+    }
+
+    private int find(int faction) {
+        int root = faction;
+        while (parents[root] != root) {
+            root = parents[root];
+        }
+        while (parents[faction] != root) {
+            int next = parents[faction];
+            parents[faction] = root;
+            faction = next;
+        }
+        return root;
+    }
+
+    private void union(int firstFaction, int secondFaction) {
+        int firstRoot = find(firstFaction);
+        int secondRoot = find(secondFaction);
+        if (firstRoot == secondRoot) {
+            return;
+        }
+        if (sizes[firstRoot] < sizes[secondRoot]) {
+            int swap = firstRoot;
+            firstRoot = secondRoot;
+            secondRoot = swap;
+        }
+        parents[secondRoot] = firstRoot;
+        sizes[firstRoot] += sizes[secondRoot];
+        blocCount--;
+    }
+
+    /**
+     * @return the id of the bloc of the faction, or -1 if the faction does not exist
+     */
+    public int getBloc(int faction) {
+        ensureBuilt();
+        if (faction < 0 || faction >= parents.length) {
+            return -1;
+        }
+        return find(faction);
+    }
+
+    public boolean isSameBloc(int firstFaction, int secondFaction) {
+        int firstBloc = getBloc(firstFaction);
+        return firstBloc != -1 && firstBloc == getBloc(secondFaction);
+    }
+
+    /**
+     * @return the number of factions in the bloc of the faction, including the faction itself
+     */
+    public int getBlocSize(int faction) {
+        int bloc = getBloc(faction);
+        return bloc == -1 ? 0 : sizes[bloc];
+    }
+
+    /**
+     * @return the factions of the bloc of the faction as faction set, see {@link PolicyRelationGraph}
+     */
+    public long[] getBlocMembers(int faction, long[] result) {
+        int bloc = getBloc(faction);
+        result = relationGraph.getReachable(faction, Integer.MAX_VALUE, result);
+        if (bloc != -1) {
+            result[faction >>> 6] |= 1L << faction;
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of blocs, factions without any edge form a bloc of their own
+     */
+    public int getBlocCount() {
+        ensureBuilt();
+        return blocCount;
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.policies;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.factions.policies.policies.Policy;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoublePredicate;
+import java.util.function.IntPredicate;
+import java.util.function.LongPredicate;
+
+/**
+ * Column store of the primitive fields of one policy class, laid out like the slots of its {@link PolicyTable}.
+ * <p>
+ * Every primitive field gets one array: float and double fields a {@code double[]}, int, short, byte and char fields an
+ * {@code int[]}, long fields a {@code long[]} and boolean fields a bitset in a {@code long[]}. Scans walk the slots of
+ * the existing factions as contiguous runs, one run per row of the table, so they read the arrays sequentially.
+ * <p>
+ * The columns hold the own policies of the table and, for every other slot, what the rules or the default resolve to.
+ * Generated policies are not included. Obtain the columns through {@link PolicyTable#getColumns()}, which brings them
+ * up to date.
+ * <p>
+ * The layout keeps a slot for the pair of every faction with itself, which never has a policy of its own. Scans and
+ * counts skip these slots, runs read through {@link #readDoubles} still contain them at
+ * {@link #getDiagonalOffset(int)}.
+ */
+public final class PolicyColumns<T extends Policy> {
+    private static final Logger logger = LoggerFactory.getLogger(PolicyColumns.class);
+
+    private final PolicyType policyType;
+    private final Map<String, Column> columnsByName = new HashMap<>();
+    private final Column[] columns;
+    private int capacity;
+    private int factionCount;
+
+    PolicyColumns(Class<T> policyClass, PolicyType policyType) {
+        this.policyType = policyType;
+        List<PolicyField> fields = PolicyMetadata.of(policyClass).getFields();
+        this.columns = fields.stream()
+                .filter(PolicyField::isPrimitive)
+                .map(Column::new)
+                .toArray(Column[]::new);
+        for (Column column : columns) {
+            columnsByName.put(column.field.getName(), column);
+        }
+    }
+
+    /**
+     * Receives the faction of an internal policy (twice) or the factions of a pair.
+     */
+    @FunctionalInterface
+    public interface PairConsumer {
+        void accept(int firstFaction, int secondFaction);
+    }
+
+    public PolicyType getPolicyType() {
+        return policyType;
+    }
+
+    public int getFactionCount() {
+        return factionCount;
+    }
+
+    public boolean hasColumn(String fieldName) {
+        return columnsByName.containsKey(fieldName);
+    }
+
+    void resize(int slotCount, int newCapacity) {
+        capacity = newCapacity;
+        for (Column column : columns) {
+            column.resize(slotCount);
+        }
+    }
+
+    void setFactionCount(int factionCount) {
+        this.factionCount = factionCount;
+    }
+
+    void write(int slot, T policy) {
+        for (Column column : columns) {
+            column.write(slot, column.field.getBits(policy));
+        }
+    }
+
+    public double getDouble(String fieldName, int slot) {
+        return columnsByName.get(fieldName).doubles[slot];
+    }
+
+    public int getInt(String fieldName, int slot) {
+        return columnsByName.get(fieldName).ints[slot];
+    }
+
+    public long getLong(String fieldName, int slot) {
+        return columnsByName.get(fieldName).longs[slot];
+    }
+
+    public boolean getBoolean(String fieldName, int slot) {
+        return (columnsByName.get(fieldName).longs[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    /**
+     * Reports every faction or pair whose float or double field matches, e.g. all pairs with a discount below 0.5.
+     */
+    public void scanDouble(String fieldName, DoublePredicate predicate, PairConsumer consumer) {
+        Column column = getColumn(fieldName, ColumnType.DOUBLE);
+        if (column == null) {
+            return;
+        }
+        double[] values = column.doubles;
+        for (int run = 0; run < getRunCount(); run++) {
+            int start = getRunStart(run);
+            int length = getRunLength(run);
+            int diagonal = getDiagonalOffset(run);
+            for (int offset = 0; offset < length; offset++) {
+                if (offset != diagonal && predicate.test(values[start + offset])) {
+                    consumer.accept(getFirstFaction(run, offset), getSecondFaction(run, offset));
+                }
+            }
+        }
+    }
+
+    /**
+     * Reports every faction or pair whose int, short, byte or char field matches.
+     */
+    public void scanInt(String fieldName, IntPredicate predicate, PairConsumer consumer) {
+        Column column = getColumn(fieldName, ColumnType.INT);
+        if (column == null) {
+            return;
+        }
+        int[] values = column.ints;
+        for (int run = 0; run < getRunCount(); run++) {
+            int start = getRunStart(run);
+            int length = getRunLength(run);
+            int diagonal = getDiagonalOffset(run);
+            for (int offset = 0; offset < length; offset++) {
+                if (offset != diagonal && predicate.test(values[start + offset])) {
+                    consumer.accept(getFirstFaction(run, offset), getSecondFaction(run, offset));
+                }
+            }
+        }
+    }
+
+    /**
+     * Reports every faction or pair whose long field matches.
+     */
+    public void scanLong(String fieldName, LongPredicate predicate, PairConsumer consumer) {
+        Column column = getColumn(fieldName, ColumnType.LONG);
+        if (column == null) {
+            return;
+        }
+        long[] values = column.longs;
+        for (int run = 0; run < getRunCount(); run++) {
+            int start = getRunStart(run);
+            int length = getRunLength(run);
+            int diagonal = getDiagonalOffset(run);
+            for (int offset = 0; offset < length; offset++) {
+                if (offset != diagonal && predicate.test(values[start + offset])) {
+                    consumer.accept(getFirstFaction(run, offset), getSecondFaction(run, offset));
+                }
+            }
+        }
+    }
+
+    /**
+     * Reports every faction or pair whose boolean field has the value, 64 slots at a time.
+     */
+    public void scanBoolean(String fieldName, boolean value, PairConsumer consumer) {
+        Column column = getColumn(fieldName, ColumnType.BOOLEAN);
+        if (column == null) {
+            return;
+        }
+        long[] words = column.longs;
+        for (int run = 0; run < getRunCount(); run++) {
+            int start = getRunStart(run);
+            int end = start + getRunLength(run);
+            if (start == end) {
+                continue;
+            }
+            int lastWord = (end - 1) >>> 6;
+            int diagonal = getDiagonalOffset(run);
+            int diagonalSlot = diagonal < 0 ? -1 : start + diagonal;
+            for (int word = start >>> 6; word <= lastWord; word++) {
+                long bits = value ? words[word] : ~words[word];
+                if (word == start >>> 6) {
+                    bits &= -1L << start;
+                }
+                if (word == lastWord) {
+                    bits &= -1L >>> (63 - ((end - 1) & 63));
+                }
+                if (diagonalSlot >= 0 && word == diagonalSlot >>> 6) {
+                    bits &= ~(1L << diagonalSlot);
+                }
+                while (bits != 0) {
+                    int offset = (word << 6) + Long.numberOfTrailingZeros(bits) - start;
+                    consumer.accept(getFirstFaction(run, offset), getSecondFaction(run, offset));
+                    bits &= bits - 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of factions or pairs whose boolean field has the value
+     */
+    public int countBoolean(String fieldName, boolean value) {
+        int[] count = new int[1];
+        scanBoolean(fieldName, value, (first, second) -> count[0]++);
+        return count[0];
+    }
+
+    private Column getColumn(String fieldName, ColumnType type) {
+        Column column = columnsByName.get(fieldName);
+        if (column == null || column.type != type) {
+            logger.error("Policy field " + fieldName + " is not a " + type.name().toLowerCase() + " column");
+            return null;
+        }
+        return column;
+    }
+
+    /**
+     * Copies the values of a float or double field of one run into the target, starting at index 0. Runs are the
+     * contiguous parts of the columns: internal policies form one run, one way policies one run per first faction and
+     * two way policies one run per column of the triangle, holding the pairs (0..second, second).
+     *
+     * @param target array of at least {@link #getRunLength(int)} values
+     */
+    public void readDoubles(String fieldName, int run, double[] target) {
+        Column column = getColumn(fieldName, ColumnType.DOUBLE);
+        if (column != null) {
+            System.arraycopy(column.doubles, getRunStart(run), target, 0, getRunLength(run));
+        }
+    }
+
+    public int getRunCount() {
+        return policyType == PolicyType.INTERNAL ? 1 : factionCount;
+    }
+
+    private int getRunStart(int run) {
+        switch (policyType) {
+            case INTERNAL:
+                return 0;
+            case ONE_WAY:
+                return run * capacity;
+            default:
+                return run * (run + 1) / 2;
+        }
+    }
+
+    public int getRunLength(int run) {
+        switch (policyType) {
+            case INTERNAL:
+            case ONE_WAY:
+                return factionCount;
+            default:
+                return run + 1;
+        }
+    }
+
+    public int getFirstFaction(int run, int offset) {
+        return policyType == PolicyType.ONE_WAY ? run : offset;
+    }
+
+    public int getSecondFaction(int run, int offset) {
+        return policyType == PolicyType.TWO_WAY ? run : offset;
+    }
+
+    /**
+     * @return the offset of the pair of a faction with itself within the run, or -1 for internal policies
+     */
+    public int getDiagonalOffset(int run) {
+        return policyType == PolicyType.INTERNAL ? -1 : run;
+    }
+
+    private enum ColumnType {
+        DOUBLE, INT, LONG, BOOLEAN
+    }
+
+    private static final class Column {
+        private final PolicyField field;
+        private final ColumnType type;
+        private double[] doubles = new double[0];
+        private int[] ints = new int[0];
+        private long[] longs = new long[0];
+
+        private Column(PolicyField field) {
+            this.field = field;
+            Class<?> fieldType = field.getType();
+            if (fieldType == float.class || fieldType == double.class) {
+                type = ColumnType.DOUBLE;
+            } else if (fieldType == long.class) {
+                type = ColumnType.LONG;
+            } else if (fieldType == boolean.class) {
+                type = ColumnType.BOOLEAN;
+            } else {
+                type = ColumnType.INT;
+            }
+        }
+
+        private void resize(int slotCount) {
+            switch (type) {
+                case DOUBLE:
+                    doubles = Arrays.copyOf(doubles, slotCount);
+                    break;
+                case INT:
+                    ints = Arrays.copyOf(ints, slotCount);
+                    break;
+                case LONG:
+                    longs = Arrays.copyOf(longs, slotCount);
+                    break;
+                default:
+                    longs = Arrays.copyOf(longs, (slotCount + 63) >>> 6);
+                    break;
+            }
+        }
+
+        private void write(int slot, long bits) {
+            switch (type) {
+                case DOUBLE:
+                    doubles[slot] = field.getType() == float.class
+                            ? Float.intBitsToFloat((int) bits) : Double.longBitsToDouble(bits);
+                    break;
+                case INT:
+                    ints[slot] = (int) bits;
+                    break;
+                case LONG:
+                    longs[slot] = bits;
+                    break;
+                default:
+                    if (bits != 0) {
+                        longs[slot >>> 6] |= 1L << slot;
+                    } else {
+                        longs[slot >>> 6] &= ~(1L << slot);
+                    }
+                    break;
+            }
+        }
+    }
+}
@@ -21,6 +21,14 @@ import org.terasology.factions.policies.policies.Policy;
 import java.util.Map;
 
 public abstract class PolicyComponent<T extends Policy> implements Component {
+    /**
+     * Called once per policy class, the returned instance is shared by every key that is missing from the policy map.
+     */
     public abstract T newDefaultPolicy();
+
+    /**
+     * Only holds the policies that differ from the default, equal policies share one instance. See
+     * {@link PolicyKeyIndex} for the format of the keys.
+     */
     public abstract Map<String, T> getPolicyMap();
 }
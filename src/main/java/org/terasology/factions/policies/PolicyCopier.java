@@ -0,0 +1,355 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.policies;
+
+import org.terasology.factions.policies.policies.Policy;
+import org.terasology.reflection.MappedContainer;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+/**
+ * Deep copies policies and other mapped containers, built once per class from all its non-static, non-transient fields
+ * whatever their visibility, the same state the entity serializer persists.
+ * <p>
+ * Primitive, string, boxed and enum fields are assigned directly. Lists, sets, maps, arrays, nested policies and mapped
+ * containers are copied recursively, values of any other type are shared between the source and the copy. Policies
+ * are trees, references between the values of one policy are not preserved.
+ * <p>
+ * Copied collections have the runtime class of the source if it has a public no-arg constructor. Otherwise they are an
+ * {@link ArrayList}, {@link LinkedHashSet}, {@link LinkedHashMap} or a tree collection for sorted sources, as long as
+ * the field can hold it; collections that fit neither way are shared like other values.
+ */
+public final class PolicyCopier<T> {
+    private static final ClassValue<PolicyCopier<?>> COPIERS = new ClassValue<PolicyCopier<?>>() {
+        @Override
+        protected PolicyCopier<?> computeValue(Class<?> type) {
+            return new PolicyCopier<>(type);
+        }
+    };
+    private static final ClassValue<Supplier<?>> COLLECTION_CONSTRUCTORS = new ClassValue<Supplier<?>>() {
+        @Override
+        protected Supplier<?> computeValue(Class<?> type) {
+            return createConstructor(type);
+        }
+    };
+
+    private final Class<T> type;
+    private final boolean container;
+    private final Supplier<T> constructor;
+    private final List<PolicyField> fields;
+    private final PolicyField[] assignedFields;
+    private final PolicyField[] copiedFields;
+
+    private PolicyCopier(Class<T> type) {
+        this.type = type;
+        this.container = Policy.class.isAssignableFrom(type) || type.isAnnotationPresent(MappedContainer.class);
+        if (!container) {
+            this.constructor = null;
+            this.fields = Collections.emptyList();
+            this.assignedFields = new PolicyField[0];
+            this.copiedFields = new PolicyField[0];
+            return;
+        }
+
+        if (Policy.class.isAssignableFrom(type)) {
+            PolicyMetadata<?> metadata = PolicyMetadata.of(type.asSubclass(Policy.class));
+            this.constructor = metadata.isConstructible() ? () -> type.cast(metadata.newInstance()) : null;
+        } else {
+            this.constructor = createConstructor(type);
+        }
+        this.fields = PolicyMetadata.findStateFields(type);
+
+        List<PolicyField> assigned = new ArrayList<>();
+        List<PolicyField> copied = new ArrayList<>();
+        for (PolicyField field : fields) {
+            if (isImmutableType(field.getType())) {
+                assigned.add(field);
+            } else {
+                copied.add(field);
+            }
+        }
+        this.assignedFields = assigned.toArray(new PolicyField[assigned.size()]);
+        this.copiedFields = copied.toArray(new PolicyField[copied.size()]);
+    }
+
+    public static <T> PolicyCopier<T> of(Class<T> type) {
+        return (PolicyCopier<T>) COPIERS.get(type);
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * @return the copied fields including non-public and final ones, empty if the class is neither a policy nor a
+     * mapped container
+     */
+    public List<PolicyField> getFields() {
+        return fields;
+    }
+
+    /**
+     * @return whether {@link #copy(Object)} can create new instances of the class
+     */
+    public boolean isConstructible() {
+        return constructor != null;
+    }
+
+    /**
+     * @throws IllegalStateException if the class has no public no-arg constructor
+     */
+    public T copy(T source) {
+        if (constructor == null) {
+            throw new IllegalStateException("Cannot construct " + type.getName());
+        }
+        return copyInto(source, constructor.get());
+    }
+
+    /**
+     * Overwrites all fields of the target with copies of the values in the source. Collections already held by the
+     * target are cleared and refilled where they are of a constructible class, so copying into a reused instance does not allocate unless
+     * the values contain nested collections or containers.
+     *
+     * @return the target
+     */
+    public T copyInto(T source, T target) {
+        if (source.getClass() != type || target.getClass() != type) {
+            throw new IllegalArgumentException("Cannot copy " + source.getClass().getName() + " into "
+                    + target.getClass().getName() + " with the copier of " + type.getName());
+        }
+        for (PolicyField field : assignedFields) {
+            field.copy(source, target);
+        }
+        for (PolicyField field : copiedFields) {
+            Object value = field.get(source);
+            Object previous = field.get(target);
+            field.set(target, copyValue(value, previous == value ? null : previous, field.getType()));
+        }
+        return target;
+    }
+
+    /**
+     * @return a deep copy of a value that can be assigned to a field of the declared type, see the class description
+     */
+    static Object copyValue(Object value, Class<?> declaredType) {
+        return copyValue(value, null, declaredType);
+    }
+
+    /**
+     * Copies a value, reusing the given instance if it has a suitable type.
+     *
+     * @param declaredType the type the copy is assigned to
+     */
+    private static Object copyValue(Object value, Object reuse, Class<?> declaredType) {
+        if (value == null || isImmutableType(value.getClass())) {
+            return value;
+        }
+        if (value instanceof List) {
+            return copyList((List<?>) value, reuse, declaredType);
+        }
+        if (value instanceof Set) {
+            return copySet((Set<?>) value, reuse, declaredType);
+        }
+        if (value instanceof Map) {
+            return copyMap((Map<?, ?>) value, reuse, declaredType);
+        }
+        if (value.getClass().isArray()) {
+            return copyArray(value, reuse);
+        }
+
+        PolicyCopier<Object> copier = (PolicyCopier<Object>) COPIERS.get(value.getClass());
+        if (!copier.container) {
+            return value;
+        }
+        if (reuse != null && reuse.getClass() == value.getClass()) {
+            return copier.copyInto(value, reuse);
+        }
+        return copier.isConstructible() ? copier.copy(value) : value;
+    }
+
+    private static Object copyList(List<?> source, Object reuse, Class<?> declaredType) {
+        List<Object> target;
+        if (isReusable(reuse, source)) {
+            target = (List<Object>) reuse;
+            target.clear();
+        } else {
+            target = newCollection(source, declaredType, () -> new ArrayList<>(source.size()));
+            if (target == null) {
+                return source;
+            }
+        }
+        if (source instanceof RandomAccess) {
+            for (int i = 0; i < source.size(); i++) {
+                target.add(copyValue(source.get(i), null, Object.class));
+            }
+        } else {
+            copyElements(source, target);
+        }
+        return target;
+    }
+
+    private static Object copySet(Set<?> source, Object reuse, Class<?> declaredType) {
+        if (source instanceof EnumSet) {
+            // enum elements are immutable and the runtime classes of enum sets cannot be constructed
+            return EnumSet.copyOf((EnumSet) source);
+        }
+        Set<Object> target;
+        if (source instanceof SortedSet && ((SortedSet<?>) source).comparator() != null) {
+            // constructors without arguments would drop the comparator
+            Comparator<Object> comparator = (Comparator<Object>) ((SortedSet<?>) source).comparator();
+            target = newSorted(declaredType, () -> new TreeSet<>(comparator));
+        } else if (isReusable(reuse, source)) {
+            target = (Set<Object>) reuse;
+            target.clear();
+        } else {
+            target = newCollection(source, declaredType,
+                    source instanceof SortedSet ? TreeSet::new : LinkedHashSet::new);
+        }
+        if (target == null) {
+            return source;
+        }
+        copyElements(source, target);
+        return target;
+    }
+
+    private static void copyElements(Collection<?> source, Collection<Object> target) {
+        for (Object element : source) {
+            target.add(copyValue(element, null, Object.class));
+        }
+    }
+
+    private static Object copyMap(Map<?, ?> source, Object reuse, Class<?> declaredType) {
+        Map<Object, Object> target;
+        if (source instanceof EnumMap) {
+            // the key type of an enum map is only known to its copy constructor, the values are replaced below
+            target = new EnumMap<>((EnumMap) source);
+        } else if (source instanceof SortedMap && ((SortedMap<?, ?>) source).comparator() != null) {
+            Comparator<Object> comparator = (Comparator<Object>) ((SortedMap<?, ?>) source).comparator();
+            target = newSorted(declaredType, () -> new TreeMap<>(comparator));
+        } else if (isReusable(reuse, source)) {
+            target = (Map<Object, Object>) reuse;
+            target.clear();
+        } else {
+            target = newCollection(source, declaredType,
+                    source instanceof SortedMap ? TreeMap::new : LinkedHashMap::new);
+        }
+        if (target == null) {
+            return source;
+        }
+        for (Map.Entry<?, ?> entry : source.entrySet()) {
+            target.put(copyValue(entry.getKey(), null, Object.class),
+                    copyValue(entry.getValue(), null, Object.class));
+        }
+        return target;
+    }
+
+    /**
+     * Only collections of a class with a public no-arg constructor are refilled, unmodifiable and immutable collections
+     * would throw on clear.
+     */
+    private static boolean isReusable(Object reuse, Object source) {
+        return reuse != null && reuse.getClass() == source.getClass()
+                && COLLECTION_CONSTRUCTORS.get(source.getClass()) != null;
+    }
+
+    /**
+     * @return a new instance of the runtime class of the source, else the fallback if the declared type can hold it,
+     * else null
+     */
+    private static <C> C newCollection(Object source, Class<?> declaredType, Supplier<C> fallback) {
+        Supplier<?> constructor = COLLECTION_CONSTRUCTORS.get(source.getClass());
+        if (constructor != null) {
+            return (C) constructor.get();
+        }
+        C target = fallback.get();
+        return declaredType.isInstance(target) ? target : null;
+    }
+
+    /**
+     * @return a tree collection with the comparator of the sorted source if the declared type can hold it, else null
+     */
+    private static <C> C newSorted(Class<?> declaredType, Supplier<C> treeConstructor) {
+        C target = treeConstructor.get();
+        return declaredType.isInstance(target) ? target : null;
+    }
+
+    private static Object copyArray(Object source, Object reuse) {
+        int length = Array.getLength(source);
+        Object target = reuse != null && reuse.getClass() == source.getClass() && Array.getLength(reuse) == length
+                ? reuse : Array.newInstance(source.getClass().getComponentType(), length);
+        if (source.getClass().getComponentType().isPrimitive()) {
+            System.arraycopy(source, 0, target, 0, length);
+        } else {
+            Class<?> componentType = source.getClass().getComponentType();
+            Object[] sourceElements = (Object[]) source;
+            Object[] targetElements = (Object[]) target;
+            for (int i = 0; i < length; i++) {
+                targetElements[i] = copyValue(sourceElements[i], null, componentType);
+            }
+        }
+        return target;
+    }
+
+    private static boolean isImmutableType(Class<?> type) {
+        return type.isPrimitive() || type == String.class || type.isEnum() || type == Boolean.class
+                || type == Character.class || type == Byte.class || type == Short.class || type == Integer.class
+                || type == Long.class || type == Float.class || type == Double.class
+                || (type.getSuperclass() != null && type.getSuperclass().isEnum());
+    }
+
+    private static <T> Supplier<T> createConstructor(Class<T> type) {
+        if (Modifier.isAbstract(type.getModifiers())) {
+            return null;
+        }
+        MethodHandle constructorHandle;
+        try {
+            constructorHandle = MethodHandles.publicLookup().findConstructor(type, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+        return () -> {
+            try {
+                return type.cast(constructorHandle.invokeExact());
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Cannot construct " + type.getName(), e);
+            }
+        };
+    }
+}
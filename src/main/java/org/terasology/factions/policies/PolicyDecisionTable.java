@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.policies;
+
+import org.terasology.factions.policies.policies.Policy;
+
+/**
+ * Immutable result of compiling {@link PolicyRules}: every faction id is mapped to a group of factions that the rules
+ * treat alike, and the policy of each group (or pair of groups) is resolved ahead of time.
+ */
+public final class PolicyDecisionTable<T extends Policy> {
+    private final PolicyType policyType;
+    private final int[] groups;
+    private final int groupCount;
+    private final Object[] decisions;
+    private final T defaultPolicy;
+
+    PolicyDecisionTable(PolicyType policyType, int[] groups, int groupCount, Object[] decisions, T defaultPolicy) {
+        this.policyType = policyType;
+        this.groups = groups;
+        this.groupCount = groupCount;
+        this.decisions = decisions;
+        this.defaultPolicy = defaultPolicy;
+    }
+
+    public PolicyType getPolicyType() {
+        return policyType;
+    }
+
+    /**
+     * @return the number of faction ids the table was compiled for
+     */
+    public int getFactionCount() {
+        return groups.length;
+    }
+
+    public int getGroupCount() {
+        return groupCount;
+    }
+
+    /**
+     * @return the policy of the faction, or the default policy if the faction is newer than the table
+     */
+    public T get(int faction) {
+        if (faction >= groups.length) {
+            return defaultPolicy;
+        }
+        return (T) decisions[groups[faction]];
+    }
+
+    /**
+     * @return the policy of the pair, or the default policy if a faction is newer than the table
+     */
+    public T get(int firstFaction, int secondFaction) {
+        if (firstFaction >= groups.length || secondFaction >= groups.length) {
+            return defaultPolicy;
+        }
+        return (T) decisions[groups[firstFaction] * groupCount + groups[secondFaction]];
+    }
+}
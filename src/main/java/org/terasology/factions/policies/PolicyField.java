@@ -0,0 +1,159 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.policies;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+/**
+ * Accessor of a single field of a policy class, backed by method handles that are created once per field.
+ */
+public final class PolicyField {
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType BITS_GETTER_TYPE = MethodType.methodType(long.class, Object.class);
+    private static final MethodType COPIER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final Field field;
+    private final String description;
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+    private final MethodHandle bitsGetter;
+    private final MethodHandle copier;
+
+    PolicyField(Field field) throws IllegalAccessException {
+        this(field, false);
+    }
+
+    /**
+     * @param nonPublic whether the field may be private, protected, package-private or final, it is made accessible
+     */
+    PolicyField(Field field, boolean nonPublic) throws IllegalAccessException {
+        this.field = field;
+        FieldDescription fieldDescription = field.getAnnotation(FieldDescription.class);
+        this.description = fieldDescription == null ? "" : fieldDescription.value();
+        if (nonPublic) {
+            field.setAccessible(true);
+        }
+        MethodHandles.Lookup lookup = nonPublic ? MethodHandles.lookup() : MethodHandles.publicLookup();
+        MethodHandle rawGetter = lookup.unreflectGetter(field);
+        this.getter = rawGetter.asType(GETTER_TYPE);
+        MethodHandle rawSetter = lookup.unreflectSetter(field);
+        this.setter = rawSetter.asType(SETTER_TYPE);
+        // (target, source) -> target.field = source.field, without boxing primitive values
+        this.copier = MethodHandles.filterArguments(rawSetter, 1, rawGetter).asType(COPIER_TYPE);
+        this.bitsGetter = field.getType().isPrimitive() ? createBitsGetter(rawGetter, field.getType()) : null;
+    }
+
+    private static MethodHandle createBitsGetter(MethodHandle rawGetter, Class<?> type) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            if (type == float.class) {
+                rawGetter = MethodHandles.filterReturnValue(rawGetter, lookup.findStatic(Float.class,
+                        "floatToRawIntBits", MethodType.methodType(int.class, float.class)));
+            } else if (type == double.class) {
+                rawGetter = MethodHandles.filterReturnValue(rawGetter, lookup.findStatic(Double.class,
+                        "doubleToRawLongBits", MethodType.methodType(long.class, double.class)));
+            } else if (type == boolean.class) {
+                rawGetter = MethodHandles.filterReturnValue(rawGetter, lookup.findStatic(PolicyField.class,
+                        "booleanToInt", MethodType.methodType(int.class, boolean.class)));
+            }
+            return rawGetter.asType(BITS_GETTER_TYPE);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int booleanToInt(boolean value) {
+        return value ? 1 : 0;
+    }
+
+    public String getName() {
+        return field.getName();
+    }
+
+    public Class<?> getType() {
+        return field.getType();
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    /**
+     * @return the description from the {@link FieldDescription} annotation, or an empty string
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Assigns the value of the field in the source to the field in the target, the value itself is not copied.
+     */
+    public void copy(Object source, Object target) {
+        try {
+            copier.invokeExact(target, source);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot copy " + this, e);
+        }
+    }
+
+    public boolean isPrimitive() {
+        return bitsGetter != null;
+    }
+
+    /**
+     * Reads a primitive field without boxing. Two reads return the same bits if and only if the value did not change.
+     */
+    public long getBits(Object policy) {
+        try {
+            return (long) bitsGetter.invokeExact(policy);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot read " + this, e);
+        }
+    }
+
+    public Object get(Object policy) {
+        try {
+            return (Object) getter.invokeExact(policy);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot read " + this, e);
+        }
+    }
+
+    public void set(Object policy, Object value) {
+        try {
+            setter.invokeExact(policy, value);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot write " + this, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return field.getDeclaringClass().getSimpleName() + "." + field.getName();
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.policies;
+
+import org.terasology.factions.policies.policies.Policy;
+import org.terasology.reflection.MappedContainer;
+
+import java.lang.reflect.Array;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Keeps one canonical instance per distinct policy value of a single policy class.
+ * <p>
+ * Policies are compared field by field over all fields the {@link PolicyCopier} copies, including non-public ones.
+ * Floating point values are equal if they are {@code ==} or both NaN, so 0.0 equals -0.0 and all NaNs are equal.
+ * Lists, arrays and map values are compared element-wise and nested policies and mapped containers recursively, also
+ * inside those collections. Set elements, map keys and any other value are compared with their own {@code equals},
+ * so equal nested policies only match there if they are the same instance. Canonical instances are shared and must
+ * not be modified, they are dropped once no longer retained.
+ */
+public final class PolicyInterner<T extends Policy> {
+    private final T defaultPolicy;
+    private final Map<Entry, Entry> entries = new HashMap<>();
+
+    public PolicyInterner(T defaultPolicy) {
+        this.defaultPolicy = defaultPolicy;
+    }
+
+    public boolean isDefault(T policy) {
+        return policy == defaultPolicy || valueEquals(policy, defaultPolicy);
+    }
+
+    /**
+     * @return the canonical instance equal to the policy, the policy itself becomes canonical if there is none yet
+     */
+    public T retain(T policy) {
+        Entry probe = new Entry(policy);
+        Entry entry = entries.get(probe);
+        if (entry == null) {
+            entry = probe;
+            entries.put(entry, entry);
+        }
+        entry.references++;
+        return (T) entry.policy;
+    }
+
+    /**
+     * Releases a canonical instance that was returned by {@link #retain(Policy)}.
+     */
+    public void release(T policy) {
+        Entry entry = entries.get(new Entry(policy));
+        if (entry != null && entry.policy == policy && --entry.references == 0) {
+            entries.remove(entry);
+        }
+    }
+
+    /**
+     * @return the number of distinct retained policy values
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    public static boolean valueEquals(Object first, Object second) {
+        if (first == second) {
+            return true;
+        }
+        if (first == null || second == null || first.getClass() != second.getClass()) {
+            return false;
+        }
+        if (first instanceof Float) {
+            return getBits((Float) first) == getBits((Float) second);
+        }
+        if (first instanceof Double) {
+            return getBits((Double) first) == getBits((Double) second);
+        }
+        if (first instanceof List) {
+            List<?> firstList = (List<?>) first;
+            List<?> secondList = (List<?>) second;
+            if (firstList.size() != secondList.size()) {
+                return false;
+            }
+            for (int i = 0; i < firstList.size(); i++) {
+                if (!valueEquals(firstList.get(i), secondList.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (first instanceof Map) {
+            Map<?, ?> firstMap = (Map<?, ?>) first;
+            Map<?, ?> secondMap = (Map<?, ?>) second;
+            if (firstMap.size() != secondMap.size()) {
+                return false;
+            }
+            for (Map.Entry<?, ?> entry : firstMap.entrySet()) {
+                Object secondValue = secondMap.get(entry.getKey());
+                if ((secondValue == null && !secondMap.containsKey(entry.getKey()))
+                        || !valueEquals(entry.getValue(), secondValue)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (first.getClass().isArray()) {
+            int length = Array.getLength(first);
+            if (length != Array.getLength(second)) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (!valueEquals(Array.get(first, i), Array.get(second, i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (!isContainer(first.getClass())) {
+            return first.equals(second);
+        }
+        for (PolicyField field : getFields(first.getClass())) {
+            if (field.isPrimitive()) {
+                if (getBits(field, first) != getBits(field, second)) {
+                    return false;
+                }
+            } else if (!valueEquals(field.get(first), field.get(second))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static int valueHashCode(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof Float) {
+            return getBits((Float) value);
+        }
+        if (value instanceof Double) {
+            return Long.hashCode(getBits((Double) value));
+        }
+        if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            int hash = 1;
+            for (int i = 0; i < list.size(); i++) {
+                hash = 31 * hash + valueHashCode(list.get(i));
+            }
+            return hash;
+        }
+        if (value instanceof Map) {
+            int hash = 0;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                hash += Objects.hashCode(entry.getKey()) ^ valueHashCode(entry.getValue());
+            }
+            return hash;
+        }
+        if (value.getClass().isArray()) {
+            int hash = 1;
+            for (int i = 0; i < Array.getLength(value); i++) {
+                hash = 31 * hash + valueHashCode(Array.get(value, i));
+            }
+            return hash;
+        }
+        if (!isContainer(value.getClass())) {
+            return value.hashCode();
+        }
+        int hash = value.getClass().hashCode();
+        for (PolicyField field : getFields(value.getClass())) {
+            hash = 31 * hash + (field.isPrimitive() ? Long.hashCode(getBits(field, value)) : valueHashCode(field.get(value)));
+        }
+        return hash;
+    }
+
+    /**
+     * @return the bits of a primitive field, with floating point values normalized as by {@link #getBits(float)}
+     */
+    private static long getBits(PolicyField field, Object value) {
+        long bits = field.getBits(value);
+        if (field.getType() == float.class) {
+            return getBits(Float.intBitsToFloat((int) bits));
+        }
+        if (field.getType() == double.class) {
+            return getBits(Double.longBitsToDouble(bits));
+        }
+        return bits;
+    }
+
+    /**
+     * @return bits that are equal exactly when the values are == or both NaN, so 0.0 and -0.0 are equal
+     */
+    private static int getBits(float value) {
+        return value == 0f ? 0 : Float.floatToIntBits(value);
+    }
+
+    private static long getBits(double value) {
+        return value == 0d ? 0L : Double.doubleToLongBits(value);
+    }
+
+    private static boolean isContainer(Class<?> type) {
+        return Policy.class.isAssignableFrom(type) || type.isAnnotationPresent(MappedContainer.class);
+    }
+
+    private static List<PolicyField> getFields(Class<?> type) {
+        return PolicyCopier.of(type).getFields();
+    }
+
+    private static final class Entry {
+        private final Policy policy;
+        private final int hash;
+        private int references;
+
+        private Entry(Policy policy) {
+            this.policy = policy;
+            this.hash = valueHashCode(policy);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Entry && valueEquals(policy, ((Entry) obj).policy);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.policies;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.SetMultimap;
+
+import java.util.Set;
+
+/**
+ * Builds and parses the string keys under which policies are persisted in {@link PolicyComponent#getPolicyMap()} and
+ * indexes the keys of one policy map by the factions they mention.
+ * <p>
+ * Internal policies are keyed by the faction name, one way policies by "first&gt;second" and two way policies by
+ * "first&amp;second" with the names in lexicographic order.
+ */
+public class PolicyKeyIndex {
+    public static final char ONE_WAY_SEPARATOR = '>';
+    public static final char TWO_WAY_SEPARATOR = '&';
+
+    private final PolicyType policyType;
+    private final SetMultimap<String, String> keysByFaction = HashMultimap.create();
+
+    public PolicyKeyIndex(PolicyType policyType) {
+        this.policyType = policyType;
+    }
+
+    public static String getOneWayKey(String firstFaction, String secondFaction) {
+        return firstFaction + ONE_WAY_SEPARATOR + secondFaction;
+    }
+
+    public static String getTwoWayKey(String firstFaction, String secondFaction) {
+        if (firstFaction.compareTo(secondFaction) > 0) {
+            return secondFaction + TWO_WAY_SEPARATOR + firstFaction;
+        } else {
+            return firstFaction + TWO_WAY_SEPARATOR + secondFaction;
+        }
+    }
+
+    public String getFirstFaction(String key) {
+        if (policyType == PolicyType.INTERNAL) {
+            return key;
+        }
+        int separator = key.indexOf(getSeparator());
+        return separator < 0 ? null : key.substring(0, separator);
+    }
+
+    public String getSecondFaction(String key) {
+        if (policyType == PolicyType.INTERNAL) {
+            return key;
+        }
+        int separator = key.indexOf(getSeparator());
+        return separator < 0 ? null : key.substring(separator + 1);
+    }
+
+    private char getSeparator() {
+        return policyType == PolicyType.ONE_WAY ? ONE_WAY_SEPARATOR : TWO_WAY_SEPARATOR;
+    }
+
+    /**
+     * @return false if the key is not a valid key for this policy type
+     */
+    public boolean add(String key) {
+        String firstFaction = getFirstFaction(key);
+        String secondFaction = getSecondFaction(key);
+        if (firstFaction == null || secondFaction == null) {
+            return false;
+        }
+        keysByFaction.put(firstFaction, key);
+        keysByFaction.put(secondFaction, key);
+        return true;
+    }
+
+    public void remove(String key) {
+        String firstFaction = getFirstFaction(key);
+        String secondFaction = getSecondFaction(key);
+        if (firstFaction != null) {
+            keysByFaction.remove(firstFaction, key);
+        }
+        if (secondFaction != null) {
+            keysByFaction.remove(secondFaction, key);
+        }
+    }
+
+    /**
+     * @return the keys that mention the faction, either as first or as second faction
+     */
+    public Set<String> getKeys(String faction) {
+        return keysByFaction.get(faction);
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.policies;
+
+import com.google.common.collect.ImmutableList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.factions.policies.policies.Policy;
+import org.terasology.reflection.MappedContainer;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Facts about a policy class that are computed once and then looked up through a {@link ClassValue}: the policy type,
+ * a constructor, the public fields and, once the policy was registered by {@link FactionPolicySystem}, its policy
+ * component class and default policy factory.
+ */
+public final class PolicyMetadata<T extends Policy> {
+    private static final Logger logger = LoggerFactory.getLogger(PolicyMetadata.class);
+
+    private static final ClassValue<PolicyMetadata<?>> METADATA = new ClassValue<PolicyMetadata<?>>() {
+        @Override
+        protected PolicyMetadata<?> computeValue(Class<?> type) {
+            return new PolicyMetadata<>(type.asSubclass(Policy.class));
+        }
+    };
+
+    private final Class<T> policyClass;
+    private final PolicyType policyType;
+    private final boolean mappedContainer;
+    private final Supplier<T> constructor;
+    private final List<PolicyField> fields;
+    private final Map<String, PolicyField> fieldsByName;
+    private volatile PolicyComponent<T> policyComponent;
+
+    private PolicyMetadata(Class<T> policyClass) {
+        this.policyClass = policyClass;
+        this.policyType = PolicyType.resolve(policyClass);
+        this.mappedContainer = policyClass.isAnnotationPresent(MappedContainer.class);
+        this.constructor = createConstructor(policyClass);
+        this.fields = findFields(policyClass);
+        this.fieldsByName = new HashMap<>();
+        for (PolicyField field : fields) {
+            // fields of subclasses come last and hide fields of the same name in superclasses
+            fieldsByName.put(field.getName(), field);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the class is not a policy class
+     */
+    public static <T extends Policy> PolicyMetadata<T> of(Class<T> policyClass) {
+        if (!Policy.class.isAssignableFrom(policyClass)) {
+            throw new IllegalArgumentException(policyClass + " is not a policy class");
+        }
+        return (PolicyMetadata<T>) METADATA.get(policyClass);
+    }
+
+    public Class<T> getPolicyClass() {
+        return policyClass;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the class is neither an internal, one way nor two way policy
+     */
+    public PolicyType getPolicyType() {
+        if (policyType == null) {
+            throw new IllegalArgumentException("not a valid policy class");
+        }
+        return policyType;
+    }
+
+    public boolean isMappedContainer() {
+        return mappedContainer;
+    }
+
+    public boolean isConstructible() {
+        return constructor != null;
+    }
+
+    /**
+     * @return a new instance created with the public no-arg constructor, or null if there is none
+     */
+    public T newInstance() {
+        return constructor == null ? null : constructor.get();
+    }
+
+    /**
+     * @return the public, non-static, non-transient fields of the class and its superclasses
+     */
+    public List<PolicyField> getFields() {
+        return fields;
+    }
+
+    /**
+     * @return the public field with the given name, or null if there is none
+     */
+    public PolicyField getField(String name) {
+        return fieldsByName.get(name);
+    }
+
+    public boolean isRegistered() {
+        return policyComponent != null;
+    }
+
+    /**
+     * @return the component class that stores the policies of this class, or null if it was not registered
+     */
+    public Class<? extends PolicyComponent> getPolicyComponentClass() {
+        PolicyComponent<T> component = policyComponent;
+        return component == null ? null : component.getClass();
+    }
+
+    /**
+     * @return a new default policy as defined by the policy component, or null if the class was not registered
+     */
+    public T newDefaultPolicy() {
+        PolicyComponent<T> component = policyComponent;
+        return component == null ? null : component.newDefaultPolicy();
+    }
+
+    void bind(PolicyComponent<T> component) {
+        this.policyComponent = component;
+    }
+
+    private static <T extends Policy> Supplier<T> createConstructor(Class<T> policyClass) {
+        if (Modifier.isAbstract(policyClass.getModifiers())) {
+            return null;
+        }
+        MethodHandle constructorHandle;
+        try {
+            constructorHandle = MethodHandles.publicLookup().findConstructor(policyClass, MethodType.methodType(void.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+
+        try {
+            CallSite callSite = LambdaMetafactory.metafactory(MethodHandles.lookup(), "get",
+                    MethodType.methodType(Supplier.class), MethodType.methodType(Object.class),
+                    constructorHandle, MethodType.methodType(policyClass));
+            Supplier<T> supplier = (Supplier<T>) callSite.getTarget().invoke();
+            // the generated class may not see classes of other modules, which only shows on the first call
+            supplier.get();
+            return supplier;
+        } catch (Throwable e) {
+            logger.debug("Falling back to method handle constructor for " + policyClass, e);
+        }
+
+        MethodHandle genericConstructor = constructorHandle.asType(MethodType.methodType(Object.class));
+        return () -> {
+            try {
+                return (T) (Object) genericConstructor.invokeExact();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Cannot construct " + policyClass, e);
+            }
+        };
+    }
+
+    static List<PolicyField> findFields(Class<?> policyClass) {
+        return findFields(policyClass, false);
+    }
+
+    /**
+     * @return every non-static, non-transient field of the class and its superclasses, whatever its visibility, the
+     * state the entity serializer persists
+     */
+    static List<PolicyField> findStateFields(Class<?> policyClass) {
+        return findFields(policyClass, true);
+    }
+
+    private static List<PolicyField> findFields(Class<?> policyClass, boolean nonPublic) {
+        List<Class<?>> hierarchy = new ArrayList<>();
+        for (Class<?> type = policyClass; type != null && type != Object.class; type = type.getSuperclass()) {
+            hierarchy.add(0, type);
+        }
+
+        ImmutableList.Builder<PolicyField> fields = ImmutableList.builder();
+        for (Class<?> type : hierarchy) {
+            for (Field field : type.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                    continue;
+                }
+                if (!nonPublic && (!Modifier.isPublic(modifiers) || Modifier.isFinal(modifiers))) {
+                    continue;
+                }
+                try {
+                    fields.add(new PolicyField(field, nonPublic));
+                } catch (IllegalAccessException | SecurityException e) {
+                    logger.warn("Cannot access policy field " + type.getSimpleName() + "." + field.getName()
+                            + " -> ignoring!");
+                }
+            }
+        }
+        return fields.build();
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.policies;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.factions.policies.policies.Policy;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Graph over the factions formed by a boolean field of an external policy class, for example tradeAllowed: there is
+ * an edge from the first to the second faction of every pair whose policy has the field set. Two way policies give an
+ * undirected graph. Factions never have an edge to themselves.
+ * <p>
+ * Every faction has a row of bits, one per faction id, so that queries combine whole rows 64 factions at a time.
+ * Saves update single bits, changes of factions or rules rebuild the graph on the next query from the policy columns.
+ * Queries write into faction sets supplied by the caller, a {@code long[]} with one bit per faction id, and return a
+ * new set only if the supplied one is too small, so agents can reuse their sets.
+ */
+public final class PolicyRelationGraph<T extends Policy> {
+    private static final Logger logger = LoggerFactory.getLogger(PolicyRelationGraph.class);
+
+    private final Class<T> policyClass;
+    private final PolicyField field;
+    private PolicyTable<T> policyTable;
+    private long[][] rows = new long[0][];
+    private int factionCount;
+    private int words;
+    private boolean outdated = true;
+    private PolicyBlocs<T> blocs;
+
+    public PolicyRelationGraph(Class<T> policyClass, PolicyField field) {
+        this.policyClass = policyClass;
+        this.field = field;
+    }
+
+    public Class<T> getPolicyClass() {
+        return policyClass;
+    }
+
+    public String getFieldName() {
+        return field.getName();
+    }
+
+    /**
+     * Attaches the graph to the table of its policy class, which keeps it up to date from then on.
+     */
+    void bind(PolicyTable<T> table) {
+        this.policyTable = table;
+        this.outdated = true;
+    }
+
+    /**
+     * Rebuilds the graph on the next query.
+     */
+    void invalidate() {
+        outdated = true;
+    }
+
+    /**
+     * Updates the edges of a pair after its policy was saved.
+     */
+    void update(int firstFaction, int secondFaction, T policy) {
+        if (outdated || firstFaction == secondFaction) {
+            return;
+        }
+        boolean connected = field.getBits(policy) != 0;
+        if (contains(rows[firstFaction], secondFaction) == connected) {
+            return;
+        }
+        setBit(rows[firstFaction], secondFaction, connected);
+        if (policyTable.getPolicyType() == PolicyType.TWO_WAY) {
+            setBit(rows[secondFaction], firstFaction, connected);
+            if (blocs != null && connected) {
+                blocs.edgeAdded(firstFaction, secondFaction);
+            } else if (blocs != null) {
+                blocs.edgeRemoved(firstFaction, secondFaction);
+            }
+        }
+    }
+
+    /**
+     * @return the blocs of the graph, or null if the policy class is not two way
+     */
+    public PolicyBlocs<T> getBlocs() {
+        if (PolicyMetadata.of(policyClass).getPolicyType() != PolicyType.TWO_WAY) {
+            logger.error("Blocs need a two way policy, " + policyClass.getName() + " is not");
+            return null;
+        }
+        if (blocs == null) {
+            blocs = new PolicyBlocs<>(this);
+        }
+        return blocs;
+    }
+
+    long[] getRow(int faction) {
+        return rows[faction];
+    }
+
+    private void ensureBuilt() {
+        if (!outdated || policyTable == null) {
+            return;
+        }
+        PolicyColumns<T> columns = policyTable.getColumns();
+        factionCount = columns.getFactionCount();
+        words = getWordCount(factionCount);
+        rows = new long[factionCount][words];
+        boolean twoWay = policyTable.getPolicyType() == PolicyType.TWO_WAY;
+        columns.scanBoolean(field.getName(), true, (first, second) -> {
+            if (first != second) {
+                rows[first][second >>> 6] |= 1L << second;
+                if (twoWay) {
+                    rows[second][first >>> 6] |= 1L << first;
+                }
+            }
+        });
+        outdated = false;
+        if (blocs != null) {
+            blocs.invalidate();
+        }
+    }
+
+    public int getFactionCount() {
+        ensureBuilt();
+        return factionCount;
+    }
+
+    /**
+     * @return an empty faction set large enough for all current factions
+     */
+    public long[] newFactionSet() {
+        ensureBuilt();
+        return new long[words];
+    }
+
+    public boolean isConnected(int firstFaction, int secondFaction) {
+        ensureBuilt();
+        return isValid(firstFaction) && isValid(secondFaction) && contains(rows[firstFaction], secondFaction);
+    }
+
+    public int countNeighbors(int faction) {
+        ensureBuilt();
+        if (!isValid(faction)) {
+            return 0;
+        }
+        int count = 0;
+        for (long word : rows[faction]) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of neighbors of the faction that are in the set, e.g. the hostile neighbors of a faction if
+     * the set holds the factions it is hostile to
+     */
+    public int countNeighbors(int faction, long[] factionSet) {
+        ensureBuilt();
+        if (!isValid(faction)) {
+            return 0;
+        }
+        long[] row = rows[faction];
+        int count = 0;
+        for (int word = 0; word < Math.min(words, factionSet.length); word++) {
+            count += Long.bitCount(row[word] & factionSet[word]);
+        }
+        return count;
+    }
+
+    public long[] getNeighbors(int faction, long[] result) {
+        ensureBuilt();
+        result = prepare(result);
+        if (isValid(faction)) {
+            System.arraycopy(rows[faction], 0, result, 0, words);
+        }
+        return result;
+    }
+
+    /**
+     * @return the factions that are neighbors of both factions, e.g. common allies
+     */
+    public long[] getCommonNeighbors(int firstFaction, int secondFaction, long[] result) {
+        ensureBuilt();
+        result = prepare(result);
+        if (isValid(firstFaction) && isValid(secondFaction)) {
+            long[] firstRow = rows[firstFaction];
+            long[] secondRow = rows[secondFaction];
+            for (int word = 0; word < words; word++) {
+                result[word] = firstRow[word] & secondRow[word];
+            }
+        }
+        return result;
+    }
+
+    public int countCommonNeighbors(int firstFaction, int secondFaction) {
+        ensureBuilt();
+        if (!isValid(firstFaction) || !isValid(secondFaction)) {
+            return 0;
+        }
+        long[] firstRow = rows[firstFaction];
+        long[] secondRow = rows[secondFaction];
+        int count = 0;
+        for (int word = 0; word < words; word++) {
+            count += Long.bitCount(firstRow[word] & secondRow[word]);
+        }
+        return count;
+    }
+
+    /**
+     * @return the factions that can be reached from the faction over at most the given number of edges, without the
+     * faction itself unless it lies on a cycle. Two hops give the allies of allies.
+     */
+    public long[] getReachable(int faction, int hops, long[] result) {
+        ensureBuilt();
+        result = prepare(result);
+        if (!isValid(faction) || hops <= 0) {
+            return result;
+        }
+        long[] frontier = rows[faction].clone();
+        long[] next = new long[words];
+        System.arraycopy(frontier, 0, result, 0, words);
+        for (int hop = 1; hop < hops; hop++) {
+            Arrays.fill(next, 0);
+            boolean grown = false;
+            for (int word = 0; word < words; word++) {
+                long bits = frontier[word];
+                while (bits != 0) {
+                    long[] row = rows[(word << 6) + Long.numberOfTrailingZeros(bits)];
+                    for (int nextWord = 0; nextWord < words; nextWord++) {
+                        next[nextWord] |= row[nextWord];
+                    }
+                    bits &= bits - 1;
+                }
+            }
+            for (int word = 0; word < words; word++) {
+                next[word] &= ~result[word];
+                result[word] |= next[word];
+                grown |= next[word] != 0;
+            }
+            if (!grown) {
+                break;
+            }
+            long[] swap = frontier;
+            frontier = next;
+            next = swap;
+        }
+        return result;
+    }
+
+    public static boolean contains(long[] factionSet, int faction) {
+        int word = faction >>> 6;
+        return word < factionSet.length && (factionSet[word] & (1L << faction)) != 0;
+    }
+
+    public static void forEach(long[] factionSet, IntConsumer consumer) {
+        for (int word = 0; word < factionSet.length; word++) {
+            long bits = factionSet[word];
+            while (bits != 0) {
+                consumer.accept((word << 6) + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    private long[] prepare(long[] result) {
+        if (result == null || result.length < words) {
+            return new long[words];
+        }
+        Arrays.fill(result, 0);
+        return result;
+    }
+
+    private boolean isValid(int faction) {
+        return faction >= 0 && faction < factionCount;
+    }
+
+    private static void setBit(long[] row, int faction, boolean value) {
+        if (value) {
+            row[faction >>> 6] |= 1L << faction;
+        } else {
+            row[faction >>> 6] &= ~(1L << faction);
+        }
+    }
+
+    private static int getWordCount(int factionCount) {
+        return (factionCount + 63) >>> 6;
+    }
+}
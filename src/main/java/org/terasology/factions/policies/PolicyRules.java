@@ -0,0 +1,249 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.policies;
+
+import org.terasology.factions.components.FactionComponent;
+import org.terasology.factions.policies.policies.Policy;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Policies that apply to many factions at once, stored in {@link PolicyComponent#getPolicyMap()} next to the policies
+ * of single factions and pairs.
+ * <p>
+ * A rule key is built like a normal key, but each faction can also be "*" for every faction or "#Category" for every
+ * faction whose {@link FactionComponent#category} matches, for example "*&amp;Humans", "#Undead&gt;*" or "*&amp;*".
+ * A pair without its own policy resolves to the most specific matching rule: a faction name counts more than a
+ * category, which counts more than "*". Between equally specific rules a more specific first faction wins, then the
+ * key that sorts first. Without a matching rule the pair resolves to the default policy.
+ */
+public class PolicyRules<T extends Policy> {
+    public static final String ANY_FACTION = "*";
+    public static final char CATEGORY_PREFIX = '#';
+
+    private static final Comparator<Rule> PRECEDENCE = Comparator.comparingInt((Rule rule) -> -rule.getSpecificity())
+            .thenComparingInt(rule -> -rule.first.getSpecificity())
+            .thenComparing(rule -> rule.key);
+
+    private final PolicyType policyType;
+    private final Map<String, Rule> rules = new HashMap<>();
+    private List<Rule> orderedRules = new ArrayList<>();
+
+    public PolicyRules(PolicyType policyType) {
+        this.policyType = policyType;
+    }
+
+    /**
+     * @return whether the key mentions "*" or a category instead of only faction names
+     */
+    public static boolean isRuleKey(String key) {
+        return key.indexOf(ANY_FACTION.charAt(0)) >= 0 || key.indexOf(CATEGORY_PREFIX) >= 0;
+    }
+
+    public boolean isEmpty() {
+        return rules.isEmpty();
+    }
+
+    public int size() {
+        return rules.size();
+    }
+
+    /**
+     * @return false if the key is not a valid rule key for this policy type
+     */
+    public boolean put(String key, T policy) {
+        Rule rule = parse(key, policy);
+        if (rule == null) {
+            return false;
+        }
+        rules.put(key, rule);
+        updateOrder();
+        return true;
+    }
+
+    public boolean remove(String key) {
+        if (rules.remove(key) == null) {
+            return false;
+        }
+        updateOrder();
+        return true;
+    }
+
+    private void updateOrder() {
+        List<Rule> ordered = new ArrayList<>(rules.values());
+        ordered.sort(PRECEDENCE);
+        orderedRules = ordered;
+    }
+
+    /**
+     * Compiles the rules into a table that groups the factions which no rule can tell apart.
+     *
+     * @param factions the factions indexed by their id
+     */
+    public PolicyDecisionTable<T> compile(List<FactionComponent> factions, T defaultPolicy) {
+        List<String> groupNames = new ArrayList<>();
+        List<String> groupCategories = new ArrayList<>();
+        Map<String, Integer> groupIds = new HashMap<>();
+        int[] groups = new int[factions.size()];
+        for (int faction = 0; faction < factions.size(); faction++) {
+            FactionComponent component = factions.get(faction);
+            String name = isMentioned(Term.Kind.NAME, component.name) ? component.name : null;
+            String category = isMentioned(Term.Kind.CATEGORY, component.category) ? component.category : null;
+            // the separators cannot be part of a rule term, so the group keys of names and categories never collide
+            String groupKey = name != null ? ">" + name : category != null ? "&" + category : "";
+            Integer group = groupIds.get(groupKey);
+            if (group == null) {
+                group = groupNames.size();
+                groupIds.put(groupKey, group);
+                groupNames.add(name);
+                groupCategories.add(name != null ? component.category : category);
+            }
+            groups[faction] = group;
+        }
+
+        int groupCount = groupNames.size();
+        Object[] decisions;
+        if (policyType == PolicyType.INTERNAL) {
+            decisions = new Object[groupCount];
+            for (int group = 0; group < groupCount; group++) {
+                decisions[group] = resolve(groupNames.get(group), groupCategories.get(group), null, null, defaultPolicy);
+            }
+        } else {
+            decisions = new Object[groupCount * groupCount];
+            for (int first = 0; first < groupCount; first++) {
+                for (int second = 0; second < groupCount; second++) {
+                    decisions[first * groupCount + second] = resolve(groupNames.get(first), groupCategories.get(first),
+                            groupNames.get(second), groupCategories.get(second), defaultPolicy);
+                }
+            }
+        }
+        return new PolicyDecisionTable<>(policyType, groups, groupCount, decisions, defaultPolicy);
+    }
+
+    private boolean isMentioned(Term.Kind kind, String value) {
+        if (value == null) {
+            return false;
+        }
+        for (Rule rule : orderedRules) {
+            if (rule.first.is(kind, value) || (rule.second != null && rule.second.is(kind, value))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Object resolve(String firstName, String firstCategory, String secondName, String secondCategory,
+                           T defaultPolicy) {
+        for (Rule rule : orderedRules) {
+            if (policyType == PolicyType.INTERNAL) {
+                if (rule.first.matches(firstName, firstCategory)) {
+                    return rule.policy;
+                }
+            } else if (rule.first.matches(firstName, firstCategory) && rule.second.matches(secondName, secondCategory)) {
+                return rule.policy;
+            } else if (policyType == PolicyType.TWO_WAY && rule.first.matches(secondName, secondCategory)
+                    && rule.second.matches(firstName, firstCategory)) {
+                return rule.policy;
+            }
+        }
+        return defaultPolicy;
+    }
+
+    private Rule parse(String key, T policy) {
+        if (policyType == PolicyType.INTERNAL) {
+            Term term = Term.parse(key);
+            return term == null ? null : new Rule(key, term, null, policy);
+        }
+        char separator = policyType == PolicyType.ONE_WAY
+                ? PolicyKeyIndex.ONE_WAY_SEPARATOR : PolicyKeyIndex.TWO_WAY_SEPARATOR;
+        int index = key.indexOf(separator);
+        if (index < 0) {
+            return null;
+        }
+        Term first = Term.parse(key.substring(0, index));
+        Term second = Term.parse(key.substring(index + 1));
+        return first == null || second == null ? null : new Rule(key, first, second, policy);
+    }
+
+    private static final class Rule {
+        private final String key;
+        private final Term first;
+        private final Term second;
+        private final Policy policy;
+
+        private Rule(String key, Term first, Term second, Policy policy) {
+            this.key = key;
+            this.first = first;
+            this.second = second;
+            this.policy = policy;
+        }
+
+        private int getSpecificity() {
+            return first.getSpecificity() + (second == null ? 0 : second.getSpecificity());
+        }
+    }
+
+    private static final class Term {
+        private enum Kind {
+            ANY, CATEGORY, NAME
+        }
+
+        private final Kind kind;
+        private final String value;
+
+        private Term(Kind kind, String value) {
+            this.kind = kind;
+            this.value = value;
+        }
+
+        private static Term parse(String text) {
+            if (text.equals(ANY_FACTION)) {
+                return new Term(Kind.ANY, null);
+            }
+            if (text.length() > 1 && text.charAt(0) == CATEGORY_PREFIX) {
+                return new Term(Kind.CATEGORY, text.substring(1));
+            }
+            if (text.isEmpty() || isRuleKey(text)) {
+                return null;
+            }
+            return new Term(Kind.NAME, text);
+        }
+
+        private int getSpecificity() {
+            return kind.ordinal();
+        }
+
+        private boolean is(Kind otherKind, String otherValue) {
+            return kind == otherKind && value.equals(otherValue);
+        }
+
+        private boolean matches(String name, String category) {
+            switch (kind) {
+                case NAME:
+                    return value.equals(name);
+                case CATEGORY:
+                    return Objects.equals(value, category);
+                default:
+                    return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,471 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.policies;
+
+import org.terasology.factions.components.FactionComponent;
+import org.terasology.factions.policies.generator.FactionPolicyGenerator;
+import org.terasology.factions.policies.policies.Policy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Id-indexed store of the policies of a single policy class.
+ * <p>
+ * Internal policies are kept in a plain array indexed by faction id, one way policies in a full N x N matrix and two
+ * way policies in a packed triangular matrix that only keeps the pairs with {@code first <= second}. The triangle is
+ * laid out column by column so that registering a new faction only appends to the end of the array.
+ * <p>
+ * Only policies that differ from the default are stored, every other slot resolves to a single shared default instance.
+ * Stored policies are interned, so slots with equal policies share one instance. Slots without an own policy resolve
+ * through the {@link PolicyRules} of the table, which are compiled into a {@link PolicyDecisionTable} on first use after
+ * they or the factions changed. A {@link FactionPolicyGenerator} can take the place of the rules, the table only keeps
+ * what it generated, the generator itself is run by the faction system.
+ * <p>
+ * The table remembers which blocks of {@link PolicyTableSnapshot#BLOCK_SIZE} slots changed since the last snapshot,
+ * so a new snapshot only copies the changed blocks.
+ */
+public class PolicyTable<T extends Policy> {
+    private static final int MIN_CAPACITY = 8;
+    private static final long MAX_SLOTS = Integer.MAX_VALUE - 8;
+
+    private final PolicyType policyType;
+    private final T defaultPolicy;
+    private final PolicyInterner<T> interner;
+    private final PolicyRules<T> rules;
+    private final List<FactionComponent> factions;
+    private PolicyDecisionTable<T> decisions;
+    private final GeneratedPolicyMemo<T> generatedPolicies;
+    private FactionPolicyGenerator<? extends T> generator;
+    private Object[] entries = new Object[0];
+    private int capacity;
+    private BitSet changedBlocks = new BitSet();
+    private PolicyColumns<T> columns;
+    private final BitSet changedColumnSlots = new BitSet();
+    private boolean columnsOutdated;
+    private final List<PolicyRelationGraph<T>> relationGraphs = new ArrayList<>();
+
+    /**
+     * @param factions the factions indexed by their id, the table keeps the list to compile its rules
+     */
+    public PolicyTable(PolicyType policyType, T defaultPolicy, List<FactionComponent> factions) {
+        this.policyType = policyType;
+        this.defaultPolicy = defaultPolicy;
+        this.interner = new PolicyInterner<>(defaultPolicy);
+        this.rules = new PolicyRules<>(policyType);
+        this.factions = factions;
+        this.generatedPolicies = new GeneratedPolicyMemo<>(policyType);
+    }
+
+    public PolicyType getPolicyType() {
+        return policyType;
+    }
+
+    /**
+     * @return the shared default policy, it must not be modified
+     */
+    public T getDefaultPolicy() {
+        return defaultPolicy;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Grows the table to hold the factions. Internal and two way tables double their capacity, one way tables are a
+     * square matrix and grow by half, so that their memory does not quadruple with each growth while creating
+     * factions one by one still only copies the matrix a logarithmic number of times. Near the size limit the table
+     * grows to exactly the faction count.
+     *
+     * @return false if the table cannot hold that many factions
+     */
+    public boolean ensureCapacity(int factionCount) {
+        if (factionCount <= capacity) {
+            return true;
+        }
+        long grownCapacity = policyType == PolicyType.ONE_WAY ? capacity + (capacity >> 1) : capacity * 2L;
+        int newCapacity = (int) Math.min(Integer.MAX_VALUE,
+                Math.max(factionCount, Math.max(MIN_CAPACITY, grownCapacity)));
+        if (getSlotCount(newCapacity) > MAX_SLOTS) {
+            newCapacity = factionCount;
+            if (getSlotCount(newCapacity) > MAX_SLOTS) {
+                return false;
+            }
+        }
+        switch (policyType) {
+            case INTERNAL:
+                entries = Arrays.copyOf(entries, newCapacity);
+                break;
+            case ONE_WAY:
+                Object[] grown = new Object[newCapacity * newCapacity];
+                for (int row = 0; row < capacity; row++) {
+                    System.arraycopy(entries, row * capacity, grown, row * newCapacity, capacity);
+                }
+                entries = grown;
+                break;
+            case TWO_WAY:
+                entries = Arrays.copyOf(entries, triangularSize(newCapacity));
+                break;
+        }
+        capacity = newCapacity;
+        changedBlocks.clear();
+        columnsOutdated = true;
+        return true;
+    }
+
+    private long getSlotCount(int capacity) {
+        switch (policyType) {
+            case INTERNAL:
+                return capacity;
+            case ONE_WAY:
+                return (long) capacity * capacity;
+            default:
+                return (long) capacity * (capacity + 1) / 2;
+        }
+    }
+
+    public int indexOf(int faction) {
+        return faction;
+    }
+
+    public int indexOf(int firstFaction, int secondFaction) {
+        return indexOf(policyType, capacity, firstFaction, secondFaction);
+    }
+
+    static int indexOf(PolicyType policyType, int capacity, int firstFaction, int secondFaction) {
+        if (policyType == PolicyType.ONE_WAY) {
+            return firstFaction * capacity + secondFaction;
+        }
+        if (firstFaction > secondFaction) {
+            return triangularSize(firstFaction) + secondFaction;
+        }
+        return triangularSize(secondFaction) + firstFaction;
+    }
+
+    /**
+     * @return the own policy of the slot or the default policy, ignoring the rules
+     */
+    public T get(int index) {
+        Object policy = entries[index];
+        return policy == null ? defaultPolicy : (T) policy;
+    }
+
+    /**
+     * @return the policy of the faction, taking the rules into account
+     */
+    public T resolve(int faction) {
+        Object policy = entries[indexOf(faction)];
+        return policy == null ? resolveRule(faction) : (T) policy;
+    }
+
+    /**
+     * @return the policy of the pair, taking the rules into account
+     */
+    public T resolve(int firstFaction, int secondFaction) {
+        Object policy = entries[indexOf(firstFaction, secondFaction)];
+        return policy == null ? resolveRule(firstFaction, secondFaction) : (T) policy;
+    }
+
+    /**
+     * @return the policy the faction has without an own policy
+     */
+    public T resolveRule(int faction) {
+        return rules.isEmpty() ? defaultPolicy : getDecisionTable().get(faction);
+    }
+
+    /**
+     * @return the policy the pair has without an own policy
+     */
+    public T resolveRule(int firstFaction, int secondFaction) {
+        return rules.isEmpty() ? defaultPolicy : getDecisionTable().get(firstFaction, secondFaction);
+    }
+
+    /**
+     * @return false if the key is not a valid rule key, see {@link PolicyRules}
+     */
+    public boolean putRule(String key, T policy) {
+        if (!rules.put(key, policy)) {
+            return false;
+        }
+        invalidateDecisions();
+        return true;
+    }
+
+    public boolean removeRule(String key) {
+        if (!rules.remove(key)) {
+            return false;
+        }
+        invalidateDecisions();
+        return true;
+    }
+
+    public int getRuleCount() {
+        return rules.size();
+    }
+
+    /**
+     * Recompiles the rules on next use, needs to be called when factions were added or changed.
+     */
+    public void invalidateRules() {
+        invalidateDecisions();
+    }
+
+    private PolicyDecisionTable<T> getDecisionTable() {
+        if (decisions == null) {
+            decisions = rules.compile(factions, defaultPolicy);
+        }
+        return decisions;
+    }
+
+    public boolean isSet(int index) {
+        return entries[index] != null;
+    }
+
+    /**
+     * Stores the canonical instance of the policy. The slot is cleared instead if the policy equals the default and no
+     * rule applies to the slot, so that the slot keeps following the rules.
+     *
+     * @param rulePolicy the policy the slot resolves to without an own policy, see {@link #resolveRule(int, int)}, or
+     *                   null to keep the policy in any case
+     * @return the stored instance, or null if the slot has no own policy now
+     */
+    public T set(int index, T policy, T rulePolicy) {
+        boolean redundant = policy == null || (rulePolicy == defaultPolicy && interner.isDefault(policy));
+        T stored = redundant ? null : interner.retain(policy);
+        Object previous = entries[index];
+        if (previous != null) {
+            interner.release((T) previous);
+        }
+        entries[index] = stored;
+        markChanged(index);
+        return stored;
+    }
+
+    /**
+     * Clears the slots of the removed faction and moves the slots of the faction with the highest id into its place,
+     * the way the faction registry reassigns ids on removal.
+     */
+    public void removeFaction(int removedFaction, int lastFaction) {
+        if (policyType == PolicyType.INTERNAL) {
+            clear(removedFaction);
+            if (removedFaction != lastFaction) {
+                move(lastFaction, removedFaction);
+            }
+        } else {
+            for (int other = 0; other <= lastFaction; other++) {
+                clear(indexOf(removedFaction, other));
+                if (policyType == PolicyType.ONE_WAY) {
+                    clear(indexOf(other, removedFaction));
+                }
+            }
+            if (removedFaction != lastFaction) {
+                for (int other = 0; other <= lastFaction; other++) {
+                    if (other == removedFaction) {
+                        continue;
+                    }
+                    int newOther = other == lastFaction ? removedFaction : other;
+                    move(indexOf(lastFaction, other), indexOf(removedFaction, newOther));
+                    if (policyType == PolicyType.ONE_WAY && other != lastFaction) {
+                        move(indexOf(other, lastFaction), indexOf(other, removedFaction));
+                    }
+                }
+            }
+        }
+        generatedPolicies.clear();
+        invalidateDecisions();
+    }
+
+    private void clear(int index) {
+        Object previous = entries[index];
+        if (previous != null) {
+            interner.release((T) previous);
+            entries[index] = null;
+            markChanged(index);
+        }
+    }
+
+    private void move(int from, int to) {
+        entries[to] = entries[from];
+        entries[from] = null;
+        markChanged(from);
+        markChanged(to);
+    }
+
+    private void markChanged(int index) {
+        changedBlocks.set(index >> PolicyTableSnapshot.BLOCK_SHIFT);
+        if (columns != null) {
+            changedColumnSlots.set(index);
+        }
+    }
+
+    private void invalidateDecisions() {
+        decisions = null;
+        columnsOutdated = true;
+        for (PolicyRelationGraph<T> relationGraph : relationGraphs) {
+            relationGraph.invalidate();
+        }
+    }
+
+    /**
+     * Keeps the relation graph up to date with the table, the graph is rebuilt whenever the rules or the factions
+     * change and otherwise updated by {@link #updateRelationGraphs(int, int)}.
+     */
+    public void addRelationGraph(PolicyRelationGraph<T> relationGraph) {
+        relationGraph.bind(this);
+        relationGraphs.add(relationGraph);
+    }
+
+    /**
+     * Updates the relation graphs after the policy of the pair was set.
+     */
+    public void updateRelationGraphs(int firstFaction, int secondFaction) {
+        if (relationGraphs.isEmpty()) {
+            return;
+        }
+        T policy = resolve(firstFaction, secondFaction);
+        for (PolicyRelationGraph<T> relationGraph : relationGraphs) {
+            relationGraph.update(firstFaction, secondFaction, policy);
+        }
+    }
+
+    /**
+     * @return the column store of the primitive policy fields, brought up to date with the table
+     */
+    public PolicyColumns<T> getColumns() {
+        if (columns == null) {
+            columns = new PolicyColumns<>((Class<T>) defaultPolicy.getClass(), policyType);
+            columnsOutdated = true;
+        }
+        if (columnsOutdated) {
+            columns.resize(entries.length, capacity);
+            columns.setFactionCount(factions.size());
+            writeAllColumns();
+            columnsOutdated = false;
+        } else {
+            for (int slot = changedColumnSlots.nextSetBit(0); slot >= 0; slot = changedColumnSlots.nextSetBit(slot + 1)) {
+                columns.write(slot, resolveSlot(slot));
+            }
+        }
+        changedColumnSlots.clear();
+        return columns;
+    }
+
+    private void writeAllColumns() {
+        int factionCount = factions.size();
+        if (policyType == PolicyType.INTERNAL) {
+            for (int faction = 0; faction < factionCount; faction++) {
+                columns.write(faction, resolve(faction));
+            }
+        } else if (policyType == PolicyType.ONE_WAY) {
+            for (int first = 0; first < factionCount; first++) {
+                for (int second = 0; second < factionCount; second++) {
+                    columns.write(indexOf(first, second), resolve(first, second));
+                }
+            }
+        } else {
+            for (int second = 0; second < factionCount; second++) {
+                for (int first = 0; first <= second; first++) {
+                    columns.write(indexOf(first, second), resolve(first, second));
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolves a slot like {@link #resolve(int, int)} without knowing its factions.
+     */
+    private T resolveSlot(int index) {
+        Object policy = entries[index];
+        if (policy != null) {
+            return (T) policy;
+        }
+        if (rules.isEmpty()) {
+            return defaultPolicy;
+        }
+        switch (policyType) {
+            case INTERNAL:
+                return resolveRule(index);
+            case ONE_WAY:
+                return resolveRule(index / capacity, index % capacity);
+            default:
+                int second = (int) ((Math.sqrt(8.0 * index + 1) - 1) / 2);
+                while (triangularSize(second + 1) <= index) {
+                    second++;
+                }
+                while (triangularSize(second) > index) {
+                    second--;
+                }
+                return resolveRule(index - triangularSize(second), second);
+        }
+    }
+
+    /**
+     * @return the generator for slots without an own policy, or null if there is none
+     */
+    public FactionPolicyGenerator<? extends T> getGenerator() {
+        return generator;
+    }
+
+    /**
+     * Replaces the generator and forgets everything the previous generator produced.
+     */
+    public void setGenerator(FactionPolicyGenerator<? extends T> generator) {
+        this.generator = generator;
+        generatedPolicies.clear();
+    }
+
+    public GeneratedPolicyMemo<T> getGeneratedPolicies() {
+        return generatedPolicies;
+    }
+
+    /**
+     * @return the number of distinct policies stored in the table, not counting the default
+     */
+    public int getDistinctPolicyCount() {
+        return interner.size();
+    }
+
+    /**
+     * Creates an immutable copy of the table that shares all blocks that did not change with the previous snapshot.
+     */
+    public PolicyTableSnapshot<T> snapshot(PolicyTableSnapshot<T> previous) {
+        PolicyDecisionTable<T> snapshotDecisions = rules.isEmpty() ? null : getDecisionTable();
+        boolean sameLayout = previous != null && previous.getCapacity() == capacity;
+        if (sameLayout && changedBlocks.isEmpty() && previous.getDecisionTable() == snapshotDecisions) {
+            return previous;
+        }
+
+        int blockCount = (entries.length + PolicyTableSnapshot.BLOCK_SIZE - 1) >> PolicyTableSnapshot.BLOCK_SHIFT;
+        Object[][] blocks = new Object[blockCount][];
+        for (int block = 0; block < blockCount; block++) {
+            if (sameLayout && !changedBlocks.get(block)) {
+                blocks[block] = previous.getBlock(block);
+            } else {
+                int start = block << PolicyTableSnapshot.BLOCK_SHIFT;
+                blocks[block] = Arrays.copyOfRange(entries, start, start + PolicyTableSnapshot.BLOCK_SIZE);
+            }
+        }
+        changedBlocks.clear();
+        return new PolicyTableSnapshot<>(policyType, capacity, defaultPolicy, blocks, snapshotDecisions);
+    }
+
+    private static int triangularSize(int factionCount) {
+        return (int) ((long) factionCount * (factionCount + 1) / 2);
+    }
+}
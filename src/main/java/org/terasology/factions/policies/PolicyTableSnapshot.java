@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.policies;
+
+import org.terasology.factions.policies.policies.Policy;
+
+/**
+ * Immutable copy of a {@link PolicyTable}. The slots are split into blocks so that consecutive snapshots can share the
+ * blocks that did not change.
+ */
+public final class PolicyTableSnapshot<T extends Policy> {
+    static final int BLOCK_SHIFT = 10;
+    static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    private final PolicyType policyType;
+    private final int capacity;
+    private final T defaultPolicy;
+    private final Object[][] blocks;
+    private final PolicyDecisionTable<T> decisions;
+
+    PolicyTableSnapshot(PolicyType policyType, int capacity, T defaultPolicy, Object[][] blocks,
+                        PolicyDecisionTable<T> decisions) {
+        this.policyType = policyType;
+        this.capacity = capacity;
+        this.defaultPolicy = defaultPolicy;
+        this.blocks = blocks;
+        this.decisions = decisions;
+    }
+
+    public PolicyType getPolicyType() {
+        return policyType;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    Object[] getBlock(int block) {
+        return blocks[block];
+    }
+
+    /**
+     * @return the compiled rules, or null if the table has no rules
+     */
+    PolicyDecisionTable<T> getDecisionTable() {
+        return decisions;
+    }
+
+    public int indexOf(int faction) {
+        return faction;
+    }
+
+    public int indexOf(int firstFaction, int secondFaction) {
+        return PolicyTable.indexOf(policyType, capacity, firstFaction, secondFaction);
+    }
+
+    /**
+     * @return the own policy of the slot or the default policy, ignoring the rules
+     */
+    public T get(int index) {
+        Object policy = getEntry(index);
+        return policy == null ? defaultPolicy : (T) policy;
+    }
+
+    /**
+     * @return the policy of the faction, taking the rules into account
+     */
+    public T resolve(int faction) {
+        Object policy = getEntry(indexOf(faction));
+        if (policy != null) {
+            return (T) policy;
+        }
+        return decisions == null ? defaultPolicy : decisions.get(faction);
+    }
+
+    /**
+     * @return the policy of the pair, taking the rules into account
+     */
+    public T resolve(int firstFaction, int secondFaction) {
+        Object policy = getEntry(indexOf(firstFaction, secondFaction));
+        if (policy != null) {
+            return (T) policy;
+        }
+        return decisions == null ? defaultPolicy : decisions.get(firstFaction, secondFaction);
+    }
+
+    private Object getEntry(int index) {
+        return blocks[index >> BLOCK_SHIFT][index & BLOCK_MASK];
+    }
+}
@@ -26,6 +26,13 @@ public enum PolicyType {
     TWO_WAY;
 
     public static PolicyType getPolicyType(Class<? extends Policy> policyClass) {
+        return PolicyMetadata.of(policyClass).getPolicyType();
+    }
+
+    /**
+     * @return the policy type of the class, or null if it is not an internal, one way or two way policy
+     */
+    static PolicyType resolve(Class<? extends Policy> policyClass) {
         if(InternalPolicy.class.isAssignableFrom(policyClass)) {
             return INTERNAL;
         } else if(OneWayPolicy.class.isAssignableFrom(policyClass)) {
@@ -33,7 +40,7 @@ public enum PolicyType {
         } else if(TwoWayPolicy.class.isAssignableFrom(policyClass)) {
             return TWO_WAY;
         } else {
-            throw new IllegalArgumentException("not a valid policy class");
+            return null;
         }
     }
 }
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.policies;
+
+import org.terasology.factions.policies.policies.Policy;
+
+import java.util.List;
+
+/**
+ * Read-only access to a stored policy without copying it. Primitive fields are read without boxing, any other value
+ * is returned as a copy, so the shared stored instance can never be modified through a view. A view keeps showing the
+ * policy it was created for; saving a new policy does not change it.
+ */
+public final class PolicyView<T extends Policy> {
+    private final T policy;
+    private final PolicyMetadata<T> metadata;
+
+    private PolicyView(T policy) {
+        this.policy = policy;
+        this.metadata = PolicyMetadata.of((Class<T>) policy.getClass());
+    }
+
+    /**
+     * @return a view of the policy, or null if the policy is null
+     */
+    public static <T extends Policy> PolicyView<T> of(T policy) {
+        return policy == null ? null : new PolicyView<>(policy);
+    }
+
+    public Class<T> getPolicyClass() {
+        return metadata.getPolicyClass();
+    }
+
+    public boolean getBoolean(String fieldName) {
+        return getBits(fieldName, boolean.class) != 0;
+    }
+
+    /**
+     * @return the value of an int, short, byte or char field
+     */
+    public int getInt(String fieldName) {
+        PolicyField field = getField(fieldName);
+        Class<?> type = field.getType();
+        if (type != int.class && type != short.class && type != byte.class && type != char.class) {
+            throw new IllegalArgumentException(field + " is not an int field");
+        }
+        return (int) field.getBits(policy);
+    }
+
+    /**
+     * @return the value of any integral field
+     */
+    public long getLong(String fieldName) {
+        PolicyField field = getField(fieldName);
+        if (field.getType() == long.class) {
+            return field.getBits(policy);
+        }
+        return getInt(fieldName);
+    }
+
+    public float getFloat(String fieldName) {
+        return Float.intBitsToFloat((int) getBits(fieldName, float.class));
+    }
+
+    /**
+     * @return the value of a double or float field
+     */
+    public double getDouble(String fieldName) {
+        if (getField(fieldName).getType() == float.class) {
+            return getFloat(fieldName);
+        }
+        return Double.longBitsToDouble(getBits(fieldName, double.class));
+    }
+
+    /**
+     * @return the value of the field, a deep copy unless it is a primitive, string, boxed or enum value
+     */
+    public Object getValue(String fieldName) {
+        PolicyField field = getField(fieldName);
+        return PolicyCopier.copyValue(field.get(policy), field.getType());
+    }
+
+    /**
+     * @return a deep copy of the policy that can be changed and saved
+     */
+    public T copy() {
+        return (T) policy.clone();
+    }
+
+    /**
+     * Copies the policy into the given instance of the same class, so that a scratch policy can be reused.
+     *
+     * @return the target
+     */
+    public T copyInto(T target) {
+        return PolicyCopier.of(getPolicyClass()).copyInto(policy, target);
+    }
+
+    public List<FieldDescriptor> getFieldDescriptions() {
+        return policy.getFieldDescriptions();
+    }
+
+    /**
+     * @return whether the viewed policy is equal by value to the given one, see {@link PolicyInterner}
+     */
+    public boolean isEqualTo(Policy other) {
+        return PolicyInterner.valueEquals(policy, other);
+    }
+
+    private long getBits(String fieldName, Class<?> type) {
+        PolicyField field = getField(fieldName);
+        if (field.getType() != type) {
+            throw new IllegalArgumentException(field + " is not a " + type.getName() + " field");
+        }
+        return field.getBits(policy);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the policy class has no public field of that name
+     */
+    private PolicyField getField(String fieldName) {
+        PolicyField field = metadata.getField(fieldName);
+        if (field == null) {
+            throw new IllegalArgumentException(getPolicyClass().getName() + " has no public field " + fieldName);
+        }
+        return field;
+    }
+
+    @Override
+    public String toString() {
+        return "PolicyView[" + getPolicyClass().getSimpleName() + "]";
+    }
+}
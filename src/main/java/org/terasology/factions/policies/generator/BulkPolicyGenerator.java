@@ -0,0 +1,33 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.policies.generator;
+
+import org.terasology.factions.FactionSnapshot;
+import org.terasology.factions.policies.policies.ExternalPolicy;
+
+/**
+ * Generates the policies of many pairs in parallel, see
+ * {@link org.terasology.factions.FactionSystem#generatePolicies(Class, BulkPolicyGenerator)}. It runs on worker threads
+ * and must be thread-safe, faction state is only available through the snapshot taken when the generation started.
+ */
+@FunctionalInterface
+public interface BulkPolicyGenerator<T extends ExternalPolicy> {
+    /**
+     * @return the policy of the pair, or null to leave the pair as it is. The policy is copied on the worker thread as
+     * soon as it is returned, so the generator may reuse returned instances for the next pair.
+     */
+    T getPolicy(String firstFaction, String secondFaction, FactionSnapshot snapshot);
+}
@@ -17,5 +17,19 @@ package org.terasology.factions.policies.generator;
 
 import org.terasology.factions.policies.policies.Policy;
 
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Computes the policy of a faction or pair that has no own policy, on the first lookup of that faction or pair. The
+ * result is remembered until a policy of one of the {@link #getDependencies() dependencies} is saved. A generator may
+ * return null to fall back to the policy rules and the default policy.
+ */
 public abstract class FactionPolicyGenerator<T extends Policy> {
+    /**
+     * @return the policy classes the generated policies are derived from
+     */
+    public Set<Class<? extends Policy>> getDependencies() {
+        return Collections.emptySet();
+    }
 }
@@ -16,21 +16,35 @@
 package org.terasology.factions.policies.policies;
 
 import org.terasology.factions.policies.FieldDescriptor;
+import org.terasology.factions.policies.FieldDescriptorCache;
+import org.terasology.factions.policies.PolicyCopier;
 import org.terasology.reflection.MappedContainer;
 
 import java.util.List;
 
 @MappedContainer
 public abstract class Policy implements Cloneable {
-    public abstract List<FieldDescriptor> getFieldDescriptions();
+    /**
+     * Describes the public fields of the policy, use {@link org.terasology.factions.policies.FieldDescription} to add
+     * descriptions. The descriptors are cached per class, only values that changed are converted again.
+     */
+    public List<FieldDescriptor> getFieldDescriptions() {
+        return FieldDescriptorCache.of(getClass()).describe(this);
+    }
 
+    /**
+     * @return a deep copy of the policy, see {@link PolicyCopier}
+     */
     @Override
     public Object clone() {
+        PolicyCopier<Policy> copier = (PolicyCopier<Policy>) PolicyCopier.of(getClass());
+        if (copier.isConstructible()) {
+            return copier.copy(this);
+        }
         try {
-            return super.clone();
+            return copier.copyInto(this, (Policy) super.clone());
         } catch (CloneNotSupportedException e) {
-            e.printStackTrace();
+            throw new IllegalStateException(e);
         }
-        return null;
     }
 }
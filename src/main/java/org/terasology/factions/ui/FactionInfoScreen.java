@@ -21,6 +21,7 @@ import org.terasology.factions.components.FactionComponent;
 import org.terasology.factions.policies.FactionPolicySystem;
 import org.terasology.factions.policies.FieldDescriptor;
 import org.terasology.factions.policies.PolicyType;
+import org.terasology.factions.policies.PolicyView;
 import org.terasology.factions.policies.policies.InternalPolicy;
 import org.terasology.factions.policies.policies.OneWayPolicy;
 import org.terasology.factions.policies.policies.Policy;
@@ -35,6 +36,7 @@ import org.terasology.rendering.nui.widgets.UILabel;
 import org.terasology.rendering.nui.widgets.UIList;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class FactionInfoScreen extends CoreScreenLayer {
@@ -52,7 +54,7 @@ public class FactionInfoScreen extends CoreScreenLayer {
     private FactionPolicyComponent selectedFactionPolicy;
     private Class<? extends Policy> policyClass;
     private PolicyType selectedPolicyType;
-    private Policy policy;
+    private PolicyView<?> policy;
     private List<FactionPolicyComponent> policyListItems = new ArrayList<>();
 
     @In
@@ -191,7 +193,7 @@ public class FactionInfoScreen extends CoreScreenLayer {
             @Override
             public List<FieldDescriptor> get() {
                 if(policy == null) {
-                    return new ArrayList<>();
+                    return Collections.emptyList();
                 }
                 return policy.getFieldDescriptions();
             }
@@ -215,7 +217,7 @@ public class FactionInfoScreen extends CoreScreenLayer {
         switch (selectedPolicyType) {
             case INTERNAL:
                 if (selectedFaction1 != null) {
-                    policy = factionSystem.getInternalPolicy(
+                    policy = factionSystem.getInternalPolicyView(
                             (Class<? extends InternalPolicy>) policyClass,
                             selectedFaction1.name);
                 }
@@ -223,7 +225,7 @@ public class FactionInfoScreen extends CoreScreenLayer {
             case ONE_WAY:
                 if (selectedFaction1 != null && selectedFaction2 != null
                         && !selectedFaction1.name.equals(selectedFaction2)) {
-                    policy = factionSystem.getOneWayPolicy(
+                    policy = factionSystem.getOneWayPolicyView(
                             (Class<? extends OneWayPolicy>) policyClass,
                             selectedFaction1.name, selectedFaction2.name);
                 }
@@ -231,7 +233,7 @@ public class FactionInfoScreen extends CoreScreenLayer {
             case TWO_WAY:
                 if (selectedFaction1 != null && selectedFaction2 != null
                         && !selectedFaction1.name.equals(selectedFaction2)) {
-                    policy = factionSystem.getTwoWayPolicy(
+                    policy = factionSystem.getTwoWayPolicyView(
                             (Class<? extends TwoWayPolicy>) policyClass,
                             selectedFaction1.name, selectedFaction2.name);
                 }
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions;
+
+import org.junit.After;
+import org.junit.Test;
+import org.terasology.factions.policies.TestPolicies.Rank;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncPolicyChangeDispatcherTest {
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private AsyncPolicyChangeDispatcher dispatcher;
+
+    @After
+    public void shutdown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    public void testChangesOfOneKeyAreDeliveredInOrder() throws Exception {
+        dispatcher = new AsyncPolicyChangeDispatcher(2, 16);
+        List<Integer> delivered = Collections.synchronizedList(new ArrayList<>());
+        FactionSystem.InternalPolicyChangeCallback<Rank> callback = (policy, faction) -> delivered.add(policy.rank);
+        FactionSystem.InternalPolicyChangeCallback<Rank> wrapped = dispatcher.wrap(callback);
+
+        for (int rank = 1; rank <= 1000; rank++) {
+            wrapped.onPolicyChange(new Rank(rank), "A");
+        }
+
+        // every change is either delivered or replaced by a newer one
+        awaitCondition(() -> dispatcher.getDeliveredCount() + dispatcher.getCoalescedCount() == 1000);
+        assertEquals(1000, (int) delivered.get(delivered.size() - 1));
+        for (int i = 1; i < delivered.size(); i++) {
+            assertTrue(delivered.toString(), delivered.get(i - 1) < delivered.get(i));
+        }
+    }
+
+    @Test
+    public void testWaitingChangeIsReplacedByNewerChange() throws Exception {
+        dispatcher = new AsyncPolicyChangeDispatcher(1, 16);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> delivered = Collections.synchronizedList(new ArrayList<>());
+        FactionSystem.InternalPolicyChangeCallback<Rank> callback = (policy, faction) -> {
+            started.countDown();
+            awaitLatch(release);
+            delivered.add(policy.rank);
+        };
+        FactionSystem.InternalPolicyChangeCallback<Rank> wrapped = dispatcher.wrap(callback);
+
+        wrapped.onPolicyChange(new Rank(0), "A");
+        assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        for (int rank = 1; rank <= 10; rank++) {
+            wrapped.onPolicyChange(new Rank(rank), "A");
+        }
+        assertEquals(1, dispatcher.getQueueDepth());
+        release.countDown();
+
+        awaitCondition(() -> dispatcher.getDeliveredCount() == 2);
+        assertEquals(Arrays.asList(0, 10), delivered);
+        assertEquals(9, dispatcher.getCoalescedCount());
+        assertEquals(0, dispatcher.getQueueDepth());
+    }
+
+    @Test
+    public void testFullExecutorQueueDelaysButKeepsChanges() throws Exception {
+        dispatcher = new AsyncPolicyChangeDispatcher(1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> delivered = Collections.synchronizedList(new ArrayList<>());
+        FactionSystem.InternalPolicyChangeCallback<Rank> callback = (policy, faction) -> {
+            started.countDown();
+            awaitLatch(release);
+            delivered.add(faction);
+        };
+        FactionSystem.InternalPolicyChangeCallback<Rank> wrapped = dispatcher.wrap(callback);
+
+        wrapped.onPolicyChange(new Rank(1), "Faction0");
+        assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        for (int faction = 1; faction < 50; faction++) {
+            wrapped.onPolicyChange(new Rank(1), "Faction" + faction);
+        }
+        assertTrue(dispatcher.getBackpressuredCount() > 0);
+        release.countDown();
+
+        awaitCondition(() -> dispatcher.getDeliveredCount() == 50);
+        assertEquals(50, delivered.size());
+        assertEquals(0, dispatcher.getDroppedCount());
+    }
+
+    @Test
+    public void testChangesAfterShutdownAreDropped() {
+        dispatcher = new AsyncPolicyChangeDispatcher(1, 16);
+        List<Integer> delivered = Collections.synchronizedList(new ArrayList<>());
+        FactionSystem.InternalPolicyChangeCallback<Rank> callback = (policy, faction) -> delivered.add(policy.rank);
+        FactionSystem.InternalPolicyChangeCallback<Rank> wrapped = dispatcher.wrap(callback);
+        dispatcher.shutdown();
+
+        wrapped.onPolicyChange(new Rank(1), "A");
+
+        assertEquals(1, dispatcher.getSubmittedCount());
+        assertEquals(1, dispatcher.getDroppedCount());
+        assertEquals(0, dispatcher.getQueueDepth());
+        assertTrue(delivered.isEmpty());
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (!condition.getAsBoolean()) {
+            assertTrue("Timed out waiting for the deliveries", System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private static void awaitLatch(CountDownLatch latch) {
+        try {
+            latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
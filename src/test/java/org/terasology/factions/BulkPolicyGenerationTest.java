@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions;
+
+import org.junit.Test;
+import org.terasology.factions.policies.PolicyType;
+import org.terasology.factions.policies.generator.BulkPolicyGenerator;
+import org.terasology.factions.policies.policies.OneWayPolicy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BulkPolicyGenerationTest {
+    private static final List<String> FACTIONS = Arrays.asList("a", "b", "c", "d", "e");
+
+    @Test
+    public void testGeneratorMayReuseReturnedInstance() throws Exception {
+        FactionSystem factionSystem = mock(FactionSystem.class);
+        when(factionSystem.getFactionId(anyString())).thenAnswer(invocation ->
+                FACTIONS.indexOf((String) invocation.getArguments()[0]));
+        List<PolicyChange<?>> applied = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> applied.add((PolicyChange<?>) invocation.getArguments()[0]))
+                .when(factionSystem).applyPolicyChange(any(PolicyChange.class));
+
+        ThreadLocal<Distance> scratch = ThreadLocal.withInitial(Distance::new);
+        BulkPolicyGenerator<Distance> generator = (first, second, snapshot) -> {
+            Distance distance = scratch.get();
+            distance.value = FACTIONS.indexOf(first) * 10 + FACTIONS.indexOf(second);
+            return distance;
+        };
+
+        BulkPolicyGeneration<Distance> generation = new BulkPolicyGeneration<>(Distance.class, generator,
+                PolicyType.ONE_WAY, FACTIONS, factionSystem);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        generation.start(pool);
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(generation.isDone());
+        assertTrue(generation.merge(Long.MAX_VALUE));
+
+        assertEquals(FACTIONS.size() * (FACTIONS.size() - 1), applied.size());
+        for (PolicyChange<?> change : applied) {
+            Distance distance = (Distance) change.getPolicy();
+            assertNotSame(scratch.get(), distance);
+            int expected = FACTIONS.indexOf(change.getFirstFaction()) * 10
+                    + FACTIONS.indexOf(change.getSecondFaction());
+            assertEquals(change.toString(), expected, distance.value);
+        }
+    }
+
+    public static class Distance extends OneWayPolicy {
+        public int value;
+    }
+}
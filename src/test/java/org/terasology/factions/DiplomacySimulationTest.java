@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.terasology.factions.policies.PolicyTable;
+import org.terasology.factions.policies.PolicyType;
+import org.terasology.factions.policies.TestPolicies.Trust;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.terasology.factions.policies.TestPolicies.factions;
+import static org.terasology.factions.policies.TestPolicies.set;
+
+public class DiplomacySimulationTest {
+    private static final List<String> FACTIONS = Arrays.asList("A", "B", "C");
+
+    private PolicyTable<Trust> table;
+    private DiplomacySimulation simulation;
+
+    @Before
+    public void setup() {
+        table = new PolicyTable<>(PolicyType.ONE_WAY, new Trust(), factions(FACTIONS.toArray(new String[0])));
+        table.ensureCapacity(FACTIONS.size());
+
+        FactionSystem factionSystem = mock(FactionSystem.class);
+        when(factionSystem.getPolicyColumns(Trust.class)).thenAnswer(invocation -> table.getColumns());
+        when(factionSystem.getMetrics()).thenReturn(new FactionMetrics());
+        when(factionSystem.getFactionName(anyInt())).thenAnswer(invocation ->
+                FACTIONS.get((Integer) invocation.getArguments()[0]));
+        when(factionSystem.getOneWayPolicy(eq(Trust.class), anyInt(), anyInt(), any(Trust.class))).thenAnswer(invocation -> {
+            Object[] arguments = invocation.getArguments();
+            Trust stored = table.resolve((Integer) arguments[1], (Integer) arguments[2]);
+            Trust target = (Trust) arguments[3];
+            target.trust = stored.trust;
+            target.trusted = stored.trusted;
+            return target;
+        });
+        PolicyTransaction transaction = mock(PolicyTransaction.class);
+        doAnswer(invocation -> {
+            Object[] arguments = invocation.getArguments();
+            int index = table.indexOf(FACTIONS.indexOf(arguments[1]), FACTIONS.indexOf(arguments[2]));
+            return set(table, index, (Trust) ((Trust) arguments[0]).clone());
+        }).when(transaction).saveOneWayPolicy(any(Trust.class), anyString(), anyString());
+        when(factionSystem.beginTransaction()).thenReturn(transaction);
+
+        simulation = new DiplomacySimulation(factionSystem);
+        simulation.register(Trust.class, "trust", RelationDynamics.drift(1, 0, 10));
+    }
+
+    @Test
+    public void testSmallBudgetSpreadsSweepOverFrames() {
+        simulation.setTickBudgetMicros(0);
+
+        // every frame either advances one run or saves it, three factions have three runs
+        for (int frame = 0; frame < 2 * FACTIONS.size(); frame++) {
+            simulation.update(1);
+        }
+        assertEquals(0, simulation.getCompletedSweeps(Trust.class, "trust"));
+        assertEquals(1, table.resolve(2, 1).trust, 0);
+
+        simulation.update(1);
+        assertEquals(1, simulation.getCompletedSweeps(Trust.class, "trust"));
+        assertEquals(0, table.resolve(1, 1).trust, 0);
+    }
+
+    @Test
+    public void testLargeBudgetCompletesOneSweepPerFrame() {
+        simulation.setTickBudgetMicros(1000000);
+
+        simulation.update(1);
+        assertEquals(1, simulation.getCompletedSweeps(Trust.class, "trust"));
+        simulation.update(0.5f);
+        assertEquals(2, simulation.getCompletedSweeps(Trust.class, "trust"));
+
+        assertEquals(1.5, table.resolve(0, 1).trust, 1e-6);
+        assertEquals(1.5, table.resolve(1, 0).trust, 1e-6);
+    }
+
+    @Test
+    public void testPausedSimulationDoesNotAdvance() {
+        simulation.setTickBudgetMicros(1000000);
+        simulation.setPaused(true);
+
+        simulation.update(1);
+
+        assertEquals(0, simulation.getCompletedSweeps(Trust.class, "trust"));
+        assertEquals(0, table.resolve(0, 1).trust, 0);
+    }
+}
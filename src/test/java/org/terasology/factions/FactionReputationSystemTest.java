@@ -0,0 +1,131 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.terasology.context.internal.ContextImpl;
+import org.terasology.engine.Time;
+import org.terasology.entitySystem.entity.EntityRef;
+import org.terasology.factions.components.FactionComponent;
+import org.terasology.factions.components.FactionReputationComponent;
+import org.terasology.registry.InjectionHelper;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class FactionReputationSystemTest {
+    private static final float EPSILON = 1e-4f;
+
+    private FactionReputationSystem reputationSystem;
+    private long now;
+
+    @Before
+    public void setup() {
+        FactionSystem factionSystem = mock(FactionSystem.class);
+        when(factionSystem.getFactions()).thenReturn(Arrays.asList(new FactionComponent(), new FactionComponent()));
+        Time time = mock(Time.class);
+        when(time.getGameTimeInMs()).thenAnswer(invocation -> now);
+
+        ContextImpl context = new ContextImpl();
+        context.put(FactionSystem.class, factionSystem);
+        context.put(Time.class, time);
+        reputationSystem = new FactionReputationSystem();
+        InjectionHelper.inject(reputationSystem, context);
+    }
+
+    @Test
+    public void testReputationHalvesEveryHalfLife() {
+        assertEquals(80f, FactionReputationSystem.decay(80f, 0, 10f), EPSILON);
+        assertEquals(40f, FactionReputationSystem.decay(80f, 10000, 10f), EPSILON);
+        assertEquals(20f, FactionReputationSystem.decay(80f, 20000, 10f), EPSILON);
+    }
+
+    @Test
+    public void testNegativeReputationDecaysTowardZero() {
+        float decayed = FactionReputationSystem.decay(-50f, 5000, 10f);
+        assertTrue(decayed < 0 && decayed > -50f);
+        assertEquals(-25f, FactionReputationSystem.decay(-50f, 10000, 10f), EPSILON);
+    }
+
+    @Test
+    public void testDecayIsIndependentOfReadCount() {
+        // decaying in two steps gives the same value as decaying at once, so lazy reads never drift
+        float once = FactionReputationSystem.decay(100f, 7000, FactionReputationSystem.DEFAULT_HALF_LIFE);
+        float twice = FactionReputationSystem.decay(FactionReputationSystem.decay(100f, 3000,
+                FactionReputationSystem.DEFAULT_HALF_LIFE), 4000, FactionReputationSystem.DEFAULT_HALF_LIFE);
+        assertEquals(once, twice, EPSILON);
+    }
+
+    @Test
+    public void testLongHalfLifeDecaysSlowly() {
+        float decayed = FactionReputationSystem.decay(10f, 1000, FactionReputationSystem.DEFAULT_HALF_LIFE);
+        assertTrue(decayed < 10f);
+        assertTrue(decayed > 9.98f);
+    }
+
+    @Test
+    public void testFirstReputationMarksEntity() {
+        EntityRef entity = mockEntity(1);
+        reputationSystem.setReputation(entity, 0, 5f);
+        reputationSystem.addReputation(entity, 1, 5f);
+        verify(entity, times(2)).addComponent(any(FactionReputationComponent.class));
+    }
+
+    @Test
+    public void testDestroyedEntityLosesReputations() {
+        EntityRef destroyed = mockEntity(1);
+        EntityRef other = mockEntity(2);
+        reputationSystem.setReputation(destroyed, 0, 5f);
+        reputationSystem.setReputation(destroyed, 1, -5f);
+        reputationSystem.setReputation(other, 1, 3f);
+
+        reputationSystem.onEntityDestroyed(null, destroyed);
+
+        assertEquals(1, reputationSystem.getEntryCount());
+        assertEquals(0f, reputationSystem.getReputation(destroyed, 1), 0);
+        assertEquals(3f, reputationSystem.getReputation(other, 1), 0);
+    }
+
+    @Test
+    public void testPruningStartsWithFirstFaction() {
+        // after 100 half-lives only the huge reputation with faction 1 is still noticeable
+        reputationSystem.setReputation(mockEntity(1), 0, 1f);
+        reputationSystem.setReputation(mockEntity(1), 1, 1e30f);
+        now = 100 * 1000L * (long) FactionReputationSystem.DEFAULT_HALF_LIFE;
+
+        reputationSystem.update(0);
+        assertEquals(1, reputationSystem.getEntryCount());
+        assertTrue(reputationSystem.getReputation(mockEntity(1), 1) > 0);
+
+        now += FactionReputationSystem.PRUNE_INTERVAL_MS;
+        reputationSystem.update(0);
+        assertEquals(1, reputationSystem.getEntryCount());
+    }
+
+    private static EntityRef mockEntity(long id) {
+        EntityRef entity = mock(EntityRef.class);
+        when(entity.getId()).thenReturn(id);
+        return entity;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions;
+
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.SetMultimap;
+import org.junit.Test;
+import org.terasology.factions.policies.TestPolicies.Alliance;
+import org.terasology.factions.policies.TestPolicies.Rank;
+import org.terasology.factions.policies.TestPolicies.Trust;
+import org.terasology.factions.policies.policies.ExternalPolicy;
+import org.terasology.factions.policies.policies.Policy;
+import org.terasology.factions.policies.policies.TwoWayPolicy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class PolicySubscribersTest {
+    private final SetMultimap<Class<? extends Policy>, FactionSystem.InternalPolicyChangeCallback> internalSubscribers =
+            LinkedHashMultimap.create();
+    private final SetMultimap<Class<? extends Policy>, FactionSystem.ExternalPolicyChangeCallback> externalSubscribers =
+            LinkedHashMultimap.create();
+    private final SetMultimap<Class<? extends Policy>, FactionSystem.PolicyBatchChangeCallback> batchSubscribers =
+            LinkedHashMultimap.create();
+
+    @Test
+    public void testSubscribersOfSuperclassesAreFoldedIn() {
+        FactionSystem.ExternalPolicyChangeCallback alliance = (policy, first, second) -> { };
+        FactionSystem.ExternalPolicyChangeCallback twoWay = (policy, first, second) -> { };
+        FactionSystem.ExternalPolicyChangeCallback trust = (policy, first, second) -> { };
+        FactionSystem.PolicyBatchChangeCallback anyPolicy = changes -> { };
+        externalSubscribers.put(Alliance.class, alliance);
+        externalSubscribers.put(TwoWayPolicy.class, twoWay);
+        externalSubscribers.put(Trust.class, trust);
+        batchSubscribers.put(Policy.class, anyPolicy);
+
+        PolicySubscribers subscribers = build(Alliance.class);
+
+        assertArrayEquals(new Object[]{alliance, twoWay}, subscribers.externalCallbacks);
+        assertArrayEquals(new Object[]{anyPolicy}, subscribers.batchCallbacks);
+        assertEquals(0, subscribers.internalCallbacks.length);
+    }
+
+    @Test
+    public void testCallbackRegisteredOnSeveralClassesIsCalledOnce() {
+        FactionSystem.ExternalPolicyChangeCallback callback = (policy, first, second) -> { };
+        externalSubscribers.put(Trust.class, callback);
+        externalSubscribers.put(ExternalPolicy.class, callback);
+        externalSubscribers.put(Policy.class, callback);
+
+        assertArrayEquals(new Object[]{callback}, build(Trust.class).externalCallbacks);
+    }
+
+    @Test
+    public void testClassWithoutSubscribersSharesEmptyEntry() {
+        externalSubscribers.put(Trust.class, (policy, first, second) -> { });
+
+        assertSame(PolicySubscribers.NONE, build(Rank.class));
+        assertSame(PolicySubscribers.NONE, build(Alliance.class));
+    }
+
+    @Test
+    public void testBatchSubscriberReceivesOneBatch() {
+        FactionSystem factionSystem = new FactionSystem();
+        List<List<PolicyChange<Rank>>> batches = new ArrayList<>();
+        List<String> singleChanges = new ArrayList<>();
+        factionSystem.registerPolicyBatchChangeSubscriber(Rank.class, batches::add);
+        factionSystem.registerPolicyChangeSubscriber(Rank.class, (policy, faction) -> singleChanges.add(faction));
+
+        factionSystem.notifyPolicyChangeSubscribers(Arrays.asList(
+                new PolicyChange<>(new Rank(1), "A"), new PolicyChange<>(new Rank(2), "B")));
+
+        assertEquals(1, batches.size());
+        assertEquals(2, batches.get(0).size());
+        assertEquals(Arrays.asList("A", "B"), singleChanges);
+    }
+
+    private PolicySubscribers build(Class<? extends Policy> policyClass) {
+        return PolicySubscribers.build(policyClass, internalSubscribers, externalSubscribers, batchSubscribers);
+    }
+}
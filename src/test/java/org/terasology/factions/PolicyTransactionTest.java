@@ -0,0 +1,144 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.terasology.factions.policies.TestPolicies.Alliance;
+import org.terasology.factions.policies.TestPolicies.Rank;
+import org.terasology.factions.policies.TestPolicies.Trust;
+import org.terasology.factions.policies.policies.Policy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PolicyTransactionTest {
+    private FactionSystem factionSystem;
+    private List<List<PolicyChange<?>>> notified;
+    private List<String> calls;
+
+    @Before
+    public void setup() {
+        factionSystem = mock(FactionSystem.class);
+        when(factionSystem.checkFactionExists(anyString())).thenReturn(true);
+        when(factionSystem.isApplicable(any(PolicyChange.class))).thenReturn(true);
+        when(factionSystem.copyPolicy(any(Policy.class))).thenAnswer(invocation -> invocation.getArguments()[0]);
+        notified = new ArrayList<>();
+        calls = new ArrayList<>();
+        doAnswer(invocation -> calls.add("apply")).when(factionSystem).applyPolicyChange(any(PolicyChange.class));
+        doAnswer(invocation -> {
+            calls.add("notify");
+            notified.add(new ArrayList<>((List<PolicyChange<?>>) invocation.getArguments()[0]));
+            return null;
+        }).when(factionSystem).notifyPolicyChangeSubscribers(any(List.class));
+    }
+
+    @Test
+    public void testEveryChangeIsAppliedBeforeAnySubscriberIsNotified() {
+        PolicyTransaction transaction = new PolicyTransaction(factionSystem);
+        transaction.saveInternalPolicy(new Rank(1), "A");
+        transaction.saveOneWayPolicy(new Trust(0.5f), "A", "B");
+        transaction.saveInternalPolicy(new Rank(2), "B");
+        transaction.saveTwoWayPolicy(new Alliance(true, 1), "A", "B");
+
+        assertTrue(transaction.commit());
+
+        assertEquals(Arrays.asList("apply", "apply", "apply", "apply", "notify", "notify", "notify"), calls);
+        // one batch per policy class
+        assertEquals(3, notified.size());
+        assertEquals(2, notified.get(0).size());
+        assertEquals(Rank.class, notified.get(0).get(0).getPolicy().getClass());
+        assertEquals(1, notified.get(1).size());
+        assertEquals(1, notified.get(2).size());
+    }
+
+    @Test
+    public void testLastSaveOfAKeyWins() {
+        PolicyTransaction transaction = new PolicyTransaction(factionSystem);
+        transaction.saveTwoWayPolicy(new Alliance(true, 1), "A", "B");
+        transaction.saveTwoWayPolicy(new Alliance(true, 2), "B", "A");
+
+        assertTrue(transaction.commit());
+
+        verify(factionSystem, times(1)).applyPolicyChange(any(PolicyChange.class));
+        assertEquals(1, notified.size());
+        assertEquals(1, notified.get(0).size());
+        assertEquals(2, ((Alliance) notified.get(0).get(0).getPolicy()).strength);
+    }
+
+    @Test
+    public void testCommitAppliesNothingIfAChangeIsNoLongerApplicable() {
+        PolicyTransaction transaction = new PolicyTransaction(factionSystem);
+        transaction.saveInternalPolicy(new Rank(1), "A");
+        transaction.saveInternalPolicy(new Rank(2), "B");
+        when(factionSystem.isApplicable(any(PolicyChange.class))).thenReturn(true, false);
+
+        assertFalse(transaction.commit());
+
+        verify(factionSystem, never()).applyPolicyChange(any(PolicyChange.class));
+        assertTrue(notified.isEmpty());
+    }
+
+    @Test
+    public void testChangesForMissingFactionsAreNotStaged() {
+        when(factionSystem.checkFactionExists("Missing")).thenReturn(false);
+        PolicyTransaction transaction = new PolicyTransaction(factionSystem);
+        transaction.saveOneWayPolicy(new Trust(1f), "A", "Missing");
+
+        assertTrue(transaction.isEmpty());
+    }
+
+    @Test
+    public void testRollbackDiscardsChanges() {
+        PolicyTransaction transaction = new PolicyTransaction(factionSystem);
+        transaction.saveInternalPolicy(new Rank(1), "A");
+
+        transaction.rollback();
+
+        assertTrue(transaction.isEmpty());
+        verify(factionSystem, never()).applyPolicyChange(any(PolicyChange.class));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testTransactionCannotBeCommittedTwice() {
+        PolicyTransaction transaction = new PolicyTransaction(factionSystem);
+        transaction.saveInternalPolicy(new Rank(1), "A");
+        transaction.commit();
+
+        transaction.commit();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNothingCanBeSavedAfterRollback() {
+        PolicyTransaction transaction = new PolicyTransaction(factionSystem);
+        transaction.rollback();
+
+        transaction.saveInternalPolicy(new Rank(1), "A");
+    }
+}
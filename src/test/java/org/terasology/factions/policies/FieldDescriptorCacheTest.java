@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.policies;
+
+import org.junit.Test;
+import org.terasology.factions.policies.policies.InternalPolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class FieldDescriptorCacheTest {
+
+    @Test
+    public void testUnchangedPolicyReusesDescriptors() {
+        DescribedPolicy policy = new DescribedPolicy();
+        policy.names.add("first");
+        FieldDescriptorCache cache = FieldDescriptorCache.of(DescribedPolicy.class);
+
+        List<FieldDescriptor> descriptors = cache.describe(policy);
+        assertSame(descriptors, cache.describe(policy));
+        assertEquals("count", descriptors.get(0).name);
+        assertEquals("0", descriptors.get(0).value);
+        assertEquals("The count", descriptors.get(0).description);
+        assertEquals("[first]", descriptors.get(2).value);
+    }
+
+    @Test
+    public void testChangedPrimitiveIsDescribedAgain() {
+        DescribedPolicy policy = new DescribedPolicy();
+        FieldDescriptorCache cache = FieldDescriptorCache.of(DescribedPolicy.class);
+        List<FieldDescriptor> descriptors = cache.describe(policy);
+
+        policy.count = 3;
+        List<FieldDescriptor> changed = cache.describe(policy);
+        assertNotSame(descriptors, changed);
+        assertEquals("3", changed.get(0).value);
+        assertSame(changed.get(1), descriptors.get(1));
+    }
+
+    @Test
+    public void testCollectionIsDescribedAgainWhenItsSizeOrInstanceChanges() {
+        DescribedPolicy policy = new DescribedPolicy();
+        FieldDescriptorCache cache = FieldDescriptorCache.of(DescribedPolicy.class);
+        List<FieldDescriptor> descriptors = cache.describe(policy);
+
+        policy.names.add("added");
+        List<FieldDescriptor> grown = cache.describe(policy);
+        assertNotSame(descriptors, grown);
+        assertEquals("[added]", grown.get(2).value);
+
+        policy.names = new ArrayList<>(policy.names);
+        policy.names.set(0, "replaced");
+        assertEquals("[replaced]", cache.describe(policy).get(2).value);
+    }
+
+    public static class DescribedPolicy extends InternalPolicy {
+        @FieldDescription("The count")
+        public int count;
+        public String label = "label";
+        public List<String> names = new ArrayList<>();
+    }
+}
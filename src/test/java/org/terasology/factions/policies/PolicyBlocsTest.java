@@ -0,0 +1,128 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.policies;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.terasology.factions.policies.TestPolicies.Alliance;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.terasology.factions.policies.TestPolicies.factions;
+import static org.terasology.factions.policies.TestPolicies.set;
+
+public class PolicyBlocsTest {
+    private static final int FACTION_COUNT = 6;
+
+    private PolicyTable<Alliance> table;
+    private PolicyBlocs<Alliance> blocs;
+
+    @Before
+    public void setup() {
+        table = new PolicyTable<>(PolicyType.TWO_WAY, new Alliance(), factions(FACTION_COUNT));
+        table.ensureCapacity(FACTION_COUNT);
+        PolicyField allied = PolicyMetadata.of(Alliance.class).getField("allied");
+        PolicyRelationGraph<Alliance> relationGraph = new PolicyRelationGraph<>(Alliance.class, allied);
+        table.addRelationGraph(relationGraph);
+        blocs = relationGraph.getBlocs();
+    }
+
+    @Test
+    public void testEveryFactionStartsInItsOwnBloc() {
+        assertEquals(FACTION_COUNT, blocs.getBlocCount());
+        assertEquals(1, blocs.getBlocSize(0));
+        assertFalse(blocs.isSameBloc(0, 1));
+    }
+
+    @Test
+    public void testAddedEdgesMergeBlocs() {
+        assertEquals(FACTION_COUNT, blocs.getBlocCount());
+        setAllied(0, 1, true);
+        setAllied(1, 2, true);
+        setAllied(3, 4, true);
+
+        assertEquals(3, blocs.getBlocCount());
+        assertTrue(blocs.isSameBloc(0, 2));
+        assertTrue(blocs.isSameBloc(3, 4));
+        assertFalse(blocs.isSameBloc(2, 3));
+        assertEquals(3, blocs.getBlocSize(1));
+    }
+
+    @Test
+    public void testRemovedBridgeSplitsBloc() {
+        setAllied(0, 1, true);
+        setAllied(1, 2, true);
+        setAllied(2, 3, true);
+        assertEquals(3, blocs.getBlocCount());
+
+        setAllied(1, 2, false);
+
+        assertEquals(4, blocs.getBlocCount());
+        assertTrue(blocs.isSameBloc(0, 1));
+        assertTrue(blocs.isSameBloc(2, 3));
+        assertFalse(blocs.isSameBloc(1, 2));
+        assertEquals(2, blocs.getBlocSize(0));
+        assertEquals(2, blocs.getBlocSize(3));
+    }
+
+    @Test
+    public void testRemovedEdgeOfCycleKeepsBloc() {
+        setAllied(0, 1, true);
+        setAllied(1, 2, true);
+        setAllied(2, 0, true);
+        assertEquals(FACTION_COUNT - 2, blocs.getBlocCount());
+
+        setAllied(0, 1, false);
+
+        assertEquals(FACTION_COUNT - 2, blocs.getBlocCount());
+        assertTrue(blocs.isSameBloc(0, 1));
+        assertEquals(3, blocs.getBlocSize(2));
+    }
+
+    @Test
+    public void testSplitBlocCanMergeAgain() {
+        setAllied(0, 1, true);
+        setAllied(1, 2, true);
+        assertEquals(FACTION_COUNT - 2, blocs.getBlocCount());
+        setAllied(1, 2, false);
+        assertEquals(FACTION_COUNT - 1, blocs.getBlocCount());
+        setAllied(2, 0, true);
+
+        assertEquals(FACTION_COUNT - 2, blocs.getBlocCount());
+        assertTrue(blocs.isSameBloc(1, 2));
+        assertEquals(3, blocs.getBlocSize(0));
+    }
+
+    @Test
+    public void testRebuildMatchesIncrementalUpdates() {
+        setAllied(0, 1, true);
+        setAllied(4, 5, true);
+        assertEquals(FACTION_COUNT - 2, blocs.getBlocCount());
+        setAllied(0, 1, false);
+
+        table.invalidateRules();
+
+        assertEquals(FACTION_COUNT - 1, blocs.getBlocCount());
+        assertFalse(blocs.isSameBloc(0, 1));
+        assertTrue(blocs.isSameBloc(4, 5));
+    }
+
+    private void setAllied(int firstFaction, int secondFaction, boolean allied) {
+        set(table, table.indexOf(firstFaction, secondFaction), new Alliance(allied, 0));
+        table.updateRelationGraphs(firstFaction, secondFaction);
+    }
+}
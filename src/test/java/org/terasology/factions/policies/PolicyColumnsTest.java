@@ -0,0 +1,129 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.policies;
+
+import org.junit.Test;
+import org.terasology.factions.policies.TestPolicies.Alliance;
+import org.terasology.factions.policies.TestPolicies.Trust;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.terasology.factions.policies.TestPolicies.factions;
+import static org.terasology.factions.policies.TestPolicies.set;
+
+public class PolicyColumnsTest {
+
+    @Test
+    public void testPairsOfFactionsWithThemselvesAreSkipped() {
+        PolicyTable<Alliance> table = allianceTable(4);
+        set(table, table.indexOf(1, 0), new Alliance(true, 1));
+
+        PolicyColumns<Alliance> columns = table.getColumns();
+
+        assertEquals(1, columns.countBoolean("allied", true));
+        assertEquals(5, columns.countBoolean("allied", false));
+        assertEquals(Arrays.asList("0&1"), scanBoolean(columns, "allied", true));
+    }
+
+    @Test
+    public void testColumnsFollowChangesOfTheTable() {
+        PolicyTable<Alliance> table = allianceTable(4);
+        assertEquals(0, table.getColumns().getInt("strength", table.indexOf(2, 3)));
+
+        set(table, table.indexOf(2, 3), new Alliance(false, 5));
+        assertEquals(5, table.getColumns().getInt("strength", table.indexOf(2, 3)));
+
+        set(table, table.indexOf(2, 3), new Alliance());
+        assertEquals(0, table.getColumns().getInt("strength", table.indexOf(2, 3)));
+    }
+
+    @Test
+    public void testColumnsHoldWhatTheRulesResolveTo() {
+        PolicyTable<Alliance> table = allianceTable(4);
+        table.getColumns();
+        table.putRule("*&*", new Alliance(true, 1));
+        int index = table.indexOf(0, 1);
+        table.set(index, new Alliance(), table.resolveRule(0, 1));
+
+        PolicyColumns<Alliance> columns = table.getColumns();
+
+        assertEquals(5, columns.countBoolean("allied", true));
+        assertEquals(1, columns.getInt("strength", table.indexOf(2, 3)));
+        assertEquals(0, columns.getInt("strength", index));
+    }
+
+    @Test
+    public void testOneWayScanReportsDirectedPairs() {
+        PolicyTable<Trust> table = new PolicyTable<>(PolicyType.ONE_WAY, new Trust(), factions(3));
+        table.ensureCapacity(3);
+        set(table, table.indexOf(0, 1), new Trust(0.25f));
+        set(table, table.indexOf(1, 0), new Trust(0.75f));
+
+        PolicyColumns<Trust> columns = table.getColumns();
+        List<String> pairs = new ArrayList<>();
+        columns.scanDouble("trust", trust -> trust > 0.5, (first, second) -> pairs.add(first + ">" + second));
+
+        assertEquals(Arrays.asList("1>0"), pairs);
+        assertEquals(0.25, columns.getDouble("trust", table.indexOf(0, 1)), 0);
+        pairs.clear();
+        columns.scanDouble("trust", trust -> trust < 0.5, (first, second) -> pairs.add(first + ">" + second));
+        assertEquals(5, pairs.size());
+    }
+
+    @Test
+    public void testBooleanScanAcrossWords() {
+        int factionCount = 12;
+        PolicyTable<Alliance> table = allianceTable(factionCount);
+        for (int second = 0; second < factionCount; second++) {
+            for (int first = 0; first < second; first++) {
+                if ((first + second) % 3 == 0) {
+                    set(table, table.indexOf(first, second), new Alliance(true, 0));
+                }
+            }
+        }
+
+        Set<String> expected = new HashSet<>();
+        for (int second = 0; second < factionCount; second++) {
+            for (int first = 0; first < second; first++) {
+                if (table.resolve(first, second).allied) {
+                    expected.add(first + "&" + second);
+                }
+            }
+        }
+        PolicyColumns<Alliance> columns = table.getColumns();
+
+        assertEquals(expected, new HashSet<>(scanBoolean(columns, "allied", true)));
+        assertEquals(expected.size(), columns.countBoolean("allied", true));
+        assertEquals(factionCount * (factionCount - 1) / 2 - expected.size(), columns.countBoolean("allied", false));
+    }
+
+    private static PolicyTable<Alliance> allianceTable(int factionCount) {
+        PolicyTable<Alliance> table = new PolicyTable<>(PolicyType.TWO_WAY, new Alliance(), factions(factionCount));
+        table.ensureCapacity(factionCount);
+        return table;
+    }
+
+    private static List<String> scanBoolean(PolicyColumns<?> columns, String fieldName, boolean value) {
+        List<String> pairs = new ArrayList<>();
+        columns.scanBoolean(fieldName, value, (first, second) -> pairs.add(first + "&" + second));
+        return pairs;
+    }
+}
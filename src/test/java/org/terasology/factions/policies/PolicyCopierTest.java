@@ -0,0 +1,161 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.policies;
+
+import org.junit.Test;
+import org.terasology.factions.policies.policies.InternalPolicy;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PolicyCopierTest {
+
+    @Test
+    public void testCopyKeepsNonPublicAndFinalState() {
+        StatePolicy source = new StatePolicy(7, "kept");
+        source.setSecret(3);
+
+        StatePolicy copy = (StatePolicy) source.clone();
+
+        assertEquals(3, copy.getSecret());
+        assertEquals(7, copy.level);
+        assertEquals("kept", copy.name);
+    }
+
+    @Test
+    public void testCopyIntoOverwritesNonPublicState() {
+        StatePolicy source = new StatePolicy(7, "kept");
+        source.setSecret(3);
+        StatePolicy target = new StatePolicy(1, "replaced");
+
+        PolicyCopier.of(StatePolicy.class).copyInto(source, target);
+
+        assertEquals(3, target.getSecret());
+        assertEquals(7, target.level);
+        assertEquals("kept", target.name);
+    }
+
+    @Test
+    public void testCollectionsKeepTheirDeclaredTypes() {
+        CollectionPolicy source = new CollectionPolicy();
+        source.queue.add("first");
+        source.queue.add("second");
+        source.weights.put(Weight.HEAVY, 2);
+
+        CollectionPolicy copy = (CollectionPolicy) source.clone();
+
+        assertNotSame(source.queue, copy.queue);
+        assertEquals(source.queue, copy.queue);
+        assertNotSame(source.weights, copy.weights);
+        assertEquals(source.weights, copy.weights);
+    }
+
+    @Test
+    public void testSortedSetKeepsItsComparator() {
+        CollectionPolicy source = new CollectionPolicy();
+        source.sorted.addAll(Arrays.asList("a", "c", "b"));
+
+        CollectionPolicy copy = (CollectionPolicy) source.clone();
+
+        assertSame(source.sorted.comparator(), copy.sorted.comparator());
+        assertEquals(Arrays.asList("c", "b", "a"), Arrays.asList(copy.sorted.toArray()));
+    }
+
+    @Test
+    public void testUnmodifiableListIsCopiedIntoNewList() {
+        CollectionPolicy source = new CollectionPolicy();
+        source.names = Collections.unmodifiableList(Arrays.asList("a", "b"));
+        CollectionPolicy target = new CollectionPolicy();
+        target.names = Collections.unmodifiableList(Arrays.asList("c"));
+
+        PolicyCopier.of(CollectionPolicy.class).copyInto(source, target);
+
+        assertEquals(Arrays.asList("a", "b"), target.names);
+        target.names.add("mutable");
+        assertEquals(2, source.names.size());
+    }
+
+    @Test
+    public void testReusedCollectionIsRefilled() {
+        CollectionPolicy source = new CollectionPolicy();
+        source.queue.add("first");
+        CollectionPolicy target = new CollectionPolicy();
+        target.queue.add("stale");
+        LinkedList<String> reused = target.queue;
+
+        PolicyCopier.of(CollectionPolicy.class).copyInto(source, target);
+
+        assertSame(reused, target.queue);
+        assertEquals(Collections.singletonList("first"), target.queue);
+    }
+
+    @Test
+    public void testNestedPoliciesAreDeepCopied() {
+        CollectionPolicy source = new CollectionPolicy();
+        source.nested = new StatePolicy(2, "nested");
+
+        CollectionPolicy copy = (CollectionPolicy) source.clone();
+
+        assertNotSame(source.nested, copy.nested);
+        assertEquals(2, copy.nested.level);
+        assertTrue(PolicyInterner.valueEquals(source, copy));
+    }
+
+    public enum Weight {
+        LIGHT, HEAVY
+    }
+
+    public static class StatePolicy extends InternalPolicy {
+        public int level;
+        final String name;
+        private int secret;
+
+        public StatePolicy() {
+            this(0, "");
+        }
+
+        StatePolicy(int level, String name) {
+            this.level = level;
+            this.name = name;
+        }
+
+        int getSecret() {
+            return secret;
+        }
+
+        void setSecret(int secret) {
+            this.secret = secret;
+        }
+    }
+
+    public static class CollectionPolicy extends InternalPolicy {
+        public LinkedList<String> queue = new LinkedList<>();
+        public EnumMap<Weight, Integer> weights = new EnumMap<>(Weight.class);
+        public TreeSet<String> sorted = new TreeSet<>(Comparator.reverseOrder());
+        public List<String> names = new LinkedList<>();
+        public StatePolicy nested;
+    }
+}
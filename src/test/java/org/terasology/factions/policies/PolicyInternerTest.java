@@ -0,0 +1,157 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.policies;
+
+import org.junit.Test;
+import org.terasology.factions.policies.TestPolicies.Alliance;
+import org.terasology.factions.policies.policies.InternalPolicy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.terasology.factions.policies.TestPolicies.factions;
+import static org.terasology.factions.policies.TestPolicies.set;
+
+public class PolicyInternerTest {
+
+    @Test
+    public void testSignedZerosAreEqual() {
+        assertValueEquals(new ValuePolicy(0f, 0d), new ValuePolicy(-0f, -0d));
+    }
+
+    @Test
+    public void testNaNsAreEqual() {
+        float otherFloatNaN = Float.intBitsToFloat(0x7fc00001);
+        double otherDoubleNaN = Double.longBitsToDouble(0x7ff8000000000001L);
+        assertValueEquals(new ValuePolicy(Float.NaN, Double.NaN), new ValuePolicy(otherFloatNaN, otherDoubleNaN));
+    }
+
+    @Test
+    public void testDifferentValuesAreNotEqual() {
+        assertFalse(PolicyInterner.valueEquals(new ValuePolicy(1f, 0d), new ValuePolicy(2f, 0d)));
+        assertFalse(PolicyInterner.valueEquals(new ValuePolicy(0f, 1d), new ValuePolicy(0f, 2d)));
+    }
+
+    @Test
+    public void testNonPublicFieldsAreCompared() {
+        ValuePolicy first = new ValuePolicy(1f, 1d);
+        ValuePolicy second = new ValuePolicy(1f, 1d);
+        second.hidden = 5;
+        assertFalse(PolicyInterner.valueEquals(first, second));
+    }
+
+    @Test
+    public void testNestedPoliciesInCollectionsAreComparedByValue() {
+        NestingPolicy first = new NestingPolicy();
+        first.list.add(new ValuePolicy(1f, 2d));
+        first.map.put("member", new ValuePolicy(3f, 4d));
+        NestingPolicy second = new NestingPolicy();
+        second.list.add(new ValuePolicy(1f, 2d));
+        second.map.put("member", new ValuePolicy(3f, 4d));
+
+        assertValueEquals(first, second);
+
+        second.map.put("member", new ValuePolicy(3f, 5d));
+        assertFalse(PolicyInterner.valueEquals(first, second));
+    }
+
+    @Test
+    public void testEqualPoliciesInternToOneInstance() {
+        PolicyInterner<NestingPolicy> interner = new PolicyInterner<>(new NestingPolicy());
+        NestingPolicy first = new NestingPolicy();
+        first.list.add(new ValuePolicy(-0f, 1d));
+        NestingPolicy second = new NestingPolicy();
+        second.list.add(new ValuePolicy(0f, 1d));
+
+        assertSame(first, interner.retain(first));
+        assertSame(first, interner.retain(second));
+        assertEquals(1, interner.size());
+
+        interner.release(first);
+        interner.release(first);
+        assertEquals(0, interner.size());
+    }
+
+    @Test
+    public void testDefaultIsDetectedByValue() {
+        PolicyInterner<ValuePolicy> interner = new PolicyInterner<>(new ValuePolicy(0f, 0d));
+        assertTrue(interner.isDefault(new ValuePolicy(-0f, 0d)));
+        ValuePolicy hidden = new ValuePolicy(0f, 0d);
+        hidden.hidden = 1;
+        assertFalse(interner.isDefault(hidden));
+    }
+
+    @Test
+    public void testEqualPoliciesShareOneInstance() {
+        PolicyTable<Alliance> table = new PolicyTable<>(PolicyType.TWO_WAY, new Alliance(), factions("A", "B", "C"));
+        table.ensureCapacity(3);
+        Alliance first = set(table, table.indexOf(0, 1), new Alliance(true, 2));
+        Alliance second = set(table, table.indexOf(1, 2), new Alliance(true, 2));
+        Alliance other = set(table, table.indexOf(0, 2), new Alliance(true, 3));
+
+        assertSame(first, second);
+        assertNotSame(first, other);
+        assertEquals(2, table.getDistinctPolicyCount());
+
+        set(table, table.indexOf(0, 1), new Alliance());
+        set(table, table.indexOf(1, 2), new Alliance());
+        assertEquals(1, table.getDistinctPolicyCount());
+    }
+
+    @Test
+    public void testDefaultPolicyIsNotStored() {
+        PolicyTable<Alliance> table = new PolicyTable<>(PolicyType.TWO_WAY, new Alliance(), factions("A", "B"));
+        table.ensureCapacity(2);
+        int index = table.indexOf(0, 1);
+
+        assertNull(set(table, index, new Alliance()));
+        assertFalse(table.isSet(index));
+        assertSame(table.getDefaultPolicy(), table.get(index));
+        assertEquals(0, table.getDistinctPolicyCount());
+    }
+
+    private static void assertValueEquals(Object first, Object second) {
+        assertTrue(PolicyInterner.valueEquals(first, second));
+        assertEquals(PolicyInterner.valueHashCode(first), PolicyInterner.valueHashCode(second));
+    }
+
+    public static class ValuePolicy extends InternalPolicy {
+        public float ratio;
+        public double weight;
+        int hidden;
+
+        public ValuePolicy() {
+        }
+
+        ValuePolicy(float ratio, double weight) {
+            this.ratio = ratio;
+            this.weight = weight;
+        }
+    }
+
+    public static class NestingPolicy extends InternalPolicy {
+        public List<ValuePolicy> list = new ArrayList<>();
+        public Map<String, ValuePolicy> map = new HashMap<>();
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.policies;
+
+import org.junit.Test;
+import org.terasology.factions.policies.TestPolicies.Alliance;
+import org.terasology.factions.policies.TestPolicies.Trust;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.terasology.factions.policies.TestPolicies.factions;
+import static org.terasology.factions.policies.TestPolicies.set;
+
+public class PolicyRelationGraphTest {
+
+    @Test
+    public void testSavesUpdateTheGraphLikeARebuild() {
+        PolicyTable<Alliance> table = allianceTable(4);
+        PolicyRelationGraph<Alliance> graph = alliedGraph(table);
+        assertFalse(graph.isConnected(0, 1));
+
+        setAllied(table, 0, 1, true);
+        setAllied(table, 2, 1, true);
+        setAllied(table, 2, 3, true);
+        setAllied(table, 2, 3, false);
+
+        assertTrue(graph.isConnected(1, 0));
+        assertTrue(graph.isConnected(1, 2));
+        assertFalse(graph.isConnected(2, 3));
+        assertEquals(2, graph.countNeighbors(1));
+
+        table.invalidateRules();
+
+        assertTrue(graph.isConnected(1, 0));
+        assertTrue(graph.isConnected(1, 2));
+        assertFalse(graph.isConnected(2, 3));
+        assertEquals(2, graph.countNeighbors(1));
+    }
+
+    @Test
+    public void testOneWayGraphIsDirected() {
+        PolicyTable<Trust> table = new PolicyTable<>(PolicyType.ONE_WAY, new Trust(), factions(3));
+        table.ensureCapacity(3);
+        PolicyRelationGraph<Trust> graph = trustedGraph(table);
+        setTrusted(table, 0, 1);
+
+        assertTrue(graph.isConnected(0, 1));
+        assertFalse(graph.isConnected(1, 0));
+        assertEquals(1, graph.countNeighbors(0));
+        assertEquals(0, graph.countNeighbors(1));
+    }
+
+    @Test
+    public void testCommonNeighbors() {
+        PolicyTable<Alliance> table = allianceTable(5);
+        PolicyRelationGraph<Alliance> graph = alliedGraph(table);
+        setAllied(table, 0, 2, true);
+        setAllied(table, 0, 3, true);
+        setAllied(table, 0, 4, true);
+        setAllied(table, 1, 3, true);
+        setAllied(table, 1, 4, true);
+
+        long[] common = graph.getCommonNeighbors(0, 1, graph.newFactionSet());
+
+        assertEquals(Arrays.asList(3, 4), toList(common));
+        assertEquals(2, graph.countCommonNeighbors(0, 1));
+        assertEquals(2, graph.countNeighbors(0, common));
+    }
+
+    @Test
+    public void testReachableOverTwoHops() {
+        PolicyTable<Trust> table = new PolicyTable<>(PolicyType.ONE_WAY, new Trust(), factions(4));
+        table.ensureCapacity(4);
+        PolicyRelationGraph<Trust> graph = trustedGraph(table);
+        setTrusted(table, 0, 1);
+        setTrusted(table, 1, 2);
+        setTrusted(table, 2, 3);
+
+        assertEquals(Arrays.asList(1), toList(graph.getReachable(0, 1, null)));
+        assertEquals(Arrays.asList(1, 2), toList(graph.getReachable(0, 2, null)));
+        assertEquals(Arrays.asList(1, 2, 3), toList(graph.getReachable(0, 10, null)));
+        assertEquals(Collections.emptyList(), toList(graph.getReachable(3, 2, null)));
+    }
+
+    @Test
+    public void testMoreFactionsThanBitsInAWord() {
+        int factionCount = 70;
+        PolicyTable<Alliance> table = allianceTable(factionCount);
+        PolicyRelationGraph<Alliance> graph = alliedGraph(table);
+        assertEquals(factionCount, graph.getFactionCount());
+        setAllied(table, 0, 65, true);
+        setAllied(table, 65, 69, true);
+        setAllied(table, 3, 69, true);
+
+        assertEquals(2, graph.newFactionSet().length);
+        assertTrue(graph.isConnected(69, 65));
+        assertEquals(2, graph.countNeighbors(65));
+        assertEquals(Arrays.asList(3, 65), toList(graph.getNeighbors(69, null)));
+        assertEquals(Arrays.asList(65), toList(graph.getCommonNeighbors(0, 69, null)));
+        assertEquals(Arrays.asList(0, 65, 69), toList(graph.getReachable(0, 2, null)));
+
+        table.invalidateRules();
+
+        assertEquals(Arrays.asList(3, 65), toList(graph.getNeighbors(69, null)));
+        assertEquals(Arrays.asList(0, 65, 69), toList(graph.getReachable(0, 2, null)));
+    }
+
+    private static PolicyTable<Alliance> allianceTable(int factionCount) {
+        PolicyTable<Alliance> table = new PolicyTable<>(PolicyType.TWO_WAY, new Alliance(), factions(factionCount));
+        table.ensureCapacity(factionCount);
+        return table;
+    }
+
+    private static PolicyRelationGraph<Alliance> alliedGraph(PolicyTable<Alliance> table) {
+        PolicyRelationGraph<Alliance> graph = new PolicyRelationGraph<>(Alliance.class,
+                PolicyMetadata.of(Alliance.class).getField("allied"));
+        table.addRelationGraph(graph);
+        return graph;
+    }
+
+    private static PolicyRelationGraph<Trust> trustedGraph(PolicyTable<Trust> table) {
+        PolicyRelationGraph<Trust> graph = new PolicyRelationGraph<>(Trust.class,
+                PolicyMetadata.of(Trust.class).getField("trusted"));
+        table.addRelationGraph(graph);
+        return graph;
+    }
+
+    private static void setAllied(PolicyTable<Alliance> table, int firstFaction, int secondFaction, boolean allied) {
+        set(table, table.indexOf(firstFaction, secondFaction), new Alliance(allied, 0));
+        table.updateRelationGraphs(firstFaction, secondFaction);
+    }
+
+    private static void setTrusted(PolicyTable<Trust> table, int firstFaction, int secondFaction) {
+        Trust trust = new Trust();
+        trust.trusted = true;
+        set(table, table.indexOf(firstFaction, secondFaction), trust);
+        table.updateRelationGraphs(firstFaction, secondFaction);
+    }
+
+    private static List<Integer> toList(long[] factionSet) {
+        List<Integer> factions = new ArrayList<>();
+        PolicyRelationGraph.forEach(factionSet, factions::add);
+        return factions;
+    }
+}
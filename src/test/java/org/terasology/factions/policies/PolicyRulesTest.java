@@ -0,0 +1,69 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.policies;
+
+import org.junit.Test;
+import org.terasology.factions.components.FactionComponent;
+import org.terasology.factions.policies.TestPolicies.Alliance;
+
+import java.util.List;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.terasology.factions.policies.TestPolicies.factions;
+import static org.terasology.factions.policies.TestPolicies.set;
+
+public class PolicyRulesTest {
+
+    @Test
+    public void testMostSpecificRuleWins() {
+        List<FactionComponent> factions = factions("Humans", "Elves", "Undead");
+        factions.get(0).category = "Mortal";
+        factions.get(1).category = "Mortal";
+        factions.get(2).category = "Dead";
+        PolicyTable<Alliance> table = new PolicyTable<>(PolicyType.TWO_WAY, new Alliance(), factions);
+        table.ensureCapacity(3);
+        Alliance anyPair = new Alliance(false, 1);
+        Alliance mortalFirst = new Alliance(false, 2);
+        Alliance deadSecond = new Alliance(false, 3);
+        Alliance humans = new Alliance(false, 4);
+        assertTrue(table.putRule("*&*", anyPair));
+        assertTrue(table.putRule("#Mortal&*", mortalFirst));
+        assertTrue(table.putRule("*&#Dead", deadSecond));
+        assertTrue(table.putRule("Humans&*", humans));
+
+        assertSame(humans, table.resolveRule(0, 2));
+        assertSame(humans, table.resolveRule(2, 0));
+        // equally specific, the rule with the more specific first faction wins
+        assertSame(mortalFirst, table.resolveRule(1, 2));
+        assertSame(deadSecond, table.resolveRule(2, 2));
+    }
+
+    @Test
+    public void testOwnPolicyWinsOverRules() {
+        PolicyTable<Alliance> table = new PolicyTable<>(PolicyType.TWO_WAY, new Alliance(), factions("A", "B"));
+        table.ensureCapacity(2);
+        Alliance rule = new Alliance(false, 1);
+        table.putRule("*&*", rule);
+        Alliance own = set(table, table.indexOf(0, 1), new Alliance(true, 2));
+
+        assertSame(own, table.resolve(0, 1));
+        assertSame(rule, table.resolve(0, 0));
+
+        assertTrue(table.removeRule("*&*"));
+        assertSame(table.getDefaultPolicy(), table.resolve(0, 0));
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.policies;
+
+import org.junit.Test;
+import org.terasology.factions.policies.TestPolicies.Alliance;
+import org.terasology.factions.policies.TestPolicies.Rank;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.terasology.factions.policies.TestPolicies.factions;
+import static org.terasology.factions.policies.TestPolicies.set;
+
+public class PolicyTableSnapshotTest {
+
+    @Test
+    public void testSnapshotOnlyCopiesChangedBlocks() {
+        PolicyTable<Rank> table = new PolicyTable<>(PolicyType.INTERNAL, new Rank(), factions("A"));
+        table.ensureCapacity(3 * PolicyTableSnapshot.BLOCK_SIZE);
+        Rank rank = set(table, table.indexOf(PolicyTableSnapshot.BLOCK_SIZE), new Rank(1));
+        PolicyTableSnapshot<Rank> first = table.snapshot(null);
+        assertSame(first, table.snapshot(first));
+
+        Rank changed = set(table, table.indexOf(PolicyTableSnapshot.BLOCK_SIZE + 1), new Rank(2));
+        PolicyTableSnapshot<Rank> second = table.snapshot(first);
+
+        assertSame(first.getBlock(0), second.getBlock(0));
+        assertNotSame(first.getBlock(1), second.getBlock(1));
+        assertSame(first.getBlock(2), second.getBlock(2));
+        assertSame(rank, second.get(PolicyTableSnapshot.BLOCK_SIZE));
+        assertSame(changed, second.get(PolicyTableSnapshot.BLOCK_SIZE + 1));
+        assertSame(table.getDefaultPolicy(), first.get(PolicyTableSnapshot.BLOCK_SIZE + 1));
+    }
+
+    @Test
+    public void testSnapshotAfterGrowthCopiesAllBlocks() {
+        PolicyTable<Rank> table = new PolicyTable<>(PolicyType.INTERNAL, new Rank(), factions("A"));
+        table.ensureCapacity(PolicyTableSnapshot.BLOCK_SIZE);
+        Rank rank = set(table, table.indexOf(0), new Rank(1));
+        PolicyTableSnapshot<Rank> first = table.snapshot(null);
+
+        table.ensureCapacity(2 * PolicyTableSnapshot.BLOCK_SIZE);
+        PolicyTableSnapshot<Rank> second = table.snapshot(first);
+
+        assertNotSame(first.getBlock(0), second.getBlock(0));
+        assertSame(rank, second.get(0));
+    }
+
+    @Test
+    public void testSnapshotKeepsPoliciesAndRulesOfItsTime() {
+        PolicyTable<Alliance> table = new PolicyTable<>(PolicyType.TWO_WAY, new Alliance(), factions("A", "B", "C"));
+        table.ensureCapacity(3);
+        Alliance rule = new Alliance(false, 1);
+        table.putRule("*&*", rule);
+        Alliance own = set(table, table.indexOf(0, 1), new Alliance(true, 2));
+        PolicyTableSnapshot<Alliance> snapshot = table.snapshot(null);
+
+        set(table, table.indexOf(0, 1), new Alliance(true, 3));
+        table.removeRule("*&*");
+
+        assertSame(own, snapshot.resolve(1, 0));
+        assertSame(rule, snapshot.resolve(1, 2));
+        assertSame(table.getDefaultPolicy(), table.resolve(1, 2));
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.policies;
+
+import org.junit.Test;
+import org.terasology.factions.policies.TestPolicies.Alliance;
+import org.terasology.factions.policies.TestPolicies.Rank;
+import org.terasology.factions.policies.TestPolicies.Trust;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.terasology.factions.policies.TestPolicies.factions;
+import static org.terasology.factions.policies.TestPolicies.set;
+
+public class PolicyTableTest {
+
+    @Test
+    public void testRemovedInternalFactionTakesLastFaction() {
+        PolicyTable<Rank> table = new PolicyTable<>(PolicyType.INTERNAL, new Rank(), factions("A", "B", "C"));
+        table.ensureCapacity(3);
+        Rank first = set(table, table.indexOf(0), new Rank(1));
+        Rank second = set(table, table.indexOf(1), new Rank(2));
+        Rank last = set(table, table.indexOf(2), new Rank(3));
+
+        table.removeFaction(0, 2);
+
+        assertSame(last, table.get(table.indexOf(0)));
+        assertSame(second, table.get(table.indexOf(1)));
+        assertFalse(table.isSet(table.indexOf(2)));
+        assertNotSame(first, table.get(table.indexOf(0)));
+    }
+
+    @Test
+    public void testRemovedOneWayFactionTakesLastFaction() {
+        PolicyTable<Trust> table = new PolicyTable<>(PolicyType.ONE_WAY, new Trust(), factions("A", "B", "C"));
+        table.ensureCapacity(3);
+        set(table, table.indexOf(0, 1), new Trust(1));
+        set(table, table.indexOf(1, 0), new Trust(2));
+        set(table, table.indexOf(0, 2), new Trust(3));
+        set(table, table.indexOf(2, 0), new Trust(4));
+        Trust lastToSecond = set(table, table.indexOf(2, 1), new Trust(5));
+        Trust secondToLast = set(table, table.indexOf(1, 2), new Trust(6));
+
+        table.removeFaction(0, 2);
+
+        assertSame(lastToSecond, table.get(table.indexOf(0, 1)));
+        assertSame(secondToLast, table.get(table.indexOf(1, 0)));
+        assertFalse(table.isSet(table.indexOf(0, 0)));
+        assertFalse(table.isSet(table.indexOf(1, 2)));
+        assertFalse(table.isSet(table.indexOf(2, 1)));
+        assertEquals(2, table.getDistinctPolicyCount());
+    }
+
+    @Test
+    public void testTwoWayTriangleIsPackedAndSymmetric() {
+        PolicyTable<Alliance> table = new PolicyTable<>(PolicyType.TWO_WAY, new Alliance(), factions("A", "B"));
+        table.ensureCapacity(8);
+        Set<Integer> indices = new HashSet<>();
+        for (int first = 0; first < 8; first++) {
+            for (int second = first; second < 8; second++) {
+                int index = table.indexOf(first, second);
+                assertEquals(index, table.indexOf(second, first));
+                assertTrue(index >= 0 && index < 8 * 9 / 2);
+                indices.add(index);
+            }
+        }
+        assertEquals(8 * 9 / 2, indices.size());
+    }
+
+    @Test
+    public void testTwoWayIndicesSurviveGrowth() {
+        PolicyTable<Alliance> table = new PolicyTable<>(PolicyType.TWO_WAY, new Alliance(), factions("A", "B"));
+        table.ensureCapacity(8);
+        int index = table.indexOf(3, 5);
+        Alliance alliance = set(table, index, new Alliance(true, 4));
+
+        table.ensureCapacity(20);
+
+        assertEquals(index, table.indexOf(5, 3));
+        assertSame(alliance, table.get(index));
+    }
+}
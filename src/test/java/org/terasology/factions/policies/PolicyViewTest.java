@@ -0,0 +1,98 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.policies;
+
+import org.junit.Test;
+import org.terasology.factions.policies.policies.TwoWayPolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PolicyViewTest {
+
+    @Test
+    public void testPrimitiveFieldsAreReadWithoutCopying() {
+        Treaty treaty = new Treaty();
+        treaty.signed = true;
+        treaty.years = 12;
+        treaty.tribute = -3L;
+        treaty.trust = 0.25f;
+        treaty.weight = 1.5;
+        PolicyView<Treaty> view = PolicyView.of(treaty);
+
+        assertSame(Treaty.class, view.getPolicyClass());
+        assertTrue(view.getBoolean("signed"));
+        assertEquals(12, view.getInt("years"));
+        assertEquals(12L, view.getLong("years"));
+        assertEquals(-3L, view.getLong("tribute"));
+        assertEquals(0.25f, view.getFloat("trust"), 0);
+        assertEquals(0.25, view.getDouble("trust"), 0);
+        assertEquals(1.5, view.getDouble("weight"), 0);
+    }
+
+    @Test
+    public void testValuesAreCopies() {
+        Treaty treaty = new Treaty();
+        treaty.name = "peace";
+        treaty.clauses.add("trade");
+        PolicyView<Treaty> view = PolicyView.of(treaty);
+
+        assertEquals("peace", view.getValue("name"));
+        List<String> clauses = (List<String>) view.getValue("clauses");
+        assertEquals(treaty.clauses, clauses);
+        assertNotSame(treaty.clauses, clauses);
+        clauses.add("war");
+        assertEquals(1, treaty.clauses.size());
+
+        Treaty copy = view.copy();
+        assertNotSame(treaty, copy);
+        assertTrue(view.isEqualTo(copy));
+        Treaty target = new Treaty();
+        assertSame(target, view.copyInto(target));
+        assertTrue(view.isEqualTo(target));
+    }
+
+    @Test
+    public void testNullPolicyHasNoView() {
+        assertNull(PolicyView.of(null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownFieldIsRejected() {
+        PolicyView.of(new Treaty()).getInt("unknown");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMismatchedTypeIsRejected() {
+        PolicyView.of(new Treaty()).getInt("weight");
+    }
+
+    public static class Treaty extends TwoWayPolicy {
+        public boolean signed;
+        public int years;
+        public long tribute;
+        public float trust;
+        public double weight;
+        public String name;
+        public List<String> clauses = new ArrayList<>();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.factions.policies;
+
+import org.terasology.factions.components.FactionComponent;
+import org.terasology.factions.policies.policies.InternalPolicy;
+import org.terasology.factions.policies.policies.OneWayPolicy;
+import org.terasology.factions.policies.policies.Policy;
+import org.terasology.factions.policies.policies.TwoWayPolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One policy of each policy type and helpers to fill policy tables, shared by the policy tests.
+ */
+public final class TestPolicies {
+    private TestPolicies() {
+    }
+
+    /**
+     * Stores the policy as an own policy of the slot, as long as it differs from the default.
+     */
+    public static <T extends Policy> T set(PolicyTable<T> table, int index, T policy) {
+        return table.set(index, policy, table.getDefaultPolicy());
+    }
+
+    public static List<FactionComponent> factions(String... names) {
+        List<FactionComponent> factions = new ArrayList<>();
+        for (String name : names) {
+            factions.add(new FactionComponent(name));
+        }
+        return factions;
+    }
+
+    /**
+     * @return factions named Faction0, Faction1 and so on
+     */
+    public static List<FactionComponent> factions(int count) {
+        List<FactionComponent> factions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            factions.add(new FactionComponent("Faction" + i));
+        }
+        return factions;
+    }
+
+    public static class Rank extends InternalPolicy {
+        public int rank;
+
+        public Rank() {
+        }
+
+        public Rank(int rank) {
+            this.rank = rank;
+        }
+    }
+
+    public static class Trust extends OneWayPolicy {
+        public float trust;
+        public boolean trusted;
+
+        public Trust() {
+        }
+
+        public Trust(float trust) {
+            this.trust = trust;
+        }
+    }
+
+    public static class Alliance extends TwoWayPolicy {
+        public boolean allied;
+        public int strength;
+
+        public Alliance() {
+        }
+
+        public Alliance(boolean allied, int strength) {
+            this.allied = allied;
+            this.strength = strength;
+        }
+    }
+}